@@ -108,19 +108,8 @@ public class DataInitializer {
           """);
       log.info("Creada o verificada la tabla: devices");
 
-      // Crear tabla gps_locations
-      jdbcTemplate.execute("""
-          CREATE TABLE IF NOT EXISTS gps_locations (
-              id BIGINT AUTO_INCREMENT PRIMARY KEY,
-              device_id BIGINT NOT NULL,
-              latitude DOUBLE NOT NULL,
-              longitude DOUBLE NOT NULL,
-              timestamp DATETIME NOT NULL,
-              FOREIGN KEY (device_id) REFERENCES devices(id),
-              INDEX idx_device_id_timestamp (device_id, timestamp)
-          )
-          """);
-      log.info("Creada o verificada la tabla: gps_locations");
+      // gps_locations la crea schema.sql, antes que Hibernate, para que nazca
+      // particionada
 
       // Crear tabla alerts
       jdbcTemplate.execute("""
@@ -131,7 +120,10 @@ public class DataInitializer {
               type VARCHAR(50) NOT NULL,
               resolved BOOLEAN NOT NULL,
               created_at DATETIME NOT NULL,
-              FOREIGN KEY (device_id) REFERENCES devices(id)
+              occurrences INT NOT NULL DEFAULT 1,
+              last_occurred_at DATETIME,
+              FOREIGN KEY (device_id) REFERENCES devices(id),
+              INDEX idx_alerts_resolved_device (resolved, device_id)
           )
           """);
       log.info("Creada o verificada la tabla: alerts");
@@ -143,11 +135,36 @@ public class DataInitializer {
               device_id BIGINT NOT NULL,
               event_type VARCHAR(50) NOT NULL,
               timestamp DATETIME NOT NULL,
-              FOREIGN KEY (device_id) REFERENCES devices(id)
+              FOREIGN KEY (device_id) REFERENCES devices(id),
+              INDEX idx_gps_events_device_type (device_id, event_type, timestamp)
           )
           """);
       log.info("Creada o verificada la tabla: gps_events");
 
+      // Crear tabla device_states (instantánea de la proyección de estado)
+      jdbcTemplate.execute("""
+          CREATE TABLE IF NOT EXISTS device_states (
+              device_id BIGINT PRIMARY KEY,
+              power_state VARCHAR(10) NOT NULL,
+              last_change DATETIME(6),
+              on_since DATETIME(6),
+              cumulative_on_seconds BIGINT NOT NULL DEFAULT 0,
+              last_event_type VARCHAR(50),
+              last_event_at DATETIME(6),
+              last_event_id BIGINT NOT NULL
+          )
+          """);
+      log.info("Creada o verificada la tabla: device_states");
+
+      // Crear tabla device_state_checkpoint (eventos ya incluidos en device_states)
+      jdbcTemplate.execute("""
+          CREATE TABLE IF NOT EXISTS device_state_checkpoint (
+              id TINYINT PRIMARY KEY,
+              last_event_id BIGINT NOT NULL
+          )
+          """);
+      log.info("Creada o verificada la tabla: device_state_checkpoint");
+
       // Crear tabla http_logs
       jdbcTemplate.execute("""
           CREATE TABLE IF NOT EXISTS http_logs (
@@ -166,6 +183,42 @@ public class DataInitializer {
           )
           """);
       log.info("Creada o verificada la tabla: http_logs");
+
+      // Crear tabla geofences
+      jdbcTemplate.execute("""
+          CREATE TABLE IF NOT EXISTS geofences (
+              id BIGINT AUTO_INCREMENT PRIMARY KEY,
+              name VARCHAR(100) NOT NULL,
+              shape VARCHAR(20) NOT NULL,
+              center_latitude DOUBLE,
+              center_longitude DOUBLE,
+              radius_meters DOUBLE,
+              vertices TEXT,
+              user_id BIGINT NOT NULL,
+              device_id BIGINT,
+              created_at DATETIME,
+              FOREIGN KEY (user_id) REFERENCES users(id),
+              FOREIGN KEY (device_id) REFERENCES devices(id)
+          )
+          """);
+      log.info("Creada o verificada la tabla: geofences");
+
+      // Crear tabla device_rollups
+      jdbcTemplate.execute("""
+          CREATE TABLE IF NOT EXISTS device_rollups (
+              device_id BIGINT NOT NULL,
+              granularity VARCHAR(10) NOT NULL,
+              bucket_start DATETIME NOT NULL,
+              distance_meters DOUBLE NOT NULL DEFAULT 0,
+              moving_seconds BIGINT NOT NULL DEFAULT 0,
+              max_speed_mps DOUBLE NOT NULL DEFAULT 0,
+              fix_count INT NOT NULL DEFAULT 0,
+              trip_count INT NOT NULL DEFAULT 0,
+              stop_count INT NOT NULL DEFAULT 0,
+              PRIMARY KEY (device_id, granularity, bucket_start)
+          )
+          """);
+      log.info("Creada o verificada la tabla: device_rollups");
     } catch (Exception e) {
       log.error("Error al crear las tablas de la base de datos: {}", e.getMessage(), e);
       throw e;
@@ -182,7 +235,9 @@ public class DataInitializer {
           CREATE PROCEDURE insertLocation (
               IN p_device_id BIGINT,
               IN p_latitude DOUBLE,
-              IN p_longitude DOUBLE
+              IN p_longitude DOUBLE,
+              IN p_timestamp DATETIME(6),
+              IN p_seq BIGINT
           )
           BEGIN
               DECLARE device_exists INT;
@@ -200,8 +255,10 @@ public class DataInitializer {
                   SET MESSAGE_TEXT = 'La latitud y la longitud no pueden ser nulas';
               END IF;
 
-              INSERT INTO gps_locations (device_id, latitude, longitude, timestamp)
-              VALUES (p_device_id, p_latitude, p_longitude, NOW());
+              -- Hora del dispositivo si la envió; un reenvío no duplica la fila
+              INSERT INTO gps_locations (device_id, latitude, longitude, timestamp, seq)
+              VALUES (p_device_id, p_latitude, p_longitude, COALESCE(p_timestamp, NOW(6)), p_seq)
+              ON DUPLICATE KEY UPDATE id = id;
           END
           """;
       jdbcTemplate.execute(createProcedure);
@@ -319,8 +376,8 @@ public class DataInitializer {
         log.info("Creado dispositivo de muestra: id={}, alias={}", savedDevice.getId(), savedDevice.getAlias());
 
         // Insertar ubicaciones usando el procedimiento almacenado
-        gpsLocationRepository.insertLocation(savedDevice.getId(), 40.7128, -74.0060);
-        gpsLocationRepository.insertLocation(savedDevice.getId(), 40.7130, -74.0050);
+        gpsLocationRepository.insertLocation(savedDevice.getId(), 40.7128, -74.0060, null, null);
+        gpsLocationRepository.insertLocation(savedDevice.getId(), 40.7130, -74.0050, null, null);
         log.info("Creadas ubicaciones de muestra para el dispositivo: id={}", savedDevice.getId());
 
         // Insertar alerta usando el procedimiento almacenado
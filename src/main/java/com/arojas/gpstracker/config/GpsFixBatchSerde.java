@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.config;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+/**
+ * Formato binario compacto de un lote de ubicaciones, usado tanto en el
+ * endpoint de ingesta masiva como en el tópico Kafka gps-locations-compact.
+ *
+ * <pre>
+ * byte  version (2)
+ * int   count
+ * count x { long deviceId, long epochMillis, long seq, int latitudeE7, int longitudeE7 }
+ * </pre>
+ *
+ * Todos los valores son big-endian. Latitud y longitud van escaladas por 10^7.
+ * La versión 1, sin {@code seq}, se sigue aceptando al decodificar.
+ *
+ * @author neta1
+ */
+public class GpsFixBatchSerde implements Serializer<GpsFixBatch>, Deserializer<GpsFixBatch> {
+
+  public static final byte VERSION = 2;
+  public static final byte VERSION_WITHOUT_SEQ = 1;
+  public static final int HEADER_BYTES = 5;
+  public static final int FIX_BYTES = 32;
+  public static final int FIX_BYTES_WITHOUT_SEQ = 24;
+  private static final double SCALE = 1e7;
+
+  @Override
+  public byte[] serialize(String topic, GpsFixBatch batch) {
+    return batch == null ? null : encode(batch);
+  }
+
+  @Override
+  public GpsFixBatch deserialize(String topic, byte[] data) {
+    if (data == null) {
+      return null;
+    }
+    try {
+      return decode(data, Integer.MAX_VALUE);
+    } catch (IllegalArgumentException e) {
+      throw new SerializationException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    // sin configuración
+  }
+
+  @Override
+  public void close() {
+    // sin recursos que liberar
+  }
+
+  public static byte[] encode(GpsFixBatch batch) {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + batch.size() * FIX_BYTES);
+    buffer.put(VERSION);
+    buffer.putInt(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      buffer.putLong(batch.deviceId(i));
+      buffer.putLong(batch.fixTime(i));
+      buffer.putLong(batch.seq(i));
+      buffer.putInt((int) Math.round(batch.latitude(i) * SCALE));
+      buffer.putInt((int) Math.round(batch.longitude(i) * SCALE));
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Decodifica una trama completa.
+   *
+   * @param data     Trama recibida
+   * @param maxFixes Máximo de ubicaciones aceptadas
+   * @throws IllegalArgumentException si la trama está mal formada
+   */
+  public static GpsFixBatch decode(byte[] data, int maxFixes) {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      byte version = buffer.get();
+      if (version != VERSION && version != VERSION_WITHOUT_SEQ) {
+        throw new IllegalArgumentException("Unsupported frame version: " + version);
+      }
+      boolean hasSeq = version == VERSION;
+      int fixBytes = hasSeq ? FIX_BYTES : FIX_BYTES_WITHOUT_SEQ;
+      int count = buffer.getInt();
+      if (count < 0 || count > maxFixes) {
+        throw new IllegalArgumentException("Invalid fix count: " + count);
+      }
+      if (buffer.remaining() != (long) count * fixBytes) {
+        throw new IllegalArgumentException("Frame length does not match fix count " + count);
+      }
+
+      GpsFixBatch batch = new GpsFixBatch(count);
+      for (int i = 0; i < count; i++) {
+        long deviceId = buffer.getLong();
+        long fixTime = buffer.getLong();
+        long seq = hasSeq ? buffer.getLong() : 0L;
+        batch.add(deviceId, fixTime, seq, buffer.getInt() / SCALE, buffer.getInt() / SCALE);
+      }
+      return batch;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated frame", e);
+    }
+  }
+}
@@ -24,26 +24,33 @@
 
 package com.arojas.gpstracker.config;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import com.arojas.gpstracker.entities.HttpLog;
-import com.arojas.gpstracker.repositories.HttpLogRepository;
+import com.arojas.gpstracker.services.HttpLogWriter;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 
 /**
  *
@@ -53,77 +60,113 @@ import jakarta.servlet.http.HttpServletResponse;
 public class HttpLoggingFilter extends OncePerRequestFilter {
 
 	private static final Logger logger = LoggerFactory.getLogger(HttpLoggingFilter.class);
+	private static final String TRUNCATION_MARKER = "...[truncated]";
 
 	@Autowired
-	private HttpLogRepository httpLogRepository;
+	private HttpLogWriter httpLogWriter;
+
+	@Value("${gps.http-log.max-body-bytes:4096}")
+	private int maxBodyBytes;
 
 	@Override
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
-		// Envolver la solicitud y la respuesta para capturar el cuerpo
-		ContentCachingRequestWrapper wrappedRequest = new ContentCachingRequestWrapper(request);
-		ContentCachingResponseWrapper wrappedResponse = new ContentCachingResponseWrapper(response);
+		// Las peticiones fuera del muestreo no se envuelven: solo se registran si fallan
+		if (!httpLogWriter.isSampled(request.getRequestURI())) {
+			long startTime = System.currentTimeMillis();
+			try {
+				filterChain.doFilter(request, response);
+			} finally {
+				if (response.getStatus() >= 400) {
+					httpLogWriter.submit(buildLog(request, response.getStatus(),
+							System.currentTimeMillis() - startTime, null, null));
+				}
+			}
+			return;
+		}
+
+		// Envolver la solicitud y la respuesta para capturar el cuerpo. La solicitud
+		// solo se almacena hasta el umbral de tamaño; el byte extra indica que se cortó.
+		ContentCachingRequestWrapper wrappedRequest = new ContentCachingRequestWrapper(request, maxBodyBytes + 1);
+		// La respuesta se escribe directo al cliente y solo se copian sus primeros
+		// bytes; las respuestas en streaming no se envuelven
+		boolean streaming = isStreamingResponse(request);
+		BodySamplingResponseWrapper wrappedResponse = streaming ? null
+				: new BodySamplingResponseWrapper(response, maxBodyBytes + 1);
+		HttpServletResponse targetResponse = streaming ? response : wrappedResponse;
 
 		long startTime = System.currentTimeMillis();
 
 		try {
 			// Continuar con el procesamiento de la solicitud
-			filterChain.doFilter(wrappedRequest, wrappedResponse);
+			filterChain.doFilter(wrappedRequest, targetResponse);
 		} finally {
 			long responseTimeMs = System.currentTimeMillis() - startTime;
 
-			// Construir el objeto HttpLog
-			HttpLog httpLog = new HttpLog();
-			httpLog.setMethod(wrappedRequest.getMethod());
-			httpLog.setUrl(wrappedRequest.getRequestURL().toString());
-			httpLog.setQueryParams(wrappedRequest.getQueryString());
-			httpLog.setStatusCode(wrappedResponse.getStatus());
-			httpLog.setResponseTimeMs(responseTimeMs);
-			httpLog.setClientIp(wrappedRequest.getRemoteAddr());
-			httpLog.setUserAgent(wrappedRequest.getHeader("User-Agent"));
-
-			// Capturar el cuerpo de la solicitud
+			// Capturar los cuerpos (cortados o omitidos si superan el umbral)
 			String requestBody = getRequestBody(wrappedRequest);
-			httpLog.setRequestBody(truncate(requestBody, 65535)); // Limitar a tamaño de TEXT en MySQL
+			String responseBody = streaming ? null : getResponseBody(wrappedResponse);
 
-			// Capturar el cuerpo de la respuesta
-			String responseBody = getResponseBody(wrappedResponse);
-			httpLog.setResponseBody(truncate(responseBody, 65535));
+			HttpLog httpLog = buildLog(wrappedRequest, targetResponse.getStatus(), responseTimeMs, requestBody,
+					responseBody);
 
-			// Obtener el usuario autenticado (si existe)
-			String userEmail = getUserEmail();
-			httpLog.setUserEmail(userEmail);
+			// Encolar el log; la escritura en base de datos es asíncrona
+			httpLogWriter.submit(httpLog);
+			logger.debug("HTTP Log queued: method={}, url={}, status={}, responseTime={}ms, userEmail={}",
+					httpLog.getMethod(), httpLog.getUrl(), httpLog.getStatusCode(), httpLog.getResponseTimeMs(),
+					httpLog.getUserEmail());
+		}
+	}
 
-			// Guardar el log en la base de datos
-			try {
-				httpLogRepository.save(httpLog);
-				logger.info(
-						"HTTP Log saved: method={}, url={}, status={}, responseTime={}ms, userEmail={}, requestBody={}, responseBody={}",
-						httpLog.getMethod(), httpLog.getUrl(), httpLog.getStatusCode(), httpLog.getResponseTimeMs(),
-						httpLog.getUserEmail(), httpLog.getRequestBody(), truncate(httpLog.getResponseBody(), 100));
-			} catch (Exception e) {
-				logger.error("Failed to save HTTP log: {}", e.getMessage(), e);
-			}
+	private HttpLog buildLog(HttpServletRequest request, int status, long responseTimeMs, String requestBody,
+			String responseBody) {
+		HttpLog httpLog = new HttpLog();
+		httpLog.setMethod(request.getMethod());
+		httpLog.setUrl(request.getRequestURL().toString());
+		httpLog.setQueryParams(request.getQueryString());
+		httpLog.setStatusCode(status);
+		httpLog.setResponseTimeMs(responseTimeMs);
+		httpLog.setClientIp(request.getRemoteAddr());
+		httpLog.setUserAgent(request.getHeader("User-Agent"));
+		httpLog.setRequestBody(requestBody);
+		httpLog.setResponseBody(responseBody);
+		// Obtener el usuario autenticado (si existe)
+		httpLog.setUserEmail(getUserEmail());
+		return httpLog;
+	}
 
-			// Copiar el contenido de la respuesta al response original
-			wrappedResponse.copyBodyToResponse();
-		}
+	private boolean isStreamingResponse(HttpServletRequest request) {
+		return request.getRequestURI().endsWith("/export");
 	}
 
 	private String getRequestBody(ContentCachingRequestWrapper request) {
+		// Solo cuenta lo leído y guardado: en peticiones chunked no hay Content-Length
 		byte[] content = request.getContentAsByteArray();
-		if (content.length > 0) {
-			return new String(content, StandardCharsets.UTF_8);
+		if (content.length == 0) {
+			return null;
 		}
-		return null;
+		boolean truncated = content.length > maxBodyBytes;
+		// Los cuerpos binarios (ingesta masiva) no se guardan como texto
+		if (MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(request.getContentType())) {
+			return "[binary " + (truncated ? "more than " + maxBodyBytes : content.length) + " bytes]";
+		}
+		if (truncated) {
+			return new String(content, 0, maxBodyBytes, StandardCharsets.UTF_8) + TRUNCATION_MARKER;
+		}
+		return new String(content, StandardCharsets.UTF_8);
 	}
 
-	private String getResponseBody(ContentCachingResponseWrapper response) {
-		byte[] content = response.getContentAsByteArray();
-		if (content.length > 0) {
-			return new String(content, StandardCharsets.UTF_8);
+	private String getResponseBody(BodySamplingResponseWrapper response) throws IOException {
+		// Lo escrito con getWriter() puede seguir en el buffer del codificador
+		response.flushWriter();
+		long length = response.getContentSize();
+		if (length == 0) {
+			return null;
 		}
-		return null;
+		if (length > maxBodyBytes) {
+			return "[omitted " + length + " bytes]";
+		}
+		return response.getSample().toString(StandardCharsets.UTF_8);
 	}
 
 	private String getUserEmail() {
@@ -138,10 +181,120 @@ public class HttpLoggingFilter extends OncePerRequestFilter {
 		return null;
 	}
 
-	private String truncate(String value, int maxLength) {
-		if (value != null && value.length() > maxLength) {
-			return value.substring(0, maxLength);
+	/**
+	 * Escribe la respuesta directo al cliente y copia solo sus primeros bytes,
+	 * hasta el límite dado, además de contar el tamaño total.
+	 */
+	private static final class BodySamplingResponseWrapper extends HttpServletResponseWrapper {
+
+		private final int limit;
+		private final ByteArrayOutputStream sample;
+		private long contentSize;
+		private ServletOutputStream outputStream;
+		private PrintWriter writer;
+
+		BodySamplingResponseWrapper(HttpServletResponse response, int limit) {
+			super(response);
+			this.limit = limit;
+			this.sample = new ByteArrayOutputStream(Math.min(limit, 1024));
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (outputStream == null) {
+				outputStream = new SamplingOutputStream(super.getOutputStream());
+			}
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			flushWriter();
+			super.flushBuffer();
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			sample.reset();
+			contentSize = 0;
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			sample.reset();
+			contentSize = 0;
+		}
+
+		void flushWriter() {
+			if (writer != null) {
+				writer.flush();
+			}
+		}
+
+		long getContentSize() {
+			return contentSize;
+		}
+
+		ByteArrayOutputStream getSample() {
+			return sample;
+		}
+
+		private final class SamplingOutputStream extends ServletOutputStream {
+
+			private final ServletOutputStream target;
+
+			SamplingOutputStream(ServletOutputStream target) {
+				this.target = target;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				target.write(b);
+				if (sample.size() < limit) {
+					sample.write(b);
+				}
+				contentSize++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				target.write(b, off, len);
+				int copied = Math.min(len, limit - sample.size());
+				if (copied > 0) {
+					sample.write(b, off, copied);
+				}
+				contentSize += len;
+			}
+
+			@Override
+			public void flush() throws IOException {
+				target.flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				target.close();
+			}
+
+			@Override
+			public boolean isReady() {
+				return target.isReady();
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {
+				target.setWriteListener(listener);
+			}
 		}
-		return value;
 	}
 }
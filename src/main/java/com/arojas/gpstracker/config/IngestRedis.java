@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.arojas.gpstracker.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Conexión Redis propia de las cachés que se escriben desde la ingesta, con
+ * un tiempo de espera por comando corto.
+ *
+ * <p>
+ * El {@code spring.data.redis.timeout} general es de un minuto; con él, un
+ * Redis lento detendría el poll de Kafka. Aquí un comando que no responde en
+ * {@code gps.cache.redis.command-timeout} falla enseguida y la caché sigue
+ * con su copia local. No se expone como {@code RedisConnectionFactory} para
+ * no desplazar la conexión autoconfigurada.
+ * </p>
+ *
+ * @author neta1
+ */
+public class IngestRedis implements DisposableBean {
+
+  private final LettuceConnectionFactory connectionFactory;
+  private final StringRedisTemplate template;
+
+  public IngestRedis(RedisProperties properties, Duration commandTimeout) {
+    RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(properties.getHost(), properties.getPort());
+    server.setDatabase(properties.getDatabase());
+    server.setUsername(properties.getUsername());
+    server.setPassword(RedisPassword.of(properties.getPassword()));
+    LettuceClientConfiguration client = LettuceClientConfiguration.builder()
+        .commandTimeout(commandTimeout)
+        .build();
+
+    this.connectionFactory = new LettuceConnectionFactory(server, client);
+    connectionFactory.afterPropertiesSet();
+    connectionFactory.start();
+    this.template = new StringRedisTemplate(connectionFactory);
+  }
+
+  public StringRedisTemplate template() {
+    return template;
+  }
+
+  @Override
+  public void destroy() {
+    connectionFactory.destroy();
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.config;
+
+import java.util.Properties;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+import com.arojas.gpstracker.services.LivenessMonitor;
+
+/**
+ * Configuración de los consumidores Kafka en modo lote.
+ *
+ * <p>
+ * Las fábricas que consumen gps-locations avisan los rebalanceos a
+ * {@link LivenessMonitor}, que vigila solo los dispositivos de las
+ * particiones de ese tópico asignadas al nodo. La fábrica en lote también
+ * consume gps-events: el monitor ignora los rebalanceos de otros tópicos.
+ * </p>
+ *
+ * @author neta1
+ */
+@Configuration
+public class KafkaConsumerConfig {
+
+  @Value("${gps.ingest.batch.max-poll-records:500}")
+  private int maxPollRecords;
+
+  @Value("${gps.ingest.batch.fetch-min-bytes:16384}")
+  private int fetchMinBytes;
+
+  @Value("${gps.ingest.batch.fetch-max-wait-ms:100}")
+  private int fetchMaxWaitMs;
+
+  // Consumidores por instancia; no sirve de nada superar las particiones
+  @Value("${gps.ingest.consumer.concurrency:3}")
+  private int concurrency;
+
+  /**
+   * Fábrica por defecto, usada por el consumidor de a un registro de
+   * gps-locations cuando el modo lote está desactivado.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<Object, Object> kafkaListenerContainerFactory(
+      ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+      ConsumerFactory<Object, Object> consumerFactory, LivenessMonitor livenessMonitor) {
+    ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    configurer.configure(factory, consumerFactory);
+    factory.getContainerProperties().setConsumerRebalanceListener(livenessMonitor);
+    return factory;
+  }
+
+  /**
+   * Fábrica de contenedores que entrega un poll completo al listener. Los
+   * offsets se confirman solo cuando el listener retorna sin errores, es decir,
+   * cuando el lote ya fue escrito en la base de datos.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<Object, Object> batchListenerContainerFactory(
+      ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+      ConsumerFactory<Object, Object> consumerFactory, LivenessMonitor livenessMonitor) {
+    ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    configurer.configure(factory, consumerFactory);
+    configureBatch(factory.getContainerProperties());
+    factory.getContainerProperties().setConsumerRebalanceListener(livenessMonitor);
+    factory.setConcurrency(concurrency);
+    factory.setBatchListener(true);
+    return factory;
+  }
+
+  /**
+   * Fábrica en modo lote para el tópico binario gps-locations-compact. Reutiliza
+   * la configuración del consumidor JSON cambiando solo el deserializador. Un
+   * frame corrupto llega al listener con valor null en lugar de detener la
+   * partición.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, GpsFixBatch> compactBatchListenerContainerFactory(
+      ConsumerFactory<Object, Object> consumerFactory) {
+    DefaultKafkaConsumerFactory<String, GpsFixBatch> compactConsumerFactory = new DefaultKafkaConsumerFactory<>(
+        consumerFactory.getConfigurationProperties(), new StringDeserializer(), new ErrorHandlingDeserializer<>(new GpsFixBatchSerde()));
+    ConcurrentKafkaListenerContainerFactory<String, GpsFixBatch> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    factory.setConsumerFactory(compactConsumerFactory);
+    configureBatch(factory.getContainerProperties());
+    factory.setConcurrency(concurrency);
+    factory.setBatchListener(true);
+    return factory;
+  }
+
+  /**
+   * Fábrica del tópico de reintentos. Con confirmación manual, el listener
+   * devuelve al tópico los registros que aún no vencen con
+   * {@code nack(espera)}: el contenedor pausa el consumidor y sigue haciendo
+   * poll, así que la espera no cuenta contra {@code max.poll.interval.ms}.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<Object, Object> retryListenerContainerFactory(
+      ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+      ConsumerFactory<Object, Object> consumerFactory) {
+    ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    configurer.configure(factory, consumerFactory);
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+    return factory;
+  }
+
+  private void configureBatch(ContainerProperties containerProperties) {
+    containerProperties.setAckMode(ContainerProperties.AckMode.BATCH);
+
+    // batch-size y linger del lado consumidor
+    Properties overrides = new Properties();
+    overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+    overrides.setProperty(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, String.valueOf(fetchMinBytes));
+    overrides.setProperty(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, String.valueOf(fetchMaxWaitMs));
+    containerProperties.setKafkaConsumerProperties(overrides);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.config;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Contenedor de suscripciones pub/sub de Redis, compartido por los canales
+ * entre nodos, y conexión de tiempo de espera corto para las cachés de la
+ * ingesta (ver {@link IngestRedis}).
+ *
+ * <p>
+ * Por defecto el contenedor crea un hilo por mensaje recibido; con el reparto
+ * de WebSocket entre nodos eso es un hilo por posición, así que los mensajes
+ * se despachan en un pool fijo. Con un solo hilo se conserva el orden de
+ * llegada.
+ * </p>
+ *
+ * <p>
+ * La cola del pool está acotada por {@code gps.redis.listener.queue-capacity}.
+ * Si se llena, se descarta el mensaje más antiguo: una posición o un aviso
+ * viejo vale menos que el que acaba de llegar, y las cachés locales expiran
+ * solas. La profundidad de la cola se publica en
+ * {@code redis.pubsub.queue.depth} y los descartes en
+ * {@code redis.pubsub.dropped}.
+ * </p>
+ *
+ * @author neta1
+ */
+@Configuration
+public class RedisConfig {
+
+  @Value("${gps.redis.listener.threads:1}")
+  private int listenerThreads;
+
+  @Value("${gps.redis.listener.queue-capacity:10000}")
+  private int listenerQueueCapacity;
+
+  @Bean
+  public IngestRedis ingestRedis(RedisProperties properties,
+      @Value("${gps.cache.redis.command-timeout:500ms}") Duration commandTimeout) {
+    return new IngestRedis(properties, commandTimeout);
+  }
+
+  @Bean
+  public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+      MeterRegistry meterRegistry) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.setTaskExecutor(listenerExecutor(meterRegistry));
+    return container;
+  }
+
+  // No se expone como bean para no desplazar el applicationTaskExecutor de Spring Boot
+  private ThreadPoolTaskExecutor listenerExecutor(MeterRegistry meterRegistry) {
+    Counter dropped = Counter.builder("redis.pubsub.dropped")
+        .description("Pub/sub messages discarded because the dispatch queue was full")
+        .register(meterRegistry);
+    ThreadPoolExecutor.DiscardOldestPolicy discardOldest = new ThreadPoolExecutor.DiscardOldestPolicy();
+
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(listenerThreads);
+    executor.setMaxPoolSize(listenerThreads);
+    executor.setQueueCapacity(listenerQueueCapacity);
+    executor.setRejectedExecutionHandler((task, pool) -> {
+      dropped.increment();
+      discardOldest.rejectedExecution(task, pool);
+    });
+    executor.setThreadNamePrefix("redis-pubsub-");
+    executor.setDaemon(true);
+    executor.initialize();
+
+    Gauge.builder("redis.pubsub.queue.depth", executor, ThreadPoolTaskExecutor::getQueueSize)
+        .description("Pub/sub messages waiting to be dispatched")
+        .register(meterRegistry);
+    return executor;
+  }
+}
@@ -24,11 +24,14 @@
 
 package com.arojas.gpstracker.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  *
@@ -38,6 +41,15 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+  @Value("${gps.websocket.outbound.pool-size:8}")
+  private int outboundPoolSize;
+
+  @Value("${gps.websocket.send-time-limit-ms:5000}")
+  private int sendTimeLimitMs;
+
+  @Value("${gps.websocket.send-buffer-size-limit:262144}")
+  private int sendBufferSizeLimit;
+
   @Override
   public void registerStompEndpoints(StompEndpointRegistry registry) {
     registry.addEndpoint("/ws").setAllowedOrigins("*").withSockJS();
@@ -48,4 +60,21 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     registry.setApplicationDestinationPrefixes("/app");
     registry.enableSimpleBroker("/topic");
   }
+
+  @Override
+  public void configureClientOutboundChannel(ChannelRegistration registration) {
+    registration.taskExecutor()
+        .corePoolSize(outboundPoolSize)
+        .maxPoolSize(outboundPoolSize);
+  }
+
+  /**
+   * Un cliente lento no retiene hilos de salida: si supera el tiempo o el
+   * buffer de envío se cierra su sesión y el cliente vuelve a suscribirse.
+   */
+  @Override
+  public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+    registration.setSendTimeLimit(sendTimeLimitMs)
+        .setSendBufferSizeLimit(sendBufferSizeLimit);
+  }
 }
@@ -24,8 +24,7 @@
 
 package com.arojas.gpstracker.controllers;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -33,6 +32,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -45,9 +46,15 @@ import org.springframework.web.bind.annotation.RestController;
 import com.arojas.gpstracker.dto.AlertRequest;
 import com.arojas.gpstracker.dto.AlertResponse;
 import com.arojas.gpstracker.dto.ApiResponseWrapper;
+import com.arojas.gpstracker.dto.BulkResolveRequest;
+import com.arojas.gpstracker.dto.BulkResolveResponse;
 import com.arojas.gpstracker.entities.Alert;
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.entities.User;
+import com.arojas.gpstracker.exception.UserNotFoundException;
 import com.arojas.gpstracker.mappers.AlertMapper;
 import com.arojas.gpstracker.services.AlertService;
+import com.arojas.gpstracker.services.UserService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -64,6 +71,7 @@ import lombok.extern.slf4j.Slf4j;
 public class AlertController {
   private final AlertService alertService;
   private final AlertMapper alertMapper;
+  private final UserService userService;
 
   @PostMapping("/device/{deviceId}")
   public ResponseEntity<ApiResponseWrapper<AlertResponse>> createAlert(
@@ -82,6 +90,18 @@ public class AlertController {
     return ResponseEntity.ok(ApiResponseWrapper.success(alertMapper.toResponse(resolved)));
   }
 
+  @PutMapping("/resolve")
+  public ResponseEntity<ApiResponseWrapper<BulkResolveResponse>> resolveAlerts(
+      @AuthenticationPrincipal UserDetails userDetails,
+      @Valid @RequestBody BulkResolveRequest request) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    log.info("Bulk resolving alerts for user {}: device={}, type={}, from={}, to={}, ids={}", user.getId(),
+        request.getDeviceId(), request.getType(), request.getFrom(), request.getTo(),
+        request.getAlertIds() != null ? request.getAlertIds().size() : 0);
+    return ResponseEntity.ok(ApiResponseWrapper.success(alertService.resolveAlerts(request, user.getId())));
+  }
+
   @GetMapping("/device/{deviceId}")
   public ResponseEntity<ApiResponseWrapper<Page<AlertResponse>>> getAlertsForDevice(
       @PathVariable Long deviceId,
@@ -96,12 +116,35 @@ public class AlertController {
   }
 
   @GetMapping("/unresolved")
-  public ResponseEntity<ApiResponseWrapper<List<AlertResponse>>> getUnresolvedAlerts() {
-    log.info("Fetching unresolved alerts");
-    List<AlertResponse> dtos = alertService.getUnresolvedAlerts()
-        .stream()
-        .map(alertMapper::toResponse)
-        .collect(Collectors.toList());
+  public ResponseEntity<ApiResponseWrapper<Page<AlertResponse>>> getUnresolvedAlerts(
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "20") int size) {
+    log.info("Fetching unresolved alerts, page: {}, size: {}", page, size);
+    Page<AlertResponse> dtos = alertService.getUnresolvedAlerts(PageRequest.of(page, size));
     return ResponseEntity.ok(ApiResponseWrapper.success(dtos));
   }
-}
\ No newline at end of file
+
+  @GetMapping("/unresolved/counts")
+  public ResponseEntity<ApiResponseWrapper<Map<AlertType, Long>>> countUnresolvedAlerts() {
+    return ResponseEntity.ok(ApiResponseWrapper.success(alertService.countUnresolvedByType()));
+  }
+
+  @GetMapping("/unresolved/me")
+  public ResponseEntity<ApiResponseWrapper<Page<AlertResponse>>> getMyUnresolvedAlerts(
+      @AuthenticationPrincipal UserDetails userDetails,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "20") int size) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    Page<AlertResponse> dtos = alertService.getUnresolvedAlertsForOwner(user.getId(), PageRequest.of(page, size));
+    return ResponseEntity.ok(ApiResponseWrapper.success(dtos));
+  }
+
+  @GetMapping("/unresolved/me/counts")
+  public ResponseEntity<ApiResponseWrapper<Map<AlertType, Long>>> countMyUnresolvedAlerts(
+      @AuthenticationPrincipal UserDetails userDetails) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    return ResponseEntity.ok(ApiResponseWrapper.success(alertService.countUnresolvedByTypeForOwner(user.getId())));
+  }
+}
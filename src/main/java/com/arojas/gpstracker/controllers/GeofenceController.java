@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.controllers;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.arojas.gpstracker.dto.ApiResponseWrapper;
+import com.arojas.gpstracker.dto.GeofenceRequest;
+import com.arojas.gpstracker.dto.GeofenceResponse;
+import com.arojas.gpstracker.entities.Geofence;
+import com.arojas.gpstracker.entities.User;
+import com.arojas.gpstracker.exception.UserNotFoundException;
+import com.arojas.gpstracker.mappers.GeofenceMapper;
+import com.arojas.gpstracker.services.GeofenceService;
+import com.arojas.gpstracker.services.UserService;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Controller for managing geofences.
+ *
+ * @author neta1
+ */
+@RestController
+@RequestMapping("/geofences")
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceController {
+
+  private final GeofenceService geofenceService;
+  private final UserService userService;
+  private final GeofenceMapper geofenceMapper;
+
+  @PostMapping
+  public ResponseEntity<ApiResponseWrapper<GeofenceResponse>> createGeofence(
+      @AuthenticationPrincipal UserDetails userDetails,
+      @Valid @RequestBody GeofenceRequest request) {
+    log.info("Solicitud para crear geocerca: {}", request.getName());
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    Geofence geofence = geofenceService.createGeofence(request, user);
+    return ResponseEntity.ok(ApiResponseWrapper.success(geofenceMapper.toResponse(geofence)));
+  }
+
+  @GetMapping
+  public ResponseEntity<ApiResponseWrapper<List<GeofenceResponse>>> getUserGeofences(
+      @AuthenticationPrincipal UserDetails userDetails) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    List<GeofenceResponse> response = geofenceService.getUserGeofences(user.getId()).stream()
+        .map(geofenceMapper::toResponse)
+        .toList();
+    return ResponseEntity.ok(ApiResponseWrapper.success(response));
+  }
+
+  @DeleteMapping("/{geofenceId}")
+  public ResponseEntity<Void> deleteGeofence(
+      @AuthenticationPrincipal UserDetails userDetails,
+      @PathVariable Long geofenceId) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    geofenceService.deleteGeofence(geofenceId, user);
+    return ResponseEntity.noContent().build();
+  }
+}
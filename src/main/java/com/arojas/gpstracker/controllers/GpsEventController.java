@@ -24,9 +24,6 @@
 
 package com.arojas.gpstracker.controllers;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -40,6 +37,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.arojas.gpstracker.dto.ApiResponseWrapper;
+import com.arojas.gpstracker.dto.DeviceStateResponse;
 import com.arojas.gpstracker.dto.GpsEventDTO;
 import com.arojas.gpstracker.dto.GpsEventRequest;
 import com.arojas.gpstracker.entities.GpsEvent;
@@ -64,13 +62,16 @@ public class GpsEventController {
   private final GpsEventService gpsEventService;
   private final GpsEventMapper gpsEventMapper;
 
+  /**
+   * Encola el evento en Kafka; se guarda en lote al consumirlo.
+   */
   @PostMapping("/device/{deviceId}")
-  public ResponseEntity<ApiResponseWrapper<GpsEventDTO>> registerEvent(
+  public ResponseEntity<Void> registerEvent(
       @PathVariable Long deviceId,
       @Valid @RequestBody GpsEventRequest request) {
     log.info("Registering event for device: {}", deviceId);
-    GpsEvent event = gpsEventService.registerEvent(deviceId, request.getEventType());
-    return ResponseEntity.ok(ApiResponseWrapper.success(gpsEventMapper.toDto(event)));
+    gpsEventService.publishEvent(deviceId, request.getEventType());
+    return ResponseEntity.accepted().build();
   }
 
   @GetMapping("/device/{deviceId}")
@@ -86,14 +87,19 @@ public class GpsEventController {
   }
 
   @GetMapping("/device/{deviceId}/type")
-  public ResponseEntity<ApiResponseWrapper<List<GpsEventDTO>>> getEventsByType(
+  public ResponseEntity<ApiResponseWrapper<Page<GpsEventDTO>>> getEventsByType(
       @PathVariable Long deviceId,
-      @RequestParam EventType type) {
+      @RequestParam EventType type,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "20") int size) {
     log.info("Fetching events of type {} for device: {}", type, deviceId);
-    List<GpsEventDTO> dtos = gpsEventService.getEventsByType(deviceId, type)
-        .stream()
-        .map(gpsEventMapper::toDto)
-        .collect(Collectors.toList());
+    Page<GpsEventDTO> dtos = gpsEventService.getEventsByType(deviceId, type, PageRequest.of(page, size))
+        .map(gpsEventMapper::toDto);
     return ResponseEntity.ok(ApiResponseWrapper.success(dtos));
   }
+
+  @GetMapping("/device/{deviceId}/state")
+  public ResponseEntity<ApiResponseWrapper<DeviceStateResponse>> getDeviceState(@PathVariable Long deviceId) {
+    return ResponseEntity.ok(ApiResponseWrapper.success(gpsEventService.getDeviceState(deviceId)));
+  }
 }
\ No newline at end of file
@@ -24,11 +24,17 @@
 
 package com.arojas.gpstracker.controllers;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -36,14 +42,28 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.arojas.gpstracker.config.GpsFixBatchSerde;
 import com.arojas.gpstracker.dto.ApiResponseWrapper;
+import com.arojas.gpstracker.dto.CursorSliceResponse;
+import com.arojas.gpstracker.dto.DeviceRollupResponse;
+import com.arojas.gpstracker.dto.GpsFixBatch;
 import com.arojas.gpstracker.dto.GpsLocationDTO;
 import com.arojas.gpstracker.dto.GpsLocationMessage;
 import com.arojas.gpstracker.dto.GpsLocationRequest;
+import com.arojas.gpstracker.dto.LocationExportFormat;
+import com.arojas.gpstracker.dto.PresenceResponse;
+import com.arojas.gpstracker.dto.RollupGranularity;
 import com.arojas.gpstracker.entities.GpsLocation;
+import com.arojas.gpstracker.entities.User;
+import com.arojas.gpstracker.exception.BadRequestException;
+import com.arojas.gpstracker.exception.UserNotFoundException;
 import com.arojas.gpstracker.mappers.GpsLocationMapper;
+import com.arojas.gpstracker.services.DeviceRollupService;
+import com.arojas.gpstracker.services.GpsFixPublisher;
 import com.arojas.gpstracker.services.GpsLocationService;
+import com.arojas.gpstracker.services.UserService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -62,8 +82,14 @@ import lombok.extern.slf4j.Slf4j;
 public class GpsLocationController {
 
   private final GpsLocationService gpsLocationService;
+  private final UserService userService;
   private final GpsLocationMapper gpsLocationMapper;
   private final KafkaTemplate<String, GpsLocationMessage> kafkaTemplate;
+  private final GpsFixPublisher gpsFixPublisher;
+  private final DeviceRollupService deviceRollupService;
+
+  @Value("${gps.ingest.bulk.max-fixes:10000}")
+  private int maxBulkFixes;
 
   @PostMapping("/device/{deviceId}")
   public ResponseEntity<ApiResponseWrapper<GpsLocationDTO>> saveLocation(
@@ -75,10 +101,29 @@ public class GpsLocationController {
     message.setDeviceId(deviceId);
     message.setLatitude(request.getLatitude());
     message.setLongitude(request.getLongitude());
+    message.setFixTime(request.getFixTime());
+    message.setSeq(request.getSeq());
     kafkaTemplate.send("gps-locations", String.valueOf(deviceId), message);
     return ResponseEntity.accepted().build();
   }
 
+  /**
+   * Ingesta masiva en formato binario (ver {@link GpsFixBatchSerde}). Una sola
+   * petición transporta cientos de ubicaciones de uno o varios dispositivos.
+   */
+  @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<ApiResponseWrapper<Integer>> saveLocationsBulk(@RequestBody byte[] frame) {
+    GpsFixBatch batch;
+    try {
+      batch = GpsFixBatchSerde.decode(frame, maxBulkFixes);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid location frame: " + e.getMessage());
+    }
+    gpsFixPublisher.publish(batch);
+    log.debug("Accepted bulk frame with {} fixes", batch.size());
+    return ResponseEntity.accepted().body(ApiResponseWrapper.success(batch.size()));
+  }
+
   @GetMapping("/device/{deviceId}")
   public ResponseEntity<ApiResponseWrapper<Page<GpsLocationDTO>>> getLocations(
       @PathVariable Long deviceId,
@@ -89,10 +134,80 @@ public class GpsLocationController {
     return ResponseEntity.ok(ApiResponseWrapper.success(dtos));
   }
 
+  @GetMapping("/device/{deviceId}/history")
+  public ResponseEntity<ApiResponseWrapper<CursorSliceResponse<GpsLocationDTO>>> getLocationHistory(
+      @PathVariable Long deviceId,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(ApiResponseWrapper.success(gpsLocationService.getLocationHistory(deviceId, cursor, size)));
+  }
+
+  @GetMapping("/device/{deviceId}/export")
+  public ResponseEntity<StreamingResponseBody> exportLocations(
+      @PathVariable Long deviceId,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+      @RequestParam(defaultValue = "NDJSON") LocationExportFormat format) {
+    log.info("Exporting locations for device: {}, from {} to {} as {}", deviceId, start, end, format);
+    // Validar antes de empezar a escribir la respuesta
+    gpsLocationService.validateTimeRange(deviceId, start, end);
+    StreamingResponseBody body = out -> gpsLocationService.exportLocations(deviceId, start, end, format, out);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format.getContentType()))
+        .body(body);
+  }
+
+  @GetMapping("/device/{deviceId}/track")
+  public ResponseEntity<ApiResponseWrapper<List<GpsLocationDTO>>> getSimplifiedTrack(
+      @PathVariable Long deviceId,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+      @RequestParam(required = false) Double toleranceMeters,
+      @RequestParam(required = false) Integer maxPoints) {
+    List<GpsLocationDTO> track = gpsLocationService.getSimplifiedTrack(deviceId, start, end, toleranceMeters,
+        maxPoints);
+    return ResponseEntity.ok(ApiResponseWrapper.success(track));
+  }
+
+  @GetMapping("/device/{deviceId}/rollups")
+  public ResponseEntity<ApiResponseWrapper<List<DeviceRollupResponse>>> getDeviceRollups(
+      @PathVariable Long deviceId,
+      @RequestParam(defaultValue = "DAILY") RollupGranularity granularity,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+    return ResponseEntity.ok(ApiResponseWrapper.success(
+        deviceRollupService.getDeviceRollups(deviceId, granularity, from, to)));
+  }
+
+  @GetMapping("/rollups")
+  public ResponseEntity<ApiResponseWrapper<List<DeviceRollupResponse>>> getUserRollups(
+      @AuthenticationPrincipal UserDetails userDetails,
+      @RequestParam(defaultValue = "DAILY") RollupGranularity granularity,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    return ResponseEntity.ok(ApiResponseWrapper.success(
+        deviceRollupService.getUserRollups(user.getId(), granularity, from, to)));
+  }
+
   @GetMapping("/device/{deviceId}/last")
   public ResponseEntity<ApiResponseWrapper<GpsLocationDTO>> getLastLocation(@PathVariable Long deviceId) {
-    Optional<GpsLocation> location = gpsLocationService.getLastLocation(deviceId);
-    return location.map(loc -> ResponseEntity.ok(ApiResponseWrapper.success(gpsLocationMapper.toDto(loc))))
+    return gpsLocationService.getLastLocation(deviceId)
+        .map(dto -> ResponseEntity.ok(ApiResponseWrapper.success(dto)))
         .orElse(ResponseEntity.ok(ApiResponseWrapper.error("No location found for device ID: " + deviceId)));
   }
+
+  @GetMapping("/device/{deviceId}/presence")
+  public ResponseEntity<ApiResponseWrapper<PresenceResponse>> getPresence(@PathVariable Long deviceId) {
+    return ResponseEntity.ok(ApiResponseWrapper.success(gpsLocationService.getPresence(deviceId)));
+  }
+
+  @GetMapping("/last")
+  public ResponseEntity<ApiResponseWrapper<List<GpsLocationDTO>>> getLastLocationsForUser(
+      @AuthenticationPrincipal UserDetails userDetails) {
+    User user = userService.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado"));
+    return ResponseEntity.ok(ApiResponseWrapper.success(gpsLocationService.getLastLocationsForUser(user.getId())));
+  }
 }
\ No newline at end of file
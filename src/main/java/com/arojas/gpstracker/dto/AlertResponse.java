@@ -44,5 +44,7 @@ public class AlertResponse {
   private boolean resolved;
   private LocalDateTime createdAt;
   private LocalDateTime resolvedAt;
+  private int occurrences;
+  private LocalDateTime lastOccurredAt;
   private Long deviceId;
 }
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.dto;
+
+import java.util.List;
+
+import com.arojas.gpstracker.entities.Geofence.Shape;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * Alta de geocerca. Los círculos usan centro y radio; los polígonos, la lista
+ * de vértices. Sin deviceId la geocerca aplica a todos los dispositivos del
+ * usuario.
+ *
+ * @author neta1
+ */
+@Data
+public class GeofenceRequest {
+  @NotBlank
+  @Size(max = 100)
+  private String name;
+  @NotNull
+  private Shape shape;
+  private Long deviceId;
+  @DecimalMin(value = "-90.0") @DecimalMax(value = "90.0") private Double centerLatitude;
+  @DecimalMin(value = "-180.0") @DecimalMax(value = "180.0") private Double centerLongitude;
+  @Positive
+  private Double radiusMeters;
+  @Size(max = 1000)
+  private List<@Valid Coordinate> vertices;
+}
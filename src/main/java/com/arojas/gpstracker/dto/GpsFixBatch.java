@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.dto;
+
+import java.util.Arrays;
+
+/**
+ * Lote de ubicaciones GPS almacenado en arreglos primitivos, sin un objeto
+ * por ubicación.
+ *
+ * @author neta1
+ */
+public class GpsFixBatch {
+
+  private long[] deviceIds;
+  private long[] fixTimes;
+  private long[] seqs;
+  private double[] latitudes;
+  private double[] longitudes;
+  private int size;
+
+  public GpsFixBatch(int capacity) {
+    int initial = Math.max(capacity, 1);
+    deviceIds = new long[initial];
+    fixTimes = new long[initial];
+    seqs = new long[initial];
+    latitudes = new double[initial];
+    longitudes = new double[initial];
+  }
+
+  /**
+   * Agrega una ubicación.
+   *
+   * @param deviceId  ID del dispositivo
+   * @param fixTime   Hora del fix en epoch millis, 0 si el dispositivo no la
+   *                  envió
+   * @param latitude  Latitud
+   * @param longitude Longitud
+   */
+  public void add(long deviceId, long fixTime, double latitude, double longitude) {
+    add(deviceId, fixTime, 0L, latitude, longitude);
+  }
+
+  /**
+   * Agrega una ubicación con número de secuencia.
+   *
+   * @param deviceId  ID del dispositivo
+   * @param fixTime   Hora del fix en epoch millis, 0 si el dispositivo no la
+   *                  envió
+   * @param seq       Número de secuencia del dispositivo, 0 si no lo envió
+   * @param latitude  Latitud
+   * @param longitude Longitud
+   */
+  public void add(long deviceId, long fixTime, long seq, double latitude, double longitude) {
+    if (size == deviceIds.length) {
+      int capacity = size * 2;
+      deviceIds = Arrays.copyOf(deviceIds, capacity);
+      fixTimes = Arrays.copyOf(fixTimes, capacity);
+      seqs = Arrays.copyOf(seqs, capacity);
+      latitudes = Arrays.copyOf(latitudes, capacity);
+      longitudes = Arrays.copyOf(longitudes, capacity);
+    }
+    deviceIds[size] = deviceId;
+    fixTimes[size] = fixTime;
+    seqs[size] = seq;
+    latitudes[size] = latitude;
+    longitudes[size] = longitude;
+    size++;
+  }
+
+  /**
+   * Copia la ubicación {@code index} de otro lote.
+   */
+  public void addFrom(GpsFixBatch other, int index) {
+    add(other.deviceIds[index], other.fixTimes[index], other.seqs[index], other.latitudes[index],
+        other.longitudes[index]);
+  }
+
+  public void addAll(GpsFixBatch other) {
+    for (int i = 0; i < other.size; i++) {
+      addFrom(other, i);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long deviceId(int index) {
+    return deviceIds[index];
+  }
+
+  public long fixTime(int index) {
+    return fixTimes[index];
+  }
+
+  public long seq(int index) {
+    return seqs[index];
+  }
+
+  public double latitude(int index) {
+    return latitudes[index];
+  }
+
+  public double longitude(int index) {
+    return longitudes[index];
+  }
+}
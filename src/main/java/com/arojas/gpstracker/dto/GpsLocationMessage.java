@@ -35,4 +35,8 @@ public class GpsLocationMessage {
   private Long deviceId;
   private double latitude;
   private double longitude;
+  // Hora del dispositivo en epoch millis; null usa la hora de llegada
+  private Long fixTime;
+  // Número de secuencia del dispositivo; null si no lo envía
+  private Long seq;
 }
@@ -26,6 +26,7 @@ package com.arojas.gpstracker.dto;
 
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 
 /**
@@ -36,4 +37,8 @@ import lombok.Data;
 public class GpsLocationRequest {
     @DecimalMin(value = "-90.0") @DecimalMax(value = "90.0") private double latitude;
     @DecimalMin(value = "-180.0") @DecimalMax(value = "180.0") private double longitude;
+    // Hora del fix en el dispositivo, epoch millis
+    @Positive private Long fixTime;
+    // Número de secuencia del dispositivo, para descartar reenvíos
+    @Positive private Long seq;
 }
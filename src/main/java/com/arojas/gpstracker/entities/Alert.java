@@ -34,6 +34,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -47,7 +48,7 @@ import lombok.NoArgsConstructor;
  * @author neta1
  */
 @Entity
-@Table(name = "alerts")
+@Table(name = "alerts", indexes = @Index(name = "idx_alerts_resolved_device", columnList = "resolved, device_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -72,6 +73,13 @@ public class Alert {
 
   private LocalDateTime resolvedAt;
 
+  // Repeticiones agrupadas en esta alerta por la deduplicación
+  @Builder.Default
+  @Column(nullable = false, columnDefinition = "INT NOT NULL DEFAULT 1")
+  private int occurrences = 1;
+
+  private LocalDateTime lastOccurredAt;
+
   @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "device_id")
   private Device device;
@@ -80,6 +88,7 @@ public class Alert {
     DEVICE_ON_TOO_LONG,
     DEVICE_OFFLINE,
     LOCATION_OUT_OF_BOUNDS,
+    GEOFENCE_ENTERED,
     OTHER
   }
 }
@@ -33,6 +33,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -46,7 +47,9 @@ import lombok.NoArgsConstructor;
  * @author neta1
  */
 @Entity
-@Table(name = "gps_events")
+@Table(name = "gps_events", indexes = {
+    @Index(name = "idx_gps_events_device_type", columnList = "device_id, event_type, timestamp")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,7 +26,10 @@ package com.arojas.gpstracker.entities;
 
 import java.time.LocalDateTime;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -34,6 +37,7 @@ import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -46,6 +50,8 @@ import lombok.NoArgsConstructor;
 @Entity
 @Table(name = "gps_locations", indexes = {
     @Index(name = "idx_device_id_timestamp", columnList = "device_id, timestamp")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_device_seq_timestamp", columnNames = { "device_id", "seq", "timestamp" })
 })
 @Data
 @NoArgsConstructor
@@ -61,9 +67,14 @@ public class GpsLocation {
   private double longitude;
 
   @Builder.Default
+  @Column(nullable = false)
   private LocalDateTime timestamp = LocalDateTime.now();
 
+  // Número de secuencia del dispositivo; null si no lo envió
+  private Long seq;
+
+  // Sin FK: MySQL no admite claves foráneas en tablas particionadas
   @ManyToOne
-  @JoinColumn(name = "device_id")
+  @JoinColumn(name = "device_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
   private Device device;
 }
@@ -43,6 +43,8 @@ public interface AlertMapper {
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "resolvedAt", ignore = true)
     @Mapping(target = "device", ignore = true)
+    @Mapping(target = "occurrences", ignore = true)
+    @Mapping(target = "lastOccurredAt", ignore = true)
     Alert toEntity(AlertRequest request);
 
     @Mapping(source = "device.id", target = "deviceId")
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.mappers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import com.arojas.gpstracker.dto.Coordinate;
+import com.arojas.gpstracker.dto.GeofenceRequest;
+import com.arojas.gpstracker.dto.GeofenceResponse;
+import com.arojas.gpstracker.entities.Geofence;
+
+/**
+ *
+ * @author neta1
+ */
+@Mapper(componentModel = "spring")
+public interface GeofenceMapper {
+
+  @Mapping(target = "id", ignore = true)
+  @Mapping(target = "user", ignore = true)
+  @Mapping(target = "device", ignore = true)
+  @Mapping(target = "createdAt", ignore = true)
+  Geofence toEntity(GeofenceRequest request);
+
+  @Mapping(source = "device.id", target = "deviceId")
+  GeofenceResponse toResponse(Geofence entity);
+
+  default String verticesToText(List<Coordinate> vertices) {
+    if (vertices == null || vertices.isEmpty()) {
+      return null;
+    }
+    return vertices.stream()
+        .map(v -> v.getLatitude() + "," + v.getLongitude())
+        .collect(Collectors.joining(";"));
+  }
+
+  default List<Coordinate> textToVertices(String vertices) {
+    if (vertices == null || vertices.isBlank()) {
+      return null;
+    }
+    List<Coordinate> result = new ArrayList<>();
+    for (String vertex : vertices.split(";")) {
+      int comma = vertex.indexOf(',');
+      result.add(new Coordinate(Double.parseDouble(vertex.substring(0, comma)),
+          Double.parseDouble(vertex.substring(comma + 1))));
+    }
+    return result;
+  }
+}
@@ -25,6 +25,7 @@
 package com.arojas.gpstracker.repositories;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +36,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.arojas.gpstracker.entities.Alert;
 import com.arojas.gpstracker.entities.Alert.AlertType;
@@ -55,6 +57,16 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
 
   List<Alert> findByResolvedFalseOrderByCreatedAtDesc();
 
+  @Query("SELECT a.id AS id, d.id AS deviceId, d.user.id AS ownerId, a.type AS type, a.message AS message, "
+      + "a.createdAt AS createdAt, a.occurrences AS occurrences, a.lastOccurredAt AS lastOccurredAt "
+      + "FROM Alert a JOIN a.device d WHERE a.resolved = false")
+  List<UnresolvedAlertRow> findAllUnresolved();
+
+  @Query("SELECT a.id AS id, d.id AS deviceId, d.user.id AS ownerId, a.type AS type, a.message AS message, "
+      + "a.createdAt AS createdAt, a.occurrences AS occurrences, a.lastOccurredAt AS lastOccurredAt "
+      + "FROM Alert a JOIN a.device d WHERE a.id IN :alertIds AND a.resolved = false")
+  List<UnresolvedAlertRow> findUnresolvedByIds(@Param("alertIds") Collection<Long> alertIds);
+
   List<Alert> findByCreatedAtBetweenOrderByCreatedAtDesc(LocalDateTime start, LocalDateTime end);
 
   Optional<Alert> findByIdAndDeviceId(Long id, Long deviceId);
@@ -68,8 +80,77 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
 
   List<Alert> findByDeviceIdAndResolvedFalse(Long deviceId);
 
+  @Modifying
+  @Transactional
+  @Query("UPDATE Alert a SET a.occurrences = a.occurrences + :count, a.lastOccurredAt = :lastOccurredAt "
+      + "WHERE a.id = :alertId AND a.resolved = false")
+  int addOccurrences(@Param("alertId") Long alertId, @Param("count") int count,
+      @Param("lastOccurredAt") LocalDateTime lastOccurredAt);
+
+  @Modifying
+  @Query("UPDATE Alert a SET a.resolved = true, a.resolvedAt = :resolvedAt "
+      + "WHERE a.device.id = :deviceId AND a.type = :type AND a.resolved = false")
+  int resolveOpenAlerts(@Param("deviceId") Long deviceId, @Param("type") AlertType type,
+      @Param("resolvedAt") LocalDateTime resolvedAt);
+
   @Modifying
   @Query("UPDATE Alert a SET a.resolved = true WHERE a.id = :alertId")
   void resolveAlert(Long alertId);
 
-}
\ No newline at end of file
+  @Modifying
+  @Transactional
+  @Query("UPDATE Alert a SET a.resolved = true, a.resolvedAt = :resolvedAt "
+      + "WHERE a.id IN :alertIds AND a.resolved = false")
+  int resolveAlerts(@Param("alertIds") Collection<Long> alertIds, @Param("resolvedAt") LocalDateTime resolvedAt);
+
+  @Query("SELECT a.id AS id, a.device.id AS deviceId, a.type AS type FROM Alert a "
+      + "WHERE a.resolved = false AND a.device.user.id = :ownerId "
+      + "AND (:deviceId IS NULL OR a.device.id = :deviceId) "
+      + "AND (:type IS NULL OR a.type = :type) "
+      + "AND (:from IS NULL OR a.createdAt >= :from) "
+      + "AND (:to IS NULL OR a.createdAt <= :to)")
+  List<AlertRef> findUnresolvedRefs(@Param("ownerId") Long ownerId, @Param("deviceId") Long deviceId,
+      @Param("type") AlertType type, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+  @Query("SELECT a.id AS id, a.device.id AS deviceId, a.type AS type FROM Alert a "
+      + "WHERE a.id IN :alertIds AND a.resolved = false AND a.device.user.id = :ownerId "
+      + "AND (:deviceId IS NULL OR a.device.id = :deviceId) "
+      + "AND (:type IS NULL OR a.type = :type) "
+      + "AND (:from IS NULL OR a.createdAt >= :from) "
+      + "AND (:to IS NULL OR a.createdAt <= :to)")
+  List<AlertRef> findUnresolvedRefsByIds(@Param("alertIds") Collection<Long> alertIds,
+      @Param("ownerId") Long ownerId, @Param("deviceId") Long deviceId, @Param("type") AlertType type,
+      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+  /**
+   * Referencia mínima a una alerta para la resolución masiva.
+   */
+  interface AlertRef {
+    Long getId();
+
+    Long getDeviceId();
+
+    AlertType getType();
+  }
+
+  /**
+   * Proyección de una alerta sin resolver para el índice en memoria.
+   */
+  interface UnresolvedAlertRow {
+    Long getId();
+
+    Long getDeviceId();
+
+    Long getOwnerId();
+
+    AlertType getType();
+
+    String getMessage();
+
+    LocalDateTime getCreatedAt();
+
+    Integer getOccurrences();
+
+    LocalDateTime getLastOccurredAt();
+  }
+}
@@ -24,11 +24,14 @@
 
 package com.arojas.gpstracker.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.arojas.gpstracker.entities.Device;
@@ -42,4 +45,27 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
     Optional<Device> findByDeviceIdentifier(String deviceIdentifier);
 
     Page<Device> findByUserId(Long userId, Pageable pageable);
+
+    @Query("SELECT d.id AS id, d.user.id AS ownerId, d.activated AS activated, d.deviceIdentifier AS deviceIdentifier FROM Device d")
+    List<DeviceSummary> findAllSummaries();
+
+    @Query("SELECT d.id AS id, d.user.id AS ownerId, d.activated AS activated, d.deviceIdentifier AS deviceIdentifier FROM Device d WHERE d.id = :id")
+    Optional<DeviceSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("SELECT d.id FROM Device d WHERE d.user.id = :ownerId")
+    List<Long> findIdsByOwnerId(@Param("ownerId") Long ownerId);
+
+    /**
+     * Proyección ligera de un dispositivo, sin cargar el usuario ni sus
+     * colecciones.
+     */
+    interface DeviceSummary {
+        Long getId();
+
+        Long getOwnerId();
+
+        Boolean getActivated();
+
+        String getDeviceIdentifier();
+    }
 }
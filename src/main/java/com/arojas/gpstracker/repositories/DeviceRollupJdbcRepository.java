@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.arojas.gpstracker.dto.DeviceRollupResponse;
+import com.arojas.gpstracker.dto.RollupGranularity;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Acceso JDBC a device_rollups. Los incrementos se suman en la base con
+ * {@code ON DUPLICATE KEY UPDATE}, así varias escrituras del mismo intervalo
+ * se acumulan sin leer la fila antes.
+ *
+ * @author neta1
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeviceRollupJdbcRepository {
+
+  private static final String UPSERT = "INSERT INTO device_rollups (device_id, granularity, bucket_start, "
+      + "distance_meters, moving_seconds, max_speed_mps, fix_count, trip_count, stop_count) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+      + "distance_meters = distance_meters + VALUES(distance_meters), "
+      + "moving_seconds = moving_seconds + VALUES(moving_seconds), "
+      + "max_speed_mps = GREATEST(max_speed_mps, VALUES(max_speed_mps)), "
+      + "fix_count = fix_count + VALUES(fix_count), "
+      + "trip_count = trip_count + VALUES(trip_count), "
+      + "stop_count = stop_count + VALUES(stop_count)";
+
+  private static final String SELECT_COLUMNS = "SELECT device_id, granularity, bucket_start, distance_meters, "
+      + "moving_seconds, max_speed_mps, fix_count, trip_count, stop_count FROM device_rollups ";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Increment of one rollup row.
+   */
+  public record RollupDelta(long deviceId, RollupGranularity granularity, LocalDateTime bucketStart,
+      double distanceMeters, long movingSeconds, double maxSpeedMps, int fixCount, int tripCount, int stopCount) {
+  }
+
+  /**
+   * Adds all increments in a single JDBC batch.
+   *
+   * @param deltas Increments to apply
+   */
+  public void upsertBatch(List<RollupDelta> deltas) {
+    jdbcTemplate.batchUpdate(UPSERT, deltas, deltas.size(), this::setValues);
+  }
+
+  /**
+   * Returns the rollups of the devices in a time range, oldest first.
+   *
+   * @param deviceIds   IDs of the devices
+   * @param granularity Hourly or daily rows
+   * @param from        First bucket, inclusive
+   * @param to          Last bucket, exclusive
+   * @return Rollup rows
+   */
+  public List<DeviceRollupResponse> findRange(long[] deviceIds, RollupGranularity granularity, LocalDateTime from,
+      LocalDateTime to) {
+    if (deviceIds.length == 0) {
+      return Collections.emptyList();
+    }
+    String placeholders = String.join(",", Collections.nCopies(deviceIds.length, "?"));
+    String sql = SELECT_COLUMNS + "WHERE device_id IN (" + placeholders + ") AND granularity = ? "
+        + "AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start, device_id";
+    return jdbcTemplate.query(con -> {
+      PreparedStatement ps = con.prepareStatement(sql);
+      int index = 1;
+      for (long deviceId : deviceIds) {
+        ps.setLong(index++, deviceId);
+      }
+      ps.setString(index++, granularity.name());
+      ps.setObject(index++, from);
+      ps.setObject(index, to);
+      return ps;
+    }, (rs, rowNum) -> toResponse(rs));
+  }
+
+  public int deleteByDeviceId(long deviceId) {
+    return jdbcTemplate.update("DELETE FROM device_rollups WHERE device_id = ?", deviceId);
+  }
+
+  private void setValues(PreparedStatement ps, RollupDelta delta) throws SQLException {
+    ps.setLong(1, delta.deviceId());
+    ps.setString(2, delta.granularity().name());
+    ps.setObject(3, delta.bucketStart());
+    ps.setDouble(4, delta.distanceMeters());
+    ps.setLong(5, delta.movingSeconds());
+    ps.setDouble(6, delta.maxSpeedMps());
+    ps.setInt(7, delta.fixCount());
+    ps.setInt(8, delta.tripCount());
+    ps.setInt(9, delta.stopCount());
+  }
+
+  private static DeviceRollupResponse toResponse(ResultSet rs) throws SQLException {
+    double distance = rs.getDouble(4);
+    long movingSeconds = rs.getLong(5);
+    return DeviceRollupResponse.builder()
+        .deviceId(rs.getLong(1))
+        .granularity(RollupGranularity.valueOf(rs.getString(2)))
+        .bucketStart(rs.getObject(3, LocalDateTime.class))
+        .distanceMeters(distance)
+        .movingSeconds(movingSeconds)
+        .maxSpeedMps(rs.getDouble(6))
+        .avgSpeedMps(movingSeconds > 0 ? distance / movingSeconds : 0)
+        .fixCount(rs.getInt(7))
+        .tripCount(rs.getInt(8))
+        .stopCount(rs.getInt(9))
+        .build();
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import com.arojas.gpstracker.entities.GpsEvent.EventType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Acceso JDBC a device_states, la instantánea de la proyección de estado, a
+ * device_state_checkpoint, el último evento ya incluido en ella, y lectura de
+ * los eventos posteriores.
+ *
+ * @author neta1
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeviceStateJdbcRepository {
+
+  // Una instantánea más vieja (nodo atrasado, flush tardío) no pisa una más
+  // nueva. MySQL asigna de izquierda a derecha: last_event_id va al final para
+  // que las demás columnas comparen con el valor anterior.
+  static final String UPSERT = "INSERT INTO device_states (device_id, power_state, last_change, on_since, "
+      + "cumulative_on_seconds, last_event_type, last_event_at, last_event_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+      + "ON DUPLICATE KEY UPDATE "
+      + newer("power_state") + ", "
+      + newer("last_change") + ", "
+      + newer("on_since") + ", "
+      + newer("cumulative_on_seconds") + ", "
+      + newer("last_event_type") + ", "
+      + newer("last_event_at") + ", "
+      + newer("last_event_id");
+
+  private static final String SELECT_CHECKPOINT = "SELECT last_event_id FROM device_state_checkpoint WHERE id = 1";
+
+  private static final String UPSERT_CHECKPOINT = "INSERT INTO device_state_checkpoint (id, last_event_id) "
+      + "VALUES (1, ?) ON DUPLICATE KEY UPDATE last_event_id = GREATEST(last_event_id, VALUES(last_event_id))";
+
+  private static final String SELECT_SNAPSHOTS = "SELECT device_id, power_state, last_change, on_since, "
+      + "cumulative_on_seconds, last_event_type, last_event_at, last_event_id FROM device_states";
+
+  private static final String SELECT_EVENTS_AFTER = "SELECT id, device_id, event_type, timestamp FROM gps_events "
+      + "WHERE id > ? ORDER BY id";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Snapshot of one device.
+   */
+  public record StateRow(long deviceId, String powerState, LocalDateTime lastChange, LocalDateTime onSince,
+      long cumulativeOnSeconds, String lastEventType, LocalDateTime lastEventAt, long lastEventId) {
+  }
+
+  /**
+   * Receives one event at a time, in id order.
+   */
+  @FunctionalInterface
+  public interface EventHandler {
+    void handle(long eventId, long deviceId, EventType eventType, LocalDateTime timestamp);
+  }
+
+  public List<StateRow> findAll() {
+    return jdbcTemplate.query(SELECT_SNAPSHOTS, (rs, rowNum) -> new StateRow(rs.getLong(1), rs.getString(2),
+        rs.getObject(3, LocalDateTime.class), rs.getObject(4, LocalDateTime.class), rs.getLong(5),
+        rs.getString(6), rs.getObject(7, LocalDateTime.class), rs.getLong(8)));
+  }
+
+  /**
+   * @return Highest event id whose effect is already in device_states for
+   *         every device, or empty if none was recorded yet
+   */
+  public Optional<Long> findCheckpoint() {
+    return jdbcTemplate.query(SELECT_CHECKPOINT, (rs, rowNum) -> rs.getLong(1)).stream().findFirst();
+  }
+
+  /**
+   * Moves the checkpoint forward; it never goes back.
+   */
+  public void advanceCheckpoint(long eventId) {
+    jdbcTemplate.update(UPSERT_CHECKPOINT, eventId);
+  }
+
+  /**
+   * Writes all snapshots in a single JDBC batch. A row only replaces a
+   * stored one with a lower last_event_id.
+   */
+  public void upsertBatch(List<StateRow> rows) {
+    jdbcTemplate.batchUpdate(UPSERT, rows, rows.size(), this::setValues);
+  }
+
+  /**
+   * Streams the events stored after the given id, oldest first.
+   */
+  public void streamEventsAfter(long eventId, EventHandler handler) {
+    jdbcTemplate.query(con -> {
+      PreparedStatement ps = con.prepareStatement(SELECT_EVENTS_AFTER, ResultSet.TYPE_FORWARD_ONLY,
+          ResultSet.CONCUR_READ_ONLY);
+      ps.setFetchSize(Integer.MIN_VALUE);
+      ps.setLong(1, eventId);
+      return ps;
+    }, (RowCallbackHandler) rs -> handler.handle(rs.getLong(1), rs.getLong(2),
+        EventType.valueOf(rs.getString(3)), rs.getObject(4, LocalDateTime.class)));
+  }
+
+  public int deleteByDeviceId(long deviceId) {
+    return jdbcTemplate.update("DELETE FROM device_states WHERE device_id = ?", deviceId);
+  }
+
+  private static String newer(String column) {
+    return column + " = IF(VALUES(last_event_id) > last_event_id, VALUES(" + column + "), " + column + ")";
+  }
+
+  private void setValues(PreparedStatement ps, StateRow row) throws SQLException {
+    ps.setLong(1, row.deviceId());
+    ps.setString(2, row.powerState());
+    ps.setObject(3, row.lastChange());
+    ps.setObject(4, row.onSince());
+    ps.setLong(5, row.cumulativeOnSeconds());
+    ps.setString(6, row.lastEventType());
+    ps.setObject(7, row.lastEventAt());
+    ps.setLong(8, row.lastEventId());
+  }
+}
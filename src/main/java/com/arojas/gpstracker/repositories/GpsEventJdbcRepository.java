@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import com.arojas.gpstracker.entities.GpsEvent.EventType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Acceso JDBC directo a gps_events para la ingesta por lotes.
+ *
+ * @author neta1
+ */
+@Repository
+@RequiredArgsConstructor
+public class GpsEventJdbcRepository {
+
+  private static final String INSERT_EVENT = "INSERT INTO gps_events (device_id, event_type, timestamp) VALUES (?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Inserts all events in a single JDBC batch, sent by the MySQL driver as one
+   * multi-row INSERT.
+   *
+   * @param deviceIds  ID of the device of each event
+   * @param eventTypes Type of each event
+   * @param timestamps Time of each event
+   * @return Generated ids, in the same order
+   */
+  public long[] insertBatch(long[] deviceIds, EventType[] eventTypes, LocalDateTime[] timestamps) {
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    jdbcTemplate.batchUpdate(
+        con -> con.prepareStatement(INSERT_EVENT, Statement.RETURN_GENERATED_KEYS),
+        new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setLong(1, deviceIds[i]);
+            ps.setString(2, eventTypes[i].name());
+            ps.setObject(3, timestamps[i]);
+          }
+
+          @Override
+          public int getBatchSize() {
+            return deviceIds.length;
+          }
+        },
+        keyHolder);
+
+    long[] ids = new long[deviceIds.length];
+    List<Map<String, Object>> keys = keyHolder.getKeyList();
+    for (int i = 0; i < ids.length && i < keys.size(); i++) {
+      Object key = keys.get(i).values().stream().findFirst().orElse(null);
+      if (key instanceof Number number) {
+        ids[i] = number.longValue();
+      }
+    }
+    return ids;
+  }
+}
@@ -45,7 +45,8 @@ import com.arojas.gpstracker.entities.GpsEvent.EventType;
 public interface GpsEventRepository extends JpaRepository<GpsEvent, Long> {
   Page<GpsEvent> findByDeviceId(Long deviceId, Pageable pageable);
 
-  List<GpsEvent> findByDeviceIdAndEventType(Long deviceId, EventType eventType);
+  Page<GpsEvent> findByDeviceIdAndEventTypeOrderByTimestampDesc(Long deviceId, EventType eventType,
+      Pageable pageable);
 
   List<GpsEvent> findByDeviceIdAndTimestampBetweenOrderByTimestampDesc(Long deviceId,
       LocalDateTime start, LocalDateTime end);
@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.repositories;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ *
+ * @author neta1
+ *         * Acceso JDBC directo a gps_locations para las rutas de ingesta.
+ *
+ */
+@Repository
+@RequiredArgsConstructor
+public class GpsLocationJdbcRepository {
+
+  /**
+   * Returned by {@link #insertBatch} for a fix that was already stored.
+   */
+  public static final long DUPLICATE = 0L;
+
+  /**
+   * Returned by {@link #insertBatch} for a fix that was inserted but whose
+   * generated id could not be matched.
+   */
+  public static final long UNKNOWN_ID = -1L;
+
+  // INSERT simple: MySQL asigna ids consecutivos y el driver puede devolverlos por fila
+  private static final String INSERT_LOCATION = "INSERT INTO gps_locations (device_id, latitude, longitude, timestamp, seq) "
+      + "VALUES (?, ?, ?, ?, ?)";
+  private static final String SELECT_STORED_KEYS = "SELECT device_id, seq, timestamp FROM gps_locations "
+      + "WHERE (device_id, seq, timestamp) IN (";
+  private static final int KEY_LOOKUP_CHUNK = 500;
+  private static final String SELECT_RANGE = "SELECT id, latitude, longitude, timestamp FROM gps_locations "
+      + "WHERE device_id = ? AND timestamp BETWEEN ? AND ? ORDER BY timestamp, id";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Inserts the fixes that are not stored yet in a single JDBC batch. With
+   * {@code rewriteBatchedStatements=true} the MySQL driver sends it as one
+   * multi-row INSERT.
+   *
+   * <p>
+   * A rewritten batch reports {@link Statement#SUCCESS_NO_INFO} for every row,
+   * so duplicates cannot be told apart from the update counts. Instead, fixes
+   * with a sequence number are first looked up by the unique key
+   * {@code (device_id, seq, timestamp)} and only the missing ones are
+   * inserted, together with the fixes without sequence. A duplicate committed
+   * concurrently by another consumer fails the insert with a
+   * {@link org.springframework.dao.DuplicateKeyException}; retrying the batch
+   * then finds it in the lookup.
+   * </p>
+   *
+   * @param fixes      Locations to insert
+   * @param timestamps Timestamp stored for each fix
+   * @return Per fix, in the same order as {@code fixes}: the generated id,
+   *         {@link #DUPLICATE} if it was already stored or repeated in the
+   *         batch, or {@link #UNKNOWN_ID} if it was inserted but the driver
+   *         did not return its id
+   */
+  public long[] insertBatch(GpsFixBatch fixes, LocalDateTime[] timestamps) {
+    long[] ids = new long[fixes.size()];
+    Set<RowKey> stored = findStoredKeys(fixes, timestamps);
+    Set<RowKey> pending = new HashSet<>();
+    int[] rows = new int[fixes.size()];
+    int count = 0;
+    for (int i = 0; i < fixes.size(); i++) {
+      if (fixes.seq(i) > 0) {
+        RowKey key = new RowKey(fixes.deviceId(i), fixes.seq(i), timestamps[i]);
+        if (stored.contains(key) || !pending.add(key)) {
+          ids[i] = DUPLICATE;
+          continue;
+        }
+      }
+      rows[count++] = i;
+    }
+    if (count == 0) {
+      return ids;
+    }
+
+    int size = count;
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    jdbcTemplate.batchUpdate(
+        con -> con.prepareStatement(INSERT_LOCATION, Statement.RETURN_GENERATED_KEYS),
+        new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement ps, int j) throws SQLException {
+            int i = rows[j];
+            ps.setLong(1, fixes.deviceId(i));
+            ps.setDouble(2, fixes.latitude(i));
+            ps.setDouble(3, fixes.longitude(i));
+            ps.setObject(4, timestamps[i]);
+            if (fixes.seq(i) > 0) {
+              ps.setLong(5, fixes.seq(i));
+            } else {
+              ps.setNull(5, Types.BIGINT);
+            }
+          }
+
+          @Override
+          public int getBatchSize() {
+            return size;
+          }
+        },
+        keyHolder);
+
+    long[] generated = toIds(keyHolder, size);
+    for (int j = 0; j < size; j++) {
+      ids[rows[j]] = generated[j];
+    }
+    return ids;
+  }
+
+  private Set<RowKey> findStoredKeys(GpsFixBatch fixes, LocalDateTime[] timestamps) {
+    Set<RowKey> stored = new HashSet<>();
+    List<Object> args = new ArrayList<>();
+    for (int i = 0; i < fixes.size(); i++) {
+      if (fixes.seq(i) <= 0) {
+        continue;
+      }
+      args.add(fixes.deviceId(i));
+      args.add(fixes.seq(i));
+      args.add(timestamps[i]);
+      if (args.size() == KEY_LOOKUP_CHUNK * 3) {
+        queryStoredKeys(args, stored);
+        args.clear();
+      }
+    }
+    if (!args.isEmpty()) {
+      queryStoredKeys(args, stored);
+    }
+    return stored;
+  }
+
+  private void queryStoredKeys(List<Object> args, Set<RowKey> stored) {
+    StringBuilder sql = new StringBuilder(SELECT_STORED_KEYS);
+    for (int i = 0; i < args.size() / 3; i++) {
+      sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+    }
+    sql.append(')');
+    jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> stored.add(new RowKey(rs.getLong(1), rs.getLong(2),
+        rs.getObject(3, LocalDateTime.class))), args.toArray());
+  }
+
+  private record RowKey(long deviceId, long seq, LocalDateTime timestamp) {
+  }
+
+  /**
+   * Streams the locations of a device within a time range, oldest first,
+   * through a forward-only cursor. Rows are handed to the handler as they
+   * arrive and are never materialized as a list or as entities.
+   *
+   * @param deviceId ID of the device
+   * @param start    Start of the time range
+   * @param end      End of the time range
+   * @param handler  Receives each row
+   */
+  public void streamRange(long deviceId, LocalDateTime start, LocalDateTime end, LocationRowHandler handler) {
+    jdbcTemplate.query(con -> {
+      PreparedStatement ps = con.prepareStatement(SELECT_RANGE, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      // Integer.MIN_VALUE hace que Connector/J entregue las filas una a una
+      ps.setFetchSize(Integer.MIN_VALUE);
+      ps.setLong(1, deviceId);
+      ps.setObject(2, start);
+      ps.setObject(3, end);
+      return ps;
+    }, rs -> {
+      try {
+        handler.handle(rs.getLong(1), rs.getDouble(2), rs.getDouble(3), rs.getObject(4, LocalDateTime.class));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  /**
+   * Receives one location row at a time.
+   */
+  @FunctionalInterface
+  public interface LocationRowHandler {
+    void handle(long id, double latitude, double longitude, LocalDateTime timestamp) throws IOException;
+  }
+
+  private static long[] toIds(KeyHolder keyHolder, int expected) {
+    long[] ids = new long[expected];
+    Arrays.fill(ids, UNKNOWN_ID);
+    List<Map<String, Object>> keys = keyHolder.getKeyList();
+    if (keys.size() != expected) {
+      return ids;
+    }
+    for (int i = 0; i < ids.length; i++) {
+      Object key = keys.get(i).values().stream().findFirst().orElse(null);
+      if (key instanceof Number number && number.longValue() > 0) {
+        ids[i] = number.longValue();
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * DDL de particiones de gps_locations: RANGE sobre TO_DAYS(timestamp) con una
+ * partición diaria por fecha y una partición final MAXVALUE.
+ *
+ * <p>
+ * La conversión inicial de la tabla no se hace aquí: es la migración
+ * {@code db/partition-gps-locations.sql}, que se ejecuta una vez a mano.
+ * </p>
+ *
+ * @author neta1
+ */
+@Repository
+@RequiredArgsConstructor
+public class GpsLocationPartitionRepository {
+
+  /** TO_DAYS('1970-01-01') en MySQL. */
+  private static final long TO_DAYS_EPOCH = 719_528L;
+
+  public static final String MAX_PARTITION = "pmax";
+
+  private static final String SELECT_PARTITIONS = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION "
+      + "FROM information_schema.PARTITIONS "
+      + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'gps_locations' AND PARTITION_NAME IS NOT NULL "
+      + "ORDER BY PARTITION_ORDINAL_POSITION";
+
+  // Lock de sesión de MySQL: un solo nodo modifica las particiones a la vez
+  private static final String LOCK_NAME = "gps_locations_partitions";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Partición existente.
+   *
+   * @param name       Nombre
+   * @param upperBound Primer día que ya no entra en la partición, o null para
+   *                   MAXVALUE
+   */
+  public record Partition(String name, LocalDate upperBound) {
+  }
+
+  /**
+   * @return Particiones en orden, o lista vacía si la tabla no está
+   *         particionada
+   */
+  public List<Partition> findPartitions() {
+    return jdbcTemplate.query(SELECT_PARTITIONS, (rs, rowNum) -> {
+      String description = rs.getString("PARTITION_DESCRIPTION");
+      LocalDate upperBound = "MAXVALUE".equalsIgnoreCase(description) ? null
+          : LocalDate.ofEpochDay(Long.parseLong(description.trim()) - TO_DAYS_EPOCH);
+      return new Partition(rs.getString("PARTITION_NAME"), upperBound);
+    });
+  }
+
+  /**
+   * Ejecuta la acción con el lock {@code GET_LOCK} de MySQL tomado en una
+   * conexión propia, que lo retiene hasta liberarlo. No espera: si otro nodo
+   * tiene el lock, no ejecuta nada.
+   *
+   * @return false si el lock estaba tomado
+   */
+  public boolean runLocked(Runnable action) {
+    return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+      try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+        lock.setString(1, LOCK_NAME);
+        try (ResultSet rs = lock.executeQuery()) {
+          if (!rs.next() || rs.getInt(1) != 1) {
+            return false;
+          }
+        }
+      }
+      try {
+        action.run();
+        return true;
+      } finally {
+        try (PreparedStatement release = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+          release.setString(1, LOCK_NAME);
+          release.executeQuery().close();
+        }
+      }
+    }));
+  }
+
+  /**
+   * Agrega particiones diarias dividiendo la partición MAXVALUE, que está vacía
+   * mientras existan particiones para los días en curso.
+   */
+  public void addPartitions(List<LocalDate> days) {
+    jdbcTemplate.execute("ALTER TABLE gps_locations REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+        + dailyPartitions(days) + "PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)");
+  }
+
+  public void dropPartitions(List<String> names) {
+    jdbcTemplate.execute("ALTER TABLE gps_locations DROP PARTITION " + String.join(", ", names));
+  }
+
+  public static String partitionName(LocalDate day) {
+    return "p" + day.toString().replace("-", "");
+  }
+
+  private static String dailyPartitions(List<LocalDate> days) {
+    return days.stream()
+        .map(day -> "PARTITION " + partitionName(day) + " VALUES LESS THAN (" + toDays(day.plusDays(1)) + "), ")
+        .collect(Collectors.joining());
+  }
+
+  private static long toDays(LocalDate day) {
+    return day.toEpochDay() + TO_DAYS_EPOCH;
+  }
+}
@@ -25,17 +25,20 @@
 package com.arojas.gpstracker.repositories;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.query.Procedure;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.arojas.gpstracker.dto.GpsLocationDTO;
 import com.arojas.gpstracker.entities.GpsLocation;
 
 /**
@@ -53,12 +56,16 @@ public interface GpsLocationRepository extends JpaRepository<GpsLocation, Long>
      * @param deviceId  ID of the device
      * @param latitude  Latitude
      * @param longitude Longitude
+     * @param timestamp Fix time, or null for the current time
+     * @param seq       Device sequence number, or null
      */
     @Procedure(name = "insert_location")
     void insertLocation(
             @Param("p_device_id") Long deviceId,
             @Param("p_latitude") double latitude,
-            @Param("p_longitude") double longitude);
+            @Param("p_longitude") double longitude,
+            @Param("p_timestamp") LocalDateTime timestamp,
+            @Param("p_seq") Long seq);
 
     /**
      * Retrieves the latest location for a device, ordered by timestamp descending.
@@ -68,6 +75,18 @@ public interface GpsLocationRepository extends JpaRepository<GpsLocation, Long>
      */
     Optional<GpsLocation> findTopByDeviceIdOrderByTimestampDesc(Long deviceId);
 
+    /**
+     * Retrieves the latest location of each given device, projected to DTOs.
+     * Devices without locations are not returned.
+     *
+     * @param deviceIds IDs of the devices
+     * @return Latest location per device
+     */
+    @Query("SELECT new com.arojas.gpstracker.dto.GpsLocationDTO(l.id, l.latitude, l.longitude, l.timestamp, l.device.id) "
+            + "FROM GpsLocation l WHERE l.device.id IN :deviceIds AND l.timestamp = "
+            + "(SELECT MAX(l2.timestamp) FROM GpsLocation l2 WHERE l2.device.id = l.device.id)")
+    List<GpsLocationDTO> findLatestByDeviceIds(@Param("deviceIds") Collection<Long> deviceIds);
+
     /**
      * Retrieves paginated locations for a device, ordered by timestamp descending.
      *
@@ -78,6 +97,39 @@ public interface GpsLocationRepository extends JpaRepository<GpsLocation, Long>
     @Query("SELECT l FROM GpsLocation l WHERE l.device.id = :deviceId ORDER BY l.timestamp DESC")
     Page<GpsLocation> findAllByDeviceIdOrderByTimestampDesc(@Param("deviceId") Long deviceId, Pageable pageable);
 
+    /**
+     * Retrieves the first slice of a device's history, newest first, projected
+     * to DTOs. No count query is executed.
+     *
+     * @param deviceId ID of the device
+     * @param pageable Slice size (page number must be 0)
+     * @return Slice of locations
+     */
+    @Query("SELECT new com.arojas.gpstracker.dto.GpsLocationDTO(l.id, l.latitude, l.longitude, l.timestamp, l.device.id) "
+            + "FROM GpsLocation l WHERE l.device.id = :deviceId ORDER BY l.timestamp DESC, l.id DESC")
+    Slice<GpsLocationDTO> findHistorySlice(@Param("deviceId") Long deviceId, Pageable pageable);
+
+    /**
+     * Retrieves the slice of a device's history that follows the
+     * {@code (timestamp, id)} cursor, seeking on idx_device_id_timestamp so the
+     * cost does not depend on how deep the client has scrolled.
+     *
+     * @param deviceId  ID of the device
+     * @param timestamp Timestamp of the last row already returned
+     * @param id        ID of the last row already returned
+     * @param pageable  Slice size (page number must be 0)
+     * @return Slice of locations older than the cursor
+     */
+    @Query("SELECT new com.arojas.gpstracker.dto.GpsLocationDTO(l.id, l.latitude, l.longitude, l.timestamp, l.device.id) "
+            + "FROM GpsLocation l WHERE l.device.id = :deviceId "
+            + "AND (l.timestamp < :timestamp OR (l.timestamp = :timestamp AND l.id < :id)) "
+            + "ORDER BY l.timestamp DESC, l.id DESC")
+    Slice<GpsLocationDTO> findHistorySliceBefore(
+            @Param("deviceId") Long deviceId,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("id") Long id,
+            Pageable pageable);
+
     /**
      * Retrieves locations for a device within a time range, ordered by timestamp
      * descending.
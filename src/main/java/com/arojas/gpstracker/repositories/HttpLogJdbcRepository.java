@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.arojas.gpstracker.entities.HttpLog;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Acceso JDBC directo a http_logs para el escritor asíncrono.
+ *
+ * @author neta1
+ */
+@Repository
+@RequiredArgsConstructor
+public class HttpLogJdbcRepository {
+
+  private static final String INSERT_LOG = "INSERT INTO http_logs (method, url, query_params, request_body, "
+      + "response_body, status_code, response_time_ms, client_ip, user_agent, user_email, created_at) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Inserts all logs in a single JDBC batch.
+   *
+   * @param logs Logs to insert
+   */
+  public void insertBatch(List<HttpLog> logs) {
+    jdbcTemplate.batchUpdate(INSERT_LOG, logs, logs.size(), this::setValues);
+  }
+
+  private void setValues(PreparedStatement ps, HttpLog log) throws SQLException {
+    ps.setString(1, log.getMethod());
+    ps.setString(2, log.getUrl());
+    ps.setString(3, log.getQueryParams());
+    ps.setString(4, log.getRequestBody());
+    ps.setString(5, log.getResponseBody());
+    ps.setInt(6, log.getStatusCode());
+    ps.setLong(7, log.getResponseTimeMs());
+    ps.setString(8, log.getClientIp());
+    ps.setString(9, log.getUserAgent());
+    ps.setString(10, log.getUserEmail());
+    ps.setObject(11, log.getCreatedAt());
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.arojas.gpstracker.services.CacheInvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+/**
+ * Caché de tokens de acceso ya verificados.
+ *
+ * <p>
+ * La clave es el SHA-256 del token, no el token en sí. Cada entrada expira
+ * cuando expira el token, así que un token vencido nunca se acepta desde la
+ * caché.
+ * </p>
+ *
+ * <p>
+ * Cada nodo tiene su propia caché: {@link #evictUser} descarta las entradas
+ * del usuario en este nodo y lo avisa a los demás por
+ * {@link CacheInvalidationBus}. El aviso lleva un número derivado del email
+ * (los primeros 8 bytes de su SHA-256), no el email; una colisión solo
+ * descarta entradas de más.
+ * </p>
+ *
+ * @author neta1
+ */
+@Component
+public class JwtAuthenticationCache {
+
+  static final String TOPIC = "auth-user";
+
+  private record Entry(UserDetails userDetails, long expiresAtMillis) {
+  }
+
+  private final Cache<String, Entry> cache;
+  private final CacheInvalidationBus invalidationBus;
+
+  public JwtAuthenticationCache(CacheInvalidationBus invalidationBus,
+      @Value("${jwt.auth-cache.maximum-size:10000}") long maximumSize) {
+    this.invalidationBus = invalidationBus;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfter(new Expiry<String, Entry>() {
+          @Override
+          public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return remainingNanos(entry);
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return remainingNanos(entry);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .build();
+    invalidationBus.subscribe(TOPIC, this::evictUserKeys);
+  }
+
+  /**
+   * @return The user authenticated by this token, or null if the token has not
+   *         been verified yet or has expired
+   */
+  public UserDetails get(String token) {
+    Entry entry = cache.getIfPresent(hash(token));
+    if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+      return null;
+    }
+    return entry.userDetails();
+  }
+
+  public void put(String token, UserDetails userDetails, Date expiresAt) {
+    if (expiresAt == null) {
+      return; // sin exp no hay forma segura de acotar la entrada
+    }
+    cache.put(hash(token), new Entry(userDetails, expiresAt.getTime()));
+  }
+
+  /**
+   * Descarta las entradas de un usuario en todos los nodos. Debe llamarse en
+   * todo cambio que invalide la autenticación guardada: contraseña, roles,
+   * cierre de sesión o baja del usuario.
+   */
+  public void evictUser(String email) {
+    cache.asMap().values().removeIf(entry -> entry.userDetails().getUsername().equals(email));
+    invalidationBus.publish(TOPIC, userKey(email));
+  }
+
+  private void evictUserKeys(long[] keys) {
+    Set<Long> evicted = new HashSet<>(keys.length * 2);
+    for (long key : keys) {
+      evicted.add(key);
+    }
+    cache.asMap().values().removeIf(entry -> evicted.contains(userKey(entry.userDetails().getUsername())));
+  }
+
+  static long userKey(String email) {
+    return ByteBuffer.wrap(sha256(email)).getLong();
+  }
+
+  private static long remainingNanos(Entry entry) {
+    long remainingMillis = entry.expiresAtMillis() - System.currentTimeMillis();
+    return Math.max(0, remainingMillis) * 1_000_000L;
+  }
+
+  private static String hash(String token) {
+    return Base64.getEncoder().encodeToString(sha256(token));
+  }
+
+  private static byte[] sha256(String value) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -29,11 +29,15 @@ import java.io.IOException;
 import org.apache.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -51,6 +55,7 @@ public class JwtFilter extends OncePerRequestFilter {
 
   private final JwtUtil jwtUtil;
   private final UserDetailsService userDetailsService;
+  private final JwtAuthenticationCache authenticationCache;
 
   @Override
   protected void doFilterInternal(HttpServletRequest request,
@@ -66,20 +71,34 @@ public class JwtFilter extends OncePerRequestFilter {
     }
 
     final String token = authHeader.substring(7);
-    final String email = jwtUtil.extractEmail(token);
-
-    if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-      var userDetails = userDetailsService.loadUserByUsername(email);
 
-      if (jwtUtil.validateToken(token)) {
-        var authToken = new UsernamePasswordAuthenticationToken(
-            userDetails,
-            null,
-            userDetails.getAuthorities());
-        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+    if (SecurityContextHolder.getContext().getAuthentication() == null) {
+      UserDetails userDetails = authenticationCache.get(token);
 
-        SecurityContextHolder.getContext().setAuthentication(authToken);
+      if (userDetails == null) {
+        // Primera vez que se ve este token: una verificación HMAC y una consulta
+        DecodedJWT decodedJWT;
+        try {
+          decodedJWT = jwtUtil.verify(token);
+        } catch (JWTVerificationException e) {
+          filterChain.doFilter(request, response);
+          return;
+        }
+        if (decodedJWT.getSubject() == null) {
+          filterChain.doFilter(request, response);
+          return;
+        }
+        userDetails = userDetailsService.loadUserByUsername(decodedJWT.getSubject());
+        authenticationCache.put(token, userDetails, decodedJWT.getExpiresAt());
       }
+
+      var authToken = new UsernamePasswordAuthenticationToken(
+          userDetails,
+          null,
+          userDetails.getAuthorities());
+      authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+      SecurityContextHolder.getContext().setAuthentication(authToken);
     }
 
     filterChain.doFilter(request, response);
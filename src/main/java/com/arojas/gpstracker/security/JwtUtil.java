@@ -30,6 +30,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
@@ -53,10 +54,13 @@ public class JwtUtil {
   private long refreshTokenExpirationMs;
 
   private Algorithm algorithm;
+  private JWTVerifier verifier;
 
   @PostConstruct
   public void init() {
     algorithm = Algorithm.HMAC256(secret);
+    // JWTVerifier es inmutable y thread-safe: se construye una sola vez
+    verifier = JWT.require(algorithm).build();
   }
 
   public String generateAccessToken(String email) {
@@ -79,16 +83,24 @@ public class JwtUtil {
 
   public boolean validateToken(String token) {
     try {
-      JWT.require(algorithm).build().verify(token);
+      verifier.verify(token);
       return true;
     } catch (JWTVerificationException e) {
       return false;
     }
   }
 
+  /**
+   * Verifies the signature and expiry once and returns the decoded token.
+   *
+   * @throws JWTVerificationException if the token is not valid
+   */
+  public DecodedJWT verify(String token) {
+    return verifier.verify(token);
+  }
+
   public String extractEmail(String token) {
-    DecodedJWT decodedJWT = JWT.require(algorithm).build().verify(token);
-    return decodedJWT.getSubject();
+    return verifier.verify(token).getSubject();
   }
 
   public boolean isRefreshToken(String token) {
@@ -24,59 +24,224 @@
 
 package com.arojas.gpstracker.services;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.arojas.gpstracker.dto.AlertResponse;
+import com.arojas.gpstracker.dto.BulkResolveRequest;
+import com.arojas.gpstracker.dto.BulkResolveResponse;
 import com.arojas.gpstracker.entities.Alert;
-import com.arojas.gpstracker.entities.Device;
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.exception.BadRequestException;
 import com.arojas.gpstracker.exception.NotFoundException;
 import com.arojas.gpstracker.mappers.AlertMapper;
 import com.arojas.gpstracker.repositories.AlertRepository;
+import com.arojas.gpstracker.repositories.AlertRepository.AlertRef;
+import com.arojas.gpstracker.repositories.AlertRepository.UnresolvedAlertRow;
 import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.services.DeviceRegistry.DeviceEntry;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service for managing alerts.
  *
+ * <p>
+ * Las alertas repetidas se deduplican por (dispositivo, tipo) y, en las de
+ * geocercas, también por mensaje, que nombra la geocerca: mientras la alerta
+ * abierta siga recibiendo repeticiones dentro de la ventana de supresión,
+ * cada repetición solo suma una ocurrencia en memoria. Las ocurrencias se
+ * escriben en lote y la difusión por WebSocket se limita por dispositivo; las
+ * actualizaciones retenidas se envían agregadas en el siguiente flush.
+ * </p>
+ *
+ * <p>
+ * Una alerta resuelta en otro nodo sale de la ventana de supresión al llegar
+ * el aviso del tema {@value UnresolvedAlertIndex#TOPIC}; si el aviso se
+ * pierde, el flush lo detecta porque ya no puede sumar ocurrencias a una
+ * alerta resuelta.
+ * </p>
+ *
  * @author neta1
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AlertService {
 
+  private static final int RESOLVE_CHUNK = 500;
+
+  // subject distingue las alertas de geocercas distintas; null en los demás tipos
+  private record AlertKey(long deviceId, AlertType type, String subject) {
+
+    static AlertKey of(long deviceId, Alert alert) {
+      boolean perFence = alert.getType() == AlertType.GEOFENCE_ENTERED
+          || alert.getType() == AlertType.LOCATION_OUT_OF_BOUNDS;
+      return new AlertKey(deviceId, alert.getType(), perFence ? alert.getMessage() : null);
+    }
+  }
+
+  // Alerta abierta en la ventana de supresión. Se modifica con su propio lock.
+  private static final class OpenAlert {
+    Alert alert;
+    long lastSeenAt;
+    int pendingOccurrences;
+    boolean pushPending;
+    boolean retired;
+  }
+
   private final AlertRepository alertRepository;
   private final DeviceRepository deviceRepository;
+  private final DeviceRegistry deviceRegistry;
+  private final UnresolvedAlertIndex unresolvedAlertIndex;
   private final AlertMapper alertMapper;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final WebSocketClusterRelay webSocketRelay;
+
+  private final Map<AlertKey, OpenAlert> openAlerts = new ConcurrentHashMap<>();
+  private final Map<Long, AtomicLong> lastPushByDevice = new ConcurrentHashMap<>();
+
+  @Value("${gps.alerts.dedup-window:5m}")
+  private Duration dedupWindow;
+
+  @Value("${gps.alerts.push-min-interval:1s}")
+  private Duration pushMinInterval;
+
+  public AlertService(AlertRepository alertRepository, DeviceRepository deviceRepository,
+      DeviceRegistry deviceRegistry, UnresolvedAlertIndex unresolvedAlertIndex, AlertMapper alertMapper,
+      WebSocketClusterRelay webSocketRelay, CacheInvalidationBus invalidationBus) {
+    this.alertRepository = alertRepository;
+    this.deviceRepository = deviceRepository;
+    this.deviceRegistry = deviceRegistry;
+    this.unresolvedAlertIndex = unresolvedAlertIndex;
+    this.alertMapper = alertMapper;
+    this.webSocketRelay = webSocketRelay;
+    invalidationBus.subscribe(UnresolvedAlertIndex.TOPIC, this::alertsChanged);
+  }
 
   public Alert createAlert(Long deviceId, Alert alert) {
-    Device device = deviceRepository.findById(deviceId)
-        .orElseThrow(() -> new NotFoundException("Dispositivo no encontrado con ID: " + deviceId));
+    AlertKey key = AlertKey.of(deviceId, alert);
+    while (true) {
+      OpenAlert open = openAlerts.computeIfAbsent(key, k -> new OpenAlert());
+      synchronized (open) {
+        if (open.retired) {
+          continue; // retirada por el flush mientras se esperaba el lock
+        }
+        long now = System.currentTimeMillis();
+        if (open.alert != null && now - open.lastSeenAt < dedupWindow.toMillis()) {
+          open.lastSeenAt = now;
+          open.pendingOccurrences++;
+          open.alert.setOccurrences(open.alert.getOccurrences() + 1);
+          open.alert.setLastOccurredAt(LocalDateTime.now());
+          open.pushPending = true;
+          log.debug("Alerta {} repetida para dispositivo {}: {} ocurrencias", alert.getType(), deviceId,
+              open.alert.getOccurrences());
+          return copyOf(open.alert);
+        }
+
+        // Ventana vencida o primera alerta: se guarda una nueva
+        flushOccurrences(open);
+        Alert saved = insert(deviceId, alert);
+        open.alert = saved;
+        open.lastSeenAt = now;
+        open.pushPending = !tryPush(saved);
+        return copyOf(saved);
+      }
+    }
+  }
+
+  private Alert insert(Long deviceId, Alert alert) {
+    DeviceEntry device = deviceRegistry.get(deviceId);
+    if (device == null) {
+      throw new NotFoundException("Dispositivo no encontrado con ID: " + deviceId);
+    }
 
-    alert.setDevice(device);
-    alert.setCreatedAt(LocalDateTime.now());
+    alert.setDevice(deviceRepository.getReferenceById(deviceId));
+    LocalDateTime now = LocalDateTime.now();
+    alert.setCreatedAt(now);
+    alert.setLastOccurredAt(now);
+    alert.setOccurrences(1);
     alert.setResolved(false);
 
     Alert saved = alertRepository.save(alert);
+    unresolvedAlertIndex.add(saved, device.ownerId());
+    return saved;
+  }
 
-    // Notificación WebSocket
-    AlertResponse response = alertMapper.toResponse(saved);
-    messagingTemplate.convertAndSend("/topic/alerts/" + deviceId, response);
-    log.info("Alerta enviada a WebSocket para dispositivo {}: {}", deviceId, response.getMessage());
+  /**
+   * Escribe las ocurrencias acumuladas, envía las notificaciones retenidas y
+   * retira las alertas cuya ventana de supresión venció.
+   */
+  @Scheduled(fixedDelayString = "${gps.alerts.flush-interval-ms:2000}")
+  public void flush() {
+    long now = System.currentTimeMillis();
+    for (Map.Entry<AlertKey, OpenAlert> entry : openAlerts.entrySet()) {
+      OpenAlert open = entry.getValue();
+      synchronized (open) {
+        if (open.retired) {
+          continue;
+        }
+        boolean stillOpen = true;
+        try {
+          stillOpen = flushOccurrences(open);
+          if (stillOpen && open.pushPending && open.alert != null) {
+            push(open.alert);
+            open.pushPending = false;
+          }
+        } catch (Exception e) {
+          log.error("Error al actualizar la alerta {}: {}", open.alert.getId(), e.getMessage());
+        }
+        if (!stillOpen || open.alert == null || now - open.lastSeenAt >= dedupWindow.toMillis()) {
+          open.retired = true;
+          openAlerts.remove(entry.getKey(), open);
+        }
+      }
+    }
+  }
 
-    return saved;
+  /**
+   * Saca de la ventana de supresión las alertas que otro nodo resolvió.
+   */
+  void alertsChanged(long[] alertIds) {
+    Map<Long, AlertKey> watched = new HashMap<>();
+    Set<Long> changed = new HashSet<>(alertIds.length * 2);
+    for (long alertId : alertIds) {
+      changed.add(alertId);
+    }
+    openAlerts.forEach((key, open) -> {
+      Alert alert = open.alert;
+      if (alert != null && changed.contains(alert.getId())) {
+        watched.put(alert.getId(), key);
+      }
+    });
+    if (watched.isEmpty()) {
+      return;
+    }
+    for (UnresolvedAlertRow row : alertRepository.findUnresolvedByIds(watched.keySet())) {
+      watched.remove(row.getId());
+    }
+    watched.forEach((alertId, key) -> retire(key, alertId));
   }
 
   public Alert resolveAlert(Long alertId) {
+    // Primero se vuelcan las ocurrencias pendientes de la alerta
+    retireAll(Set.of(alertId));
+
     Alert alert = alertRepository.findById(alertId)
         .orElseThrow(() -> new NotFoundException("Alerta no encontrada con ID: " + alertId));
 
@@ -85,7 +250,177 @@ public class AlertService {
 
     log.info("Marcando alerta ID {} como resuelta", alertId);
 
-    return alertRepository.save(alert);
+    Alert saved = alertRepository.save(alert);
+    unresolvedAlertIndex.remove(alertId);
+    return saved;
+  }
+
+  /**
+   * Resuelve en bloque las alertas sin resolver que cumplen los criterios. Los
+   * IDs se seleccionan con una consulta y se resuelven con un UPDATE por bloque
+   * de {@value #RESOLVE_CHUNK}; al final se envía una sola notificación
+   * agregada. Solo se consideran las alertas de dispositivos del usuario.
+   *
+   * @param ownerId ID del usuario autenticado
+   */
+  public BulkResolveResponse resolveAlerts(BulkResolveRequest request, long ownerId) {
+    boolean hasIds = request.getAlertIds() != null && !request.getAlertIds().isEmpty();
+    if (!hasIds && request.getDeviceId() == null && request.getType() == null
+        && request.getFrom() == null && request.getTo() == null) {
+      throw new BadRequestException("Debe indicar al menos un criterio");
+    }
+    if (request.getDeviceId() != null && !deviceRegistry.isOwnedBy(request.getDeviceId(), ownerId)) {
+      throw new NotFoundException("Dispositivo no encontrado con ID: " + request.getDeviceId());
+    }
+
+    List<AlertRef> refs = new ArrayList<>();
+    if (hasIds) {
+      List<Long> ids = List.copyOf(new LinkedHashSet<>(request.getAlertIds()));
+      for (int i = 0; i < ids.size(); i += RESOLVE_CHUNK) {
+        refs.addAll(alertRepository.findUnresolvedRefsByIds(ids.subList(i, Math.min(i + RESOLVE_CHUNK, ids.size())),
+            ownerId, request.getDeviceId(), request.getType(), request.getFrom(), request.getTo()));
+      }
+    } else {
+      refs = alertRepository.findUnresolvedRefs(ownerId, request.getDeviceId(), request.getType(),
+          request.getFrom(), request.getTo());
+    }
+
+    // Volcar las ocurrencias pendientes antes de cerrar las alertas
+    Set<Long> selected = new HashSet<>(refs.size() * 2);
+    refs.forEach(ref -> selected.add(ref.getId()));
+    retireAll(selected);
+
+    LocalDateTime resolvedAt = LocalDateTime.now();
+    int resolved = 0;
+    Map<AlertType, Integer> byType = new EnumMap<>(AlertType.class);
+    Map<Long, Integer> byDevice = new HashMap<>();
+    for (int i = 0; i < refs.size(); i += RESOLVE_CHUNK) {
+      List<AlertRef> chunk = refs.subList(i, Math.min(i + RESOLVE_CHUNK, refs.size()));
+      List<Long> ids = chunk.stream().map(AlertRef::getId).toList();
+      resolved += alertRepository.resolveAlerts(ids, resolvedAt);
+      for (AlertRef ref : chunk) {
+        unresolvedAlertIndex.remove(ref.getId());
+        byType.merge(ref.getType(), 1, Integer::sum);
+        byDevice.merge(ref.getDeviceId(), 1, Integer::sum);
+      }
+    }
+
+    BulkResolveResponse response = new BulkResolveResponse(resolved, byType, byDevice);
+    if (resolved > 0) {
+      webSocketRelay.send("/topic/alerts/resolved", response);
+    }
+    log.info("Resolución masiva: {} alertas resueltas en {} dispositivos", resolved, byDevice.size());
+    return response;
+  }
+
+  /**
+   * Resuelve las alertas abiertas de un tipo para el dispositivo.
+   *
+   * @return Número de alertas resueltas
+   */
+  @Transactional
+  public int resolveOpenAlerts(Long deviceId, AlertType type) {
+    openAlerts.forEach((key, open) -> {
+      if (key.deviceId() == deviceId && key.type() == type) {
+        retire(key, null);
+      }
+    });
+    int resolved = alertRepository.resolveOpenAlerts(deviceId, type, LocalDateTime.now());
+    DeviceEntry device = deviceRegistry.get(deviceId);
+    if (device != null) {
+      unresolvedAlertIndex.removeOpen(deviceId, device.ownerId(), type);
+    }
+    return resolved;
+  }
+
+  /**
+   * Indica si el dispositivo tiene una alerta de ese tipo sin resolver, según
+   * el índice en memoria.
+   */
+  public boolean hasOpenAlert(long deviceId, AlertType type) {
+    DeviceEntry device = deviceRegistry.get(deviceId);
+    return device != null && unresolvedAlertIndex.hasOpen(deviceId, device.ownerId(), type);
+  }
+
+  private void retireAll(Set<Long> alertIds) {
+    openAlerts.forEach((key, open) -> {
+      Alert alert = open.alert;
+      if (alert != null && alertIds.contains(alert.getId())) {
+        retire(key, alert.getId());
+      }
+    });
+  }
+
+  // Saca la alerta de la ventana de supresión; la siguiente repetición crea una nueva
+  private void retire(AlertKey key, Long alertId) {
+    OpenAlert open = openAlerts.get(key);
+    if (open == null) {
+      return;
+    }
+    synchronized (open) {
+      if (open.retired || open.alert == null || (alertId != null && !alertId.equals(open.alert.getId()))) {
+        return;
+      }
+      flushOccurrences(open);
+      open.retired = true;
+      openAlerts.remove(key, open);
+    }
+  }
+
+  /**
+   * Escribe las ocurrencias pendientes.
+   *
+   * @return false si la alerta ya estaba resuelta (por ejemplo, en otro nodo)
+   */
+  private boolean flushOccurrences(OpenAlert open) {
+    if (open.pendingOccurrences == 0) {
+      return true;
+    }
+    int updated = alertRepository.addOccurrences(open.alert.getId(), open.pendingOccurrences,
+        open.alert.getLastOccurredAt());
+    open.pendingOccurrences = 0;
+    if (updated == 0) {
+      log.debug("La alerta {} ya estaba resuelta: se retira de la ventana de supresión", open.alert.getId());
+      return false;
+    }
+    unresolvedAlertIndex.updateOccurrences(open.alert.getId(), open.alert.getOccurrences(),
+        open.alert.getLastOccurredAt());
+    return true;
+  }
+
+  // Envía si el dispositivo no recibió otra notificación en el intervalo mínimo
+  private boolean tryPush(Alert alert) {
+    long deviceId = alert.getDevice().getId();
+    long now = System.currentTimeMillis();
+    AtomicLong lastPush = lastPushByDevice.computeIfAbsent(deviceId, id -> new AtomicLong());
+    long last = lastPush.get();
+    if (now - last < pushMinInterval.toMillis() || !lastPush.compareAndSet(last, now)) {
+      return false;
+    }
+    push(alert);
+    return true;
+  }
+
+  private void push(Alert alert) {
+    Long deviceId = alert.getDevice().getId();
+    AlertResponse response = alertMapper.toResponse(alert);
+    webSocketRelay.send("/topic/alerts/" + deviceId, response);
+    lastPushByDevice.computeIfAbsent(deviceId, id -> new AtomicLong()).set(System.currentTimeMillis());
+    log.info("Alerta enviada a WebSocket para dispositivo {}: {}", deviceId, response.getMessage());
+  }
+
+  private static Alert copyOf(Alert alert) {
+    return Alert.builder()
+        .id(alert.getId())
+        .type(alert.getType())
+        .message(alert.getMessage())
+        .resolved(alert.isResolved())
+        .createdAt(alert.getCreatedAt())
+        .resolvedAt(alert.getResolvedAt())
+        .occurrences(alert.getOccurrences())
+        .lastOccurredAt(alert.getLastOccurredAt())
+        .device(alert.getDevice())
+        .build();
   }
 
   public Page<Alert> getAlertsForDevice(Long deviceId, Boolean resolved, Pageable pageable) {
@@ -97,8 +432,25 @@ public class AlertService {
     }
   }
 
-  public List<Alert> getUnresolvedAlerts() {
-    log.debug("Consultando alertas no resueltas");
-    return alertRepository.findByResolvedFalseOrderByCreatedAtDesc();
+  /**
+   * Alertas sin resolver, de la más reciente a la más antigua, desde el
+   * índice en memoria.
+   */
+  public Page<AlertResponse> getUnresolvedAlerts(Pageable pageable) {
+    log.debug("Consultando alertas no resueltas, página: {}", pageable);
+    return unresolvedAlertIndex.page(pageable);
+  }
+
+  public Page<AlertResponse> getUnresolvedAlertsForOwner(Long ownerId, Pageable pageable) {
+    log.debug("Consultando alertas no resueltas del usuario {}, página: {}", ownerId, pageable);
+    return unresolvedAlertIndex.pageForOwner(ownerId, pageable);
+  }
+
+  public Map<AlertType, Long> countUnresolvedByType() {
+    return unresolvedAlertIndex.counts();
+  }
+
+  public Map<AlertType, Long> countUnresolvedByTypeForOwner(Long ownerId) {
+    return unresolvedAlertIndex.countsForOwner(ownerId);
   }
-}
\ No newline at end of file
+}
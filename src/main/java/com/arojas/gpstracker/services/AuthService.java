@@ -36,6 +36,7 @@ import com.arojas.gpstracker.entities.User;
 import com.arojas.gpstracker.exception.BadRequestException;
 import com.arojas.gpstracker.exception.InvalidCredentialsException;
 import com.arojas.gpstracker.exception.UnauthorizedException;
+import com.arojas.gpstracker.security.JwtAuthenticationCache;
 import com.arojas.gpstracker.security.JwtUtil;
 
 import lombok.RequiredArgsConstructor;
@@ -54,6 +55,7 @@ public class AuthService {
   private final RedisService redisService;
   private final JwtUtil jwtUtil;
   private final AuthenticationManager authenticationManager;
+  private final JwtAuthenticationCache authenticationCache;
 
   /**
    * Registra un nuevo usuario y genera tokens.
@@ -120,13 +122,14 @@ public class AuthService {
   }
 
   /**
-   * Elimina el refresh token para cerrar sesión.
+   * Elimina el refresh token y las autenticaciones en caché para cerrar sesión.
    *
    * @param email Email del usuario que cierra sesión
    */
   public void logout(String email) {
     log.info("Cerrando sesión para usuario: {}", email);
     redisService.deleteRefreshToken(email);
+    authenticationCache.evictUser(email);
   }
 
   /**
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.config.IngestRedis;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Invalidación de cachés locales entre nodos por pub/sub de Redis.
+ *
+ * <p>
+ * Un mensaje lleva el nodo de origen, un tema y una lista de IDs:
+ * {@code nodo|tema|1,2,3}. Cada nodo ignora sus propios mensajes y entrega
+ * los demás a los manejadores registrados para el tema. El tema
+ * {@code cache:<nombre>} vacía la caché de Spring con ese nombre. El pub/sub
+ * no garantiza la entrega, por eso las cachés locales además expiran solas.
+ * Se publica por {@link IngestRedis} porque los avisos salen del hilo del
+ * consumidor de Kafka.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class CacheInvalidationBus {
+
+  public static final String CHANNEL = "gps:cache-invalidation";
+  private static final String CACHE_TOPIC_PREFIX = "cache:";
+
+  private final StringRedisTemplate redisTemplate;
+  private final CacheManager cacheManager;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final Map<String, List<Consumer<long[]>>> handlers = new ConcurrentHashMap<>();
+
+  public CacheInvalidationBus(IngestRedis ingestRedis, CacheManager cacheManager,
+      RedisMessageListenerContainer listenerContainer) {
+    this.redisTemplate = ingestRedis.template();
+    this.cacheManager = cacheManager;
+    listenerContainer.addMessageListener(
+        (message, pattern) -> receive(new String(message.getBody(), StandardCharsets.UTF_8)),
+        new ChannelTopic(CHANNEL));
+  }
+
+  /**
+   * Registers a handler that invalidates local entries for a topic. A topic
+   * may have several handlers; each one runs even if another fails.
+   */
+  public void subscribe(String topic, Consumer<long[]> handler) {
+    handlers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(handler);
+  }
+
+  /**
+   * Tells the other nodes that the given entries changed. Failures are logged:
+   * the remote entries then expire on their own.
+   */
+  public void publish(String topic, long... ids) {
+    StringBuilder message = new StringBuilder(nodeId.length() + topic.length() + 2 + ids.length * 8)
+        .append(nodeId).append('|').append(topic).append('|');
+    for (int i = 0; i < ids.length; i++) {
+      if (i > 0) {
+        message.append(',');
+      }
+      message.append(ids[i]);
+    }
+    try {
+      redisTemplate.convertAndSend(CHANNEL, message.toString());
+    } catch (RuntimeException e) {
+      log.warn("No se pudo publicar la invalidación de {}: {}", topic, e.getMessage());
+    }
+  }
+
+  /**
+   * Clears a Spring cache on this node and on the others.
+   */
+  public void evictCache(String cacheName) {
+    clearLocal(cacheName);
+    publish(CACHE_TOPIC_PREFIX + cacheName);
+  }
+
+  private void receive(String message) {
+    int first = message.indexOf('|');
+    int second = first < 0 ? -1 : message.indexOf('|', first + 1);
+    if (second < 0) {
+      log.warn("Mensaje de invalidación mal formado: {}", message);
+      return;
+    }
+    if (message.startsWith(nodeId) && first == nodeId.length()) {
+      return;
+    }
+    String topic = message.substring(first + 1, second);
+    if (topic.startsWith(CACHE_TOPIC_PREFIX)) {
+      clearLocal(topic.substring(CACHE_TOPIC_PREFIX.length()));
+      return;
+    }
+    List<Consumer<long[]>> topicHandlers = handlers.get(topic);
+    if (topicHandlers == null) {
+      return;
+    }
+    long[] ids = parseIds(message.substring(second + 1));
+    for (Consumer<long[]> handler : topicHandlers) {
+      try {
+        handler.accept(ids);
+      } catch (RuntimeException e) {
+        log.warn("Error al aplicar la invalidación de {}: {}", topic, e.getMessage());
+      }
+    }
+  }
+
+  private void clearLocal(String cacheName) {
+    Cache cache = cacheManager.getCache(cacheName);
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  private static long[] parseIds(String list) {
+    if (list.isEmpty()) {
+      return new long[0];
+    }
+    String[] parts = list.split(",");
+    long[] ids = new long[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      ids[i] = Long.parseLong(parts[i]);
+    }
+    return ids;
+  }
+}
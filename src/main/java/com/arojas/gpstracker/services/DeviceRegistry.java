@@ -0,0 +1,286 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.entities.Device;
+import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.repositories.DeviceRepository.DeviceSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registro en memoria de los dispositivos: dueño, estado de activación e
+ * identificador, indexados por ID primitivo.
+ *
+ * <p>
+ * Las lecturas no toman locks ni crean objetos: usan una tabla de
+ * direccionamiento abierto que se reemplaza completa (copy-on-write) en cada
+ * escritura. Las escrituras son poco frecuentes (alta, activación y baja de
+ * dispositivos). Si un ID no está en memoria se consulta la base de datos una
+ * vez, lo que cubre el arranque y los dispositivos dados de alta en otro nodo.
+ * Los IDs que no existen se recuerdan en una caché acotada
+ * ({@code gps.devices.negative-cache.*}) para que una ráfaga de mensajes con
+ * IDs desconocidos no se convierta en una consulta por mensaje.
+ * </p>
+ *
+ * <p>
+ * Las altas, activaciones y bajas se anuncian a los demás nodos por
+ * {@link CacheInvalidationBus}; cada nodo descarta su entrada y la vuelve a
+ * leer de la base de datos en el siguiente acceso.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class DeviceRegistry {
+
+  /**
+   * Datos del dispositivo que se consultan en cada mensaje.
+   *
+   * @param ownerId    ID del usuario dueño, 0 si no tiene
+   * @param activated  Estado de activación
+   * @param identifier Identificador del hardware
+   */
+  public record DeviceEntry(long ownerId, boolean activated, String identifier) {
+  }
+
+  static final String TOPIC = "device";
+
+  private final DeviceRepository deviceRepository;
+  private final CacheInvalidationBus invalidationBus;
+  private final Cache<Long, Boolean> unknown;
+
+  private volatile Table table = new Table(16);
+  private volatile long changes;
+
+  public DeviceRegistry(DeviceRepository deviceRepository, CacheInvalidationBus invalidationBus,
+      @Value("${gps.devices.negative-cache.maximum-size:10000}") long negativeCacheSize,
+      @Value("${gps.devices.negative-cache.ttl:30s}") Duration negativeCacheTtl) {
+    this.deviceRepository = deviceRepository;
+    this.invalidationBus = invalidationBus;
+    this.unknown = Caffeine.newBuilder()
+        .maximumSize(negativeCacheSize)
+        .expireAfterWrite(negativeCacheTtl)
+        .build();
+    invalidationBus.subscribe(TOPIC, ids -> {
+      for (long deviceId : ids) {
+        evict(deviceId);
+      }
+    });
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    List<DeviceSummary> devices = deviceRepository.findAllSummaries();
+    synchronized (this) {
+      Table current = table;
+      Table loaded = new Table(Table.capacityFor(devices.size() + current.size));
+      current.copyInto(loaded);
+      for (DeviceSummary device : devices) {
+        // Lo escrito mientras se leía la tabla tiene prioridad
+        if (loaded.get(device.getId()) == null) {
+          loaded.insert(device.getId(), toEntry(device));
+        }
+      }
+      table = loaded;
+    }
+    log.info("Registro de dispositivos cargado: {} dispositivos", table.size);
+  }
+
+  /**
+   * Devuelve los datos del dispositivo o {@code null} si no existe.
+   */
+  public DeviceEntry get(long deviceId) {
+    DeviceEntry entry = table.get(deviceId);
+    if (entry != null) {
+      return entry;
+    }
+    if (unknown.getIfPresent(deviceId) != null) {
+      return null;
+    }
+    long generation = changes;
+    DeviceEntry loaded = deviceRepository.findSummaryById(deviceId).map(DeviceRegistry::toEntry).orElse(null);
+    synchronized (this) {
+      // Si llegó un aviso durante la consulta, lo leído puede estar desactualizado
+      if (generation != changes) {
+        return loaded;
+      }
+      if (loaded != null) {
+        store(deviceId, loaded);
+      } else {
+        unknown.put(deviceId, Boolean.TRUE);
+      }
+    }
+    return loaded;
+  }
+
+  public boolean exists(long deviceId) {
+    return get(deviceId) != null;
+  }
+
+  public boolean isOwnedBy(long deviceId, long userId) {
+    DeviceEntry entry = get(deviceId);
+    return entry != null && entry.ownerId() == userId;
+  }
+
+  /**
+   * IDs de los dispositivos que pertenecen al usuario. Se leen de la base de
+   * datos por el índice de {@code devices.user_id}: la tabla en memoria no
+   * tiene los dispositivos dados de alta en otro nodo ni los descartados por
+   * un aviso hasta su siguiente acceso.
+   */
+  public long[] deviceIdsOwnedBy(long userId) {
+    return deviceRepository.findIdsByOwnerId(userId).stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Registra el alta o el cambio de un dispositivo y lo anuncia a los demás
+   * nodos.
+   */
+  public void put(Device device) {
+    long ownerId = device.getUser() != null ? device.getUser().getId() : 0L;
+    synchronized (this) {
+      changes++;
+      store(device.getId(), new DeviceEntry(ownerId, Boolean.TRUE.equals(device.getActivated()),
+          device.getDeviceIdentifier()));
+    }
+    invalidationBus.publish(TOPIC, device.getId());
+  }
+
+  /**
+   * Registra la baja de un dispositivo y la anuncia a los demás nodos.
+   */
+  public void remove(long deviceId) {
+    evict(deviceId);
+    invalidationBus.publish(TOPIC, deviceId);
+  }
+
+  private synchronized void store(long deviceId, DeviceEntry entry) {
+    unknown.invalidate(deviceId);
+    Table current = table;
+    Table updated = new Table(Table.capacityFor(current.size + 1));
+    current.copyInto(updated);
+    updated.insert(deviceId, entry);
+    table = updated;
+  }
+
+  private synchronized void evict(long deviceId) {
+    changes++;
+    unknown.invalidate(deviceId);
+    Table current = table;
+    if (current.get(deviceId) == null) {
+      return;
+    }
+    Table updated = new Table(Table.capacityFor(current.size));
+    for (int i = 0; i < current.keys.length; i++) {
+      if (current.values[i] != null && current.keys[i] != deviceId) {
+        updated.insert(current.keys[i], current.values[i]);
+      }
+    }
+    table = updated;
+  }
+
+  private static DeviceEntry toEntry(DeviceSummary device) {
+    return new DeviceEntry(
+        device.getOwnerId() != null ? device.getOwnerId() : 0L,
+        Boolean.TRUE.equals(device.getActivated()),
+        device.getDeviceIdentifier());
+  }
+
+  /**
+   * Tabla hash de direccionamiento abierto con claves long. Nunca se modifica
+   * una vez publicada.
+   */
+  private static final class Table {
+    private final long[] keys;
+    private final DeviceEntry[] values;
+    private final int mask;
+    private int size;
+
+    Table(int capacity) {
+      keys = new long[capacity];
+      values = new DeviceEntry[capacity];
+      mask = capacity - 1;
+    }
+
+    /** Capacidad potencia de dos con factor de carga máximo de 0.5. */
+    static int capacityFor(int entries) {
+      int capacity = 16;
+      while (capacity < entries * 2) {
+        capacity <<= 1;
+      }
+      return capacity;
+    }
+
+    DeviceEntry get(long key) {
+      int index = hash(key) & mask;
+      while (values[index] != null) {
+        if (keys[index] == key) {
+          return values[index];
+        }
+        index = (index + 1) & mask;
+      }
+      return null;
+    }
+
+    void insert(long key, DeviceEntry value) {
+      int index = hash(key) & mask;
+      while (values[index] != null) {
+        if (keys[index] == key) {
+          values[index] = value;
+          return;
+        }
+        index = (index + 1) & mask;
+      }
+      keys[index] = key;
+      values[index] = value;
+      size++;
+    }
+
+    void copyInto(Table target) {
+      for (int i = 0; i < keys.length; i++) {
+        if (values[i] != null) {
+          target.insert(keys[i], values[i]);
+        }
+      }
+    }
+
+    private static int hash(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.dto.DeviceRollupResponse;
+import com.arojas.gpstracker.dto.GpsLocationDTO;
+import com.arojas.gpstracker.dto.RollupGranularity;
+import com.arojas.gpstracker.exception.BadRequestException;
+import com.arojas.gpstracker.exception.NotFoundException;
+import com.arojas.gpstracker.repositories.DeviceRollupJdbcRepository;
+import com.arojas.gpstracker.repositories.DeviceRollupJdbcRepository.RollupDelta;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resúmenes de recorrido por dispositivo, mantenidos de forma incremental.
+ *
+ * <p>
+ * Cada ubicación guardada se compara con la anterior del mismo dispositivo:
+ * la distancia haversine y el tiempo entre ambas dan la velocidad del tramo.
+ * Los tramos por encima de {@code moving-speed} cuentan como movimiento y
+ * suman distancia y segundos en marcha; los más lentos se tratan como ruido
+ * del GPS con el dispositivo detenido. Un viaje empieza con el primer tramo en
+ * movimiento y termina tras {@code stop-after} sin moverse, lo que cuenta una
+ * parada. Los tramos con velocidad imposible o separados por más de
+ * {@code max-gap} no suman.
+ * </p>
+ *
+ * <p>
+ * Los incrementos se acumulan en memoria por hora y se escriben en lote en
+ * device_rollups, en filas horarias y diarias. El estado de cada dispositivo
+ * vive en memoria: tras un reinicio, la primera ubicación de cada dispositivo
+ * solo sirve de punto de partida. Las ubicaciones anteriores a la última
+ * procesada se ignoran.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceRollupService implements DisposableBean {
+
+  private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  private record BucketKey(long deviceId, LocalDateTime hour) {
+  }
+
+  // Incremento pendiente de una hora. Solo se modifica dentro de compute().
+  private static final class Bucket {
+    double distanceMeters;
+    long movingMillis;
+    double maxSpeedMps;
+    int fixCount;
+    int tripCount;
+    int stopCount;
+  }
+
+  // Estado de segmentación de un dispositivo. Se modifica con su propio lock.
+  private static final class DeviceTrack {
+    double latitude;
+    double longitude;
+    long time;
+    boolean started;
+    boolean inTrip;
+    long stillSince;
+  }
+
+  private final DeviceRollupJdbcRepository rollupRepository;
+  private final DeviceRegistry deviceRegistry;
+
+  private final Map<Long, DeviceTrack> tracks = new ConcurrentHashMap<>();
+  private final Map<BucketKey, Bucket> pending = new ConcurrentHashMap<>();
+
+  @Value("${gps.rollups.moving-speed-mps:1.5}")
+  private double movingSpeedMps;
+
+  @Value("${gps.rollups.max-speed-mps:70}")
+  private double maxPlausibleSpeedMps;
+
+  @Value("${gps.rollups.stop-after:3m}")
+  private Duration stopAfter;
+
+  @Value("${gps.rollups.max-gap:10m}")
+  private Duration maxGap;
+
+  @Value("${gps.rollups.max-range-days:366}")
+  private int maxRangeDays;
+
+  /**
+   * Adds a saved location to the rollups of its device.
+   *
+   * @param dto Saved location
+   */
+  public void record(GpsLocationDTO dto) {
+    long deviceId = dto.getDeviceId();
+    long time = dto.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    LocalDateTime hour = dto.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+    DeviceTrack track = tracks.computeIfAbsent(deviceId, id -> new DeviceTrack());
+
+    synchronized (track) {
+      if (!track.started) {
+        track.started = true;
+        track.stillSince = time;
+        move(track, dto, time);
+        add(deviceId, hour, 0, 0, 0, 0, 0);
+        return;
+      }
+      long elapsed = time - track.time;
+      if (elapsed <= 0) {
+        return; // ubicación fuera de orden o repetida
+      }
+
+      double distance = haversine(track.latitude, track.longitude, dto.getLatitude(), dto.getLongitude());
+      double speed = elapsed > 0 ? distance / (elapsed / 1000.0) : 0;
+      boolean usable = elapsed > 0 && elapsed <= maxGap.toMillis() && speed <= maxPlausibleSpeedMps;
+      int trips = 0;
+      int stops = 0;
+
+      if (usable && speed >= movingSpeedMps) {
+        if (!track.inTrip) {
+          track.inTrip = true;
+          trips = 1;
+        }
+        track.stillSince = time;
+        add(deviceId, hour, distance, elapsed, speed, trips, 0);
+      } else {
+        if (!usable) {
+          // Hueco o salto: se reinicia la espera de parada desde aquí
+          track.stillSince = time;
+        }
+        if (track.inTrip && (!usable || time - track.stillSince >= stopAfter.toMillis())) {
+          track.inTrip = false;
+          stops = 1;
+        }
+        add(deviceId, hour, 0, 0, 0, 0, stops);
+      }
+      move(track, dto, time);
+    }
+  }
+
+  /**
+   * Writes the pending increments as hourly and daily rows.
+   */
+  @Scheduled(fixedDelayString = "${gps.rollups.flush-interval-ms:10000}")
+  public void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    Map<BucketKey, Bucket> taken = new HashMap<>();
+    for (BucketKey key : pending.keySet()) {
+      Bucket bucket = pending.remove(key);
+      if (bucket != null) {
+        taken.put(key, bucket);
+      }
+    }
+
+    // Las filas diarias suman las horas del mismo día
+    Map<BucketKey, Bucket> days = new HashMap<>();
+    List<RollupDelta> deltas = new ArrayList<>(taken.size() * 2);
+    taken.forEach((key, bucket) -> {
+      deltas.add(toDelta(key, RollupGranularity.HOURLY, bucket));
+      Bucket day = days.computeIfAbsent(new BucketKey(key.deviceId(), key.hour().truncatedTo(ChronoUnit.DAYS)),
+          k -> new Bucket());
+      merge(day, bucket);
+    });
+    days.forEach((key, bucket) -> deltas.add(toDelta(key, RollupGranularity.DAILY, bucket)));
+
+    try {
+      rollupRepository.upsertBatch(deltas);
+      log.debug("Resúmenes escritos: {} filas", deltas.size());
+    } catch (RuntimeException e) {
+      log.error("Error al escribir resúmenes, se reintentará: {}", e.getMessage());
+      taken.forEach((key, bucket) -> pending.merge(key, bucket, (current, retry) -> {
+        merge(current, retry);
+        return current;
+      }));
+    }
+  }
+
+  /**
+   * Returns the rollups of a device in a time range, oldest first. Increments
+   * not yet flushed are not included.
+   */
+  public List<DeviceRollupResponse> getDeviceRollups(Long deviceId, RollupGranularity granularity,
+      LocalDateTime from, LocalDateTime to) {
+    if (!deviceRegistry.exists(deviceId)) {
+      throw new NotFoundException("Device not found with ID: " + deviceId);
+    }
+    validateRange(granularity, from, to);
+    return rollupRepository.findRange(new long[] { deviceId }, granularity, bucketStart(granularity, from), to);
+  }
+
+  /**
+   * Returns the rollups of every device owned by the user, for fleet mileage
+   * reports.
+   */
+  public List<DeviceRollupResponse> getUserRollups(Long userId, RollupGranularity granularity,
+      LocalDateTime from, LocalDateTime to) {
+    validateRange(granularity, from, to);
+    return rollupRepository.findRange(deviceRegistry.deviceIdsOwnedBy(userId), granularity,
+        bucketStart(granularity, from), to);
+  }
+
+  /**
+   * Forgets a deleted device and removes its rollups.
+   */
+  public void remove(long deviceId) {
+    tracks.remove(deviceId);
+    pending.keySet().removeIf(key -> key.deviceId() == deviceId);
+    rollupRepository.deleteByDeviceId(deviceId);
+  }
+
+  @Override
+  public void destroy() {
+    flush();
+  }
+
+  private void validateRange(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+    if (!from.isBefore(to)) {
+      throw new BadRequestException("Start time must be before end time");
+    }
+    long days = granularity == RollupGranularity.HOURLY ? 31 : maxRangeDays;
+    if (Duration.between(from, to).toDays() > days) {
+      throw new BadRequestException("Range too large for " + granularity + " rollups: maximum " + days + " days");
+    }
+  }
+
+  private static LocalDateTime bucketStart(RollupGranularity granularity, LocalDateTime time) {
+    return time.truncatedTo(granularity == RollupGranularity.HOURLY ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+  }
+
+  private void add(long deviceId, LocalDateTime hour, double distance, long movingMillis, double speed,
+      int trips, int stops) {
+    pending.compute(new BucketKey(deviceId, hour), (key, bucket) -> {
+      Bucket b = bucket != null ? bucket : new Bucket();
+      b.distanceMeters += distance;
+      b.movingMillis += movingMillis;
+      b.maxSpeedMps = Math.max(b.maxSpeedMps, speed);
+      b.fixCount++;
+      b.tripCount += trips;
+      b.stopCount += stops;
+      return b;
+    });
+  }
+
+  private static void move(DeviceTrack track, GpsLocationDTO dto, long time) {
+    track.latitude = dto.getLatitude();
+    track.longitude = dto.getLongitude();
+    track.time = time;
+  }
+
+  private static void merge(Bucket target, Bucket source) {
+    target.distanceMeters += source.distanceMeters;
+    target.movingMillis += source.movingMillis;
+    target.maxSpeedMps = Math.max(target.maxSpeedMps, source.maxSpeedMps);
+    target.fixCount += source.fixCount;
+    target.tripCount += source.tripCount;
+    target.stopCount += source.stopCount;
+  }
+
+  private static RollupDelta toDelta(BucketKey key, RollupGranularity granularity, Bucket bucket) {
+    return new RollupDelta(key.deviceId(), granularity, key.hour(), bucket.distanceMeters,
+        Math.round(bucket.movingMillis / 1000.0), bucket.maxSpeedMps, bucket.fixCount, bucket.tripCount,
+        bucket.stopCount);
+  }
+
+  static double haversine(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+        + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+}
@@ -50,6 +50,15 @@ import lombok.extern.slf4j.Slf4j;
 public class DeviceService {
 
   private final DeviceRepository deviceRepository;
+  private final DeviceRegistry deviceRegistry;
+  private final LastPositionStore lastPositionStore;
+  private final GeofenceService geofenceService;
+  private final LivenessMonitor livenessMonitor;
+  private final DeviceRollupService deviceRollupService;
+  private final ReplayFilter replayFilter;
+  private final DeviceStateProjection deviceStateProjection;
+  private final PresenceStore presenceStore;
+  private final CacheInvalidationBus cacheInvalidationBus;
 
   public Device registerDevice(DeviceRegisterRequest request, User user) {
     log.info("Registrando dispositivo '{}' para el usuario '{}'", request.getDeviceIdentifier(), user.getEmail());
@@ -66,36 +75,55 @@ public class DeviceService {
         .user(user)
         .build();
 
-    return deviceRepository.save(device);
+    Device saved = deviceRepository.save(device);
+    deviceRegistry.put(saved);
+    cacheInvalidationBus.evictCache("devices");
+    return saved;
   }
 
-  @Cacheable(value = "devices", key = "#userId")
+  @Cacheable(value = "devices", key = "#userId + '-' + #pageable.pageNumber + '-' + #pageable.pageSize")
   public Page<Device> getUserDevices(Long userId, Pageable pageable) {
     log.debug("Consultando dispositivos para usuario con ID: {}", userId);
     return deviceRepository.findByUserId(userId, pageable);
   }
 
   public Device toggleDeviceActivation(Long id, User user, boolean activate) {
+    checkOwnership(id, user);
     Device device = deviceRepository.findById(id)
-        .filter(d -> d.getUser().getId().equals(user.getId()))
         .orElseThrow(() -> new UserNotFoundException("Dispositivo no encontrado o no pertenece al usuario."));
 
     device.setActivated(activate);
-    return deviceRepository.save(device);
+    Device saved = deviceRepository.save(device);
+    deviceRegistry.put(saved);
+    cacheInvalidationBus.evictCache("devices");
+    return saved;
   }
 
   public void deleteDevice(Long id, User user) {
-    Device device = deviceRepository.findById(id)
-        .filter(d -> d.getUser().getId().equals(user.getId()))
-        .orElseThrow(() -> new UserNotFoundException("Dispositivo no encontrado o no pertenece al usuario."));
-
-    deviceRepository.delete(device);
+    checkOwnership(id, user);
+    geofenceService.deleteDeviceGeofences(id);
+    deviceRepository.deleteById(id);
+    deviceRegistry.remove(id);
+    lastPositionStore.remove(id);
+    livenessMonitor.remove(id);
+    deviceRollupService.remove(id);
+    replayFilter.remove(id);
+    deviceStateProjection.remove(id);
+    presenceStore.remove(id);
+    cacheInvalidationBus.evictCache("devices");
     log.info("Dispositivo eliminado: {}", id);
   }
 
   public Device getDeviceById(Long id, User user) {
+    checkOwnership(id, user);
     return deviceRepository.findById(id)
-        .filter(d -> d.getUser().getId().equals(user.getId()))
         .orElseThrow(() -> new UserNotFoundException("Dispositivo no encontrado o no pertenece al usuario."));
   }
+
+  // Verificación en memoria, sin cargar la entidad
+  private void checkOwnership(Long id, User user) {
+    if (!deviceRegistry.isOwnedBy(id, user.getId())) {
+      throw new UserNotFoundException("Dispositivo no encontrado o no pertenece al usuario.");
+    }
+  }
 }
\ No newline at end of file
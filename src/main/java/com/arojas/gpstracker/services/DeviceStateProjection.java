@@ -0,0 +1,330 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.dto.DeviceStateResponse;
+import com.arojas.gpstracker.dto.DeviceStateResponse.PowerState;
+import com.arojas.gpstracker.entities.GpsEvent.EventType;
+import com.arojas.gpstracker.repositories.DeviceStateJdbcRepository;
+import com.arojas.gpstracker.repositories.DeviceStateJdbcRepository.StateRow;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Proyección del estado actual de cada dispositivo a partir de sus eventos.
+ *
+ * <p>
+ * Cada evento ON/OFF/LOCATION_UPDATE se aplica en memoria a un registro
+ * compacto: encendido o apagado, último cambio, desde cuándo está encendido y
+ * tiempo encendido acumulado. Los registros modificados se guardan
+ * periódicamente en device_states junto con el ID del último evento aplicado.
+ * Al arrancar se carga la instantánea y se aplican encima los eventos
+ * posteriores, así que el estado sobrevive a un reinicio sin recorrer todo
+ * gps_events. Los eventos se aplican en orden de ID y una vez por
+ * dispositivo.
+ * </p>
+ *
+ * <p>
+ * La reproducción empieza en un punto de control global
+ * (device_state_checkpoint), no en el evento más viejo de las instantáneas:
+ * un dispositivo inactivo no obliga a recorrer gps_events casi completo. El
+ * punto de control avanza con un intervalo de atraso: se guarda el mayor
+ * evento aplicado al comenzar la instantánea anterior, una vez escrita la
+ * actual, para no saltar eventos de IDs menores confirmados más tarde.
+ * </p>
+ *
+ * <p>
+ * Solo el nodo que consume la partición de un dispositivo recibe sus eventos,
+ * así que los aplicados se difunden por {@link CacheInvalidationBus} en
+ * cuádruplas [dispositivo, evento, tipo, hora en milisegundos] y cada nodo
+ * mantiene la proyección completa. Un aviso perdido deja el estado atrasado
+ * en ese nodo hasta el siguiente evento del dispositivo; la instantánea nunca
+ * pisa una fila más nueva, así que no retrocede device_states.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class DeviceStateProjection implements DisposableBean {
+
+  // Estado de un dispositivo. Se modifica con su propio lock.
+  private static final class State {
+    PowerState powerState = PowerState.UNKNOWN;
+    LocalDateTime lastChange;
+    LocalDateTime onSince;
+    long cumulativeOnMillis;
+    EventType lastEventType;
+    LocalDateTime lastEventAt;
+    long lastEventId;
+  }
+
+  static final String TOPIC = "device-state";
+  static final String REMOVED_TOPIC = "device-state-removed";
+
+  private static final EventType[] EVENT_TYPES = EventType.values();
+
+  private final DeviceStateJdbcRepository stateRepository;
+  private final CacheInvalidationBus invalidationBus;
+
+  private final Map<Long, State> states = new ConcurrentHashMap<>();
+  private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+  // Los eventos en vivo esperan a que termine la carga inicial
+  private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+  private final AtomicLong maxAppliedEventId = new AtomicLong();
+  // Mayor evento aplicado al comenzar la instantánea anterior y último
+  // punto de control escrito
+  private long pendingCheckpoint;
+  private long savedCheckpoint;
+
+  public DeviceStateProjection(DeviceStateJdbcRepository stateRepository, CacheInvalidationBus invalidationBus) {
+    this.stateRepository = stateRepository;
+    this.invalidationBus = invalidationBus;
+    invalidationBus.subscribe(TOPIC, this::recordRemote);
+    invalidationBus.subscribe(REMOVED_TOPIC, ids -> {
+      for (long deviceId : ids) {
+        forget(deviceId);
+      }
+    });
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    loadLock.writeLock().lock();
+    try {
+      long oldestSnapshot = Long.MAX_VALUE;
+      for (StateRow row : stateRepository.findAll()) {
+        State state = new State();
+        state.powerState = PowerState.valueOf(row.powerState());
+        state.lastChange = row.lastChange();
+        state.onSince = row.onSince();
+        state.cumulativeOnMillis = row.cumulativeOnSeconds() * 1000;
+        state.lastEventType = row.lastEventType() != null ? EventType.valueOf(row.lastEventType()) : null;
+        state.lastEventAt = row.lastEventAt();
+        state.lastEventId = row.lastEventId();
+        states.put(row.deviceId(), state);
+        oldestSnapshot = Math.min(oldestSnapshot, row.lastEventId());
+      }
+      int snapshots = states.size();
+      // Sin punto de control (instantáneas previas a él) se parte de la más vieja
+      long replayFrom = stateRepository.findCheckpoint()
+          .orElse(oldestSnapshot == Long.MAX_VALUE ? 0 : oldestSnapshot);
+
+      long[] replayed = new long[1];
+      stateRepository.streamEventsAfter(replayFrom, (eventId, deviceId, eventType, timestamp) -> {
+        if (apply(deviceId, eventId, eventType, timestamp)) {
+          replayed[0]++;
+        }
+      });
+      log.info("Proyección de estado cargada: {} instantáneas, {} eventos aplicados desde el evento {}", snapshots,
+          replayed[0], replayFrom);
+    } finally {
+      loadLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Applies a batch of stored events, in order, and sends them to the other
+   * nodes. Events without an ID (not stored) are skipped.
+   *
+   * @param deviceIds  IDs of the devices
+   * @param eventIds   IDs of the stored events, 0 when not stored
+   * @param eventTypes Types of the events
+   * @param timestamps Times of the events
+   */
+  public void record(long[] deviceIds, long[] eventIds, EventType[] eventTypes, LocalDateTime[] timestamps) {
+    long[] message = new long[deviceIds.length * 4];
+    int length = 0;
+    loadLock.readLock().lock();
+    try {
+      for (int i = 0; i < deviceIds.length; i++) {
+        if (eventIds[i] != 0 && apply(deviceIds[i], eventIds[i], eventTypes[i], timestamps[i])) {
+          message[length++] = deviceIds[i];
+          message[length++] = eventIds[i];
+          message[length++] = eventTypes[i].ordinal();
+          message[length++] = timestamps[i].atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+      }
+    } finally {
+      loadLock.readLock().unlock();
+    }
+    if (length > 0) {
+      invalidationBus.publish(TOPIC, Arrays.copyOf(message, length));
+    }
+  }
+
+  /**
+   * Returns the current state of the device, if it ever sent an event.
+   */
+  public Optional<DeviceStateResponse> get(long deviceId) {
+    State state = states.get(deviceId);
+    if (state == null) {
+      return Optional.empty();
+    }
+    synchronized (state) {
+      long cumulative = state.cumulativeOnMillis;
+      if (state.powerState == PowerState.ON && state.onSince != null) {
+        cumulative += Math.max(0, Duration.between(state.onSince, LocalDateTime.now()).toMillis());
+      }
+      return Optional.of(DeviceStateResponse.builder()
+          .deviceId(deviceId)
+          .powerState(state.powerState)
+          .lastChange(state.lastChange)
+          .onSince(state.powerState == PowerState.ON ? state.onSince : null)
+          .cumulativeOnSeconds(cumulative / 1000)
+          .lastEventType(state.lastEventType)
+          .lastEventAt(state.lastEventAt)
+          .build());
+    }
+  }
+
+  /**
+   * Writes the states changed since the last snapshot.
+   */
+  @Scheduled(fixedDelayString = "${gps.device-state.snapshot-interval-ms:30000}")
+  public synchronized void snapshot() {
+    long checkpoint = pendingCheckpoint;
+    long applied = maxAppliedEventId.get();
+    List<Long> deviceIds = new ArrayList<>(dirty);
+    List<StateRow> rows = new ArrayList<>(deviceIds.size());
+    for (Long deviceId : deviceIds) {
+      dirty.remove(deviceId);
+      State state = states.get(deviceId);
+      if (state != null) {
+        synchronized (state) {
+          rows.add(new StateRow(deviceId, state.powerState.name(), state.lastChange, state.onSince,
+              state.cumulativeOnMillis / 1000, state.lastEventType != null ? state.lastEventType.name() : null,
+              state.lastEventAt, state.lastEventId));
+        }
+      }
+    }
+    try {
+      if (!rows.isEmpty()) {
+        stateRepository.upsertBatch(rows);
+        log.debug("Instantánea de estado escrita: {} dispositivos", rows.size());
+      }
+      // Todo lo aplicado antes de la instantánea anterior ya está escrito
+      if (checkpoint > savedCheckpoint) {
+        stateRepository.advanceCheckpoint(checkpoint);
+        savedCheckpoint = checkpoint;
+      }
+      pendingCheckpoint = applied;
+    } catch (RuntimeException e) {
+      log.error("Error al escribir la instantánea de estado, se reintentará: {}", e.getMessage());
+      dirty.addAll(deviceIds);
+    }
+  }
+
+  /**
+   * Forgets a deleted device.
+   */
+  public void remove(long deviceId) {
+    forget(deviceId);
+    stateRepository.deleteByDeviceId(deviceId);
+    invalidationBus.publish(REMOVED_TOPIC, deviceId);
+  }
+
+  @Override
+  public void destroy() {
+    snapshot();
+  }
+
+  // Eventos aplicados en otro nodo
+  private void recordRemote(long[] message) {
+    loadLock.readLock().lock();
+    try {
+      for (int i = 0; i + 3 < message.length; i += 4) {
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(message[i + 3]),
+            ZoneId.systemDefault());
+        apply(message[i], message[i + 1], EVENT_TYPES[(int) message[i + 2]], timestamp);
+      }
+    } finally {
+      loadLock.readLock().unlock();
+    }
+  }
+
+  private void forget(long deviceId) {
+    states.remove(deviceId);
+    dirty.remove(deviceId);
+  }
+
+  private boolean apply(long deviceId, long eventId, EventType eventType, LocalDateTime timestamp) {
+    State state = states.computeIfAbsent(deviceId, id -> new State());
+    synchronized (state) {
+      if (eventId <= state.lastEventId) {
+        return false; // ya incluido en la instantánea o aplicado
+      }
+      switch (eventType) {
+        case ON -> {
+          if (state.powerState != PowerState.ON) {
+            state.powerState = PowerState.ON;
+            state.lastChange = timestamp;
+            state.onSince = timestamp;
+          }
+        }
+        case OFF -> {
+          if (state.powerState == PowerState.ON && state.onSince != null) {
+            state.cumulativeOnMillis += Math.max(0, Duration.between(state.onSince, timestamp).toMillis());
+          }
+          if (state.powerState != PowerState.OFF) {
+            state.powerState = PowerState.OFF;
+            state.lastChange = timestamp;
+          }
+          state.onSince = null;
+        }
+        case LOCATION_UPDATE -> {
+          // solo actualiza el último evento
+        }
+      }
+      state.lastEventType = eventType;
+      state.lastEventAt = timestamp;
+      state.lastEventId = eventId;
+    }
+    maxAppliedEventId.accumulateAndGet(eventId, Math::max);
+    dirty.add(deviceId);
+    return true;
+  }
+}
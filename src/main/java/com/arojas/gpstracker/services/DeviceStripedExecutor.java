@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.ToIntFunction;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reparte un lote de ubicaciones en franjas por dispositivo y las procesa en
+ * paralelo sobre hilos virtuales.
+ *
+ * <p>
+ * Todas las ubicaciones de un dispositivo caen en la misma franja y conservan
+ * su orden, y el llamador espera a que terminen todas las franjas antes de
+ * devolver el control al contenedor Kafka. Así el orden por dispositivo se
+ * mantiene entre polls y los offsets solo se confirman cuando todo el lote es
+ * durable. Los lotes pequeños se procesan enteros en el hilo del llamador: un
+ * solo INSERT es más barato que varios.
+ * </p>
+ *
+ * <p>
+ * Cada franja escribe en su propia transacción y ocupa una conexión del pool.
+ * Todos los listeners comparten un semáforo de
+ * {@code gps.ingest.max-concurrent-writes} permisos (por defecto la mitad de
+ * {@code spring.datasource.hikari.maximum-pool-size}), así que la ingesta
+ * nunca retiene más conexiones que esas aunque haya varios listeners y
+ * muchos núcleos; el resto del pool queda para la API y las tareas
+ * programadas. El número de franjas tampoco pasa del número de permisos.
+ * </p>
+ *
+ * <p>
+ * El manejador de cada franja decide qué hacer con sus errores: el consumidor
+ * de ubicaciones los encamina a reintentos o al DLT y la franja cuenta como
+ * procesada. Solo si el manejador relanza una excepción, por ejemplo porque
+ * Kafka no aceptó el reenvío, se propaga el error y el contenedor vuelve a
+ * entregar el lote completo, incluidas las franjas que ya se habían guardado.
+ * </p>
+ *
+ * <p>
+ * Requiere Java 21 por los hilos virtuales; el build lo comprueba.
+ * </p>
+ *
+ * @author neta1
+ */
+@Component
+@Slf4j
+public class DeviceStripedExecutor implements DisposableBean {
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final Semaphore writes;
+  private final int stripes;
+  private final int minStripedBatch;
+
+  public DeviceStripedExecutor(
+      @Value("${gps.ingest.consumer.stripes:0}") int stripes,
+      @Value("${gps.ingest.consumer.min-striped-batch:200}") int minStripedBatch,
+      @Value("${gps.ingest.max-concurrent-writes:0}") int maxConcurrentWrites,
+      @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+    int permits = maxConcurrentWrites > 0 ? maxConcurrentWrites : Math.max(1, poolSize / 2);
+    int requested = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+    this.writes = new Semaphore(permits, true);
+    this.stripes = Math.min(requested, permits);
+    this.minStripedBatch = minStripedBatch;
+    log.info("Ingesta en {} franjas con {} escrituras concurrentes como máximo", this.stripes, permits);
+  }
+
+  /**
+   * Processes the batch split by device.
+   *
+   * @param batch   Locations in arrival order
+   * @param handler Processes one stripe and returns the number of locations
+   *                saved
+   * @return Total returned by the handler
+   */
+  public int process(GpsFixBatch batch, ToIntFunction<GpsFixBatch> handler) {
+    if (stripes == 1 || batch.size() < minStripedBatch) {
+      return run(handler, batch);
+    }
+
+    GpsFixBatch[] split = new GpsFixBatch[stripes];
+    int expected = batch.size() / stripes + 1;
+    for (int i = 0; i < batch.size(); i++) {
+      int stripe = stripeOf(batch.deviceId(i));
+      if (split[stripe] == null) {
+        split[stripe] = new GpsFixBatch(expected);
+      }
+      split[stripe].addFrom(batch, i);
+    }
+
+    List<Future<Integer>> futures = new ArrayList<>(stripes);
+    for (GpsFixBatch part : split) {
+      if (part != null) {
+        futures.add(executor.submit(() -> run(handler, part)));
+      }
+    }
+
+    int total = 0;
+    RuntimeException failure = null;
+    for (Future<Integer> future : futures) {
+      try {
+        total += future.get();
+      } catch (ExecutionException e) {
+        RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+            ? runtime
+            : new IllegalStateException(e.getCause());
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.addSuppressed(cause);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while processing location batch", e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    log.debug("Processed {} locations in {} stripes", batch.size(), futures.size());
+    return total;
+  }
+
+  private int run(ToIntFunction<GpsFixBatch> handler, GpsFixBatch part) {
+    try {
+      writes.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a write slot", e);
+    }
+    try {
+      return handler.applyAsInt(part);
+    } finally {
+      writes.release();
+    }
+  }
+
+  private int stripeOf(long deviceId) {
+    return (int) ((Long.hashCode(deviceId) & 0x7fffffffL) % stripes);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+}
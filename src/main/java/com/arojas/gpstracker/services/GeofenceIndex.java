@@ -0,0 +1,314 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.arojas.gpstracker.entities.Geofence;
+
+/**
+ * Índice espacial inmutable de geocercas sobre una rejilla de celdas fijas.
+ *
+ * <p>
+ * Cada geocerca se registra en las celdas que cubre su rectángulo envolvente.
+ * Una consulta calcula la celda del punto, recorre solo las geocercas de esa
+ * celda y aplica la prueba exacta (círculo o polígono) tras descartar por
+ * rectángulo. Las geocercas que cubrirían demasiadas celdas se guardan aparte
+ * y se prueban siempre por rectángulo. Sin geocercas cercanas la consulta no
+ * crea objetos.
+ * </p>
+ *
+ * <p>
+ * La geometría es plana en grados (con corrección de longitud por latitud en
+ * los círculos); no se soportan geocercas que crucen el antimeridiano.
+ * </p>
+ *
+ * @author neta1
+ */
+public final class GeofenceIndex {
+
+  static final long[] NONE = new long[0];
+
+  private static final double METERS_PER_DEGREE = 111_320.0;
+
+  public static final GeofenceIndex EMPTY = new GeofenceIndex(1.0, new Fence[0], new long[1], new int[1][],
+      new int[0], Map.of());
+
+  private final double cellSize;
+  private final long columns;
+  private final Fence[] fences;
+  private final long[] cellKeys;
+  private final int[][] cellFences;
+  private final int[] largeFences;
+  private final Map<Long, Fence> byId;
+
+  private GeofenceIndex(double cellSize, Fence[] fences, long[] cellKeys, int[][] cellFences, int[] largeFences,
+      Map<Long, Fence> byId) {
+    this.cellSize = cellSize;
+    this.columns = (long) Math.ceil(360.0 / cellSize) + 1;
+    this.fences = fences;
+    this.cellKeys = cellKeys;
+    this.cellFences = cellFences;
+    this.largeFences = largeFences;
+    this.byId = byId;
+  }
+
+  /**
+   * Construye el índice.
+   *
+   * @param geofences       Geocercas a indexar
+   * @param cellSize        Lado de la celda en grados
+   * @param maxCellsPerFence Geocercas que cubren más celdas van a la lista de
+   *                        geocercas grandes
+   */
+  public static GeofenceIndex build(List<Geofence> geofences, double cellSize, int maxCellsPerFence) {
+    Fence[] fences = new Fence[geofences.size()];
+    Map<Long, Fence> byId = new HashMap<>();
+    for (int i = 0; i < fences.length; i++) {
+      fences[i] = Fence.of(geofences.get(i));
+      byId.put(fences[i].id, fences[i]);
+    }
+
+    long columns = (long) Math.ceil(360.0 / cellSize) + 1;
+    Map<Long, List<Integer>> cells = new HashMap<>();
+    List<Integer> large = new ArrayList<>();
+    for (int i = 0; i < fences.length; i++) {
+      Fence fence = fences[i];
+      long minRow = row(fence.minLat, cellSize);
+      long maxRow = row(fence.maxLat, cellSize);
+      long minCol = column(fence.minLon, cellSize);
+      long maxCol = column(fence.maxLon, cellSize);
+      if ((maxRow - minRow + 1) * (maxCol - minCol + 1) > maxCellsPerFence) {
+        large.add(i);
+        continue;
+      }
+      for (long r = minRow; r <= maxRow; r++) {
+        for (long c = minCol; c <= maxCol; c++) {
+          cells.computeIfAbsent(r * columns + c, k -> new ArrayList<>()).add(i);
+        }
+      }
+    }
+
+    int capacity = Integer.highestOneBit(Math.max(4, cells.size() * 2 - 1)) << 1;
+    long[] cellKeys = new long[capacity];
+    int[][] cellFences = new int[capacity][];
+    for (Map.Entry<Long, List<Integer>> cell : cells.entrySet()) {
+      int slot = slot(cell.getKey(), capacity - 1);
+      while (cellFences[slot] != null) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      cellKeys[slot] = cell.getKey();
+      cellFences[slot] = cell.getValue().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    return new GeofenceIndex(cellSize, fences, cellKeys, cellFences,
+        large.stream().mapToInt(Integer::intValue).toArray(), Map.copyOf(byId));
+  }
+
+  public int size() {
+    return fences.length;
+  }
+
+  public Fence get(long fenceId) {
+    return byId.get(fenceId);
+  }
+
+  /**
+   * Devuelve los IDs, ordenados, de las geocercas que aplican al dispositivo y
+   * contienen el punto.
+   *
+   * @param deviceId ID del dispositivo
+   * @param ownerId  ID del dueño del dispositivo
+   */
+  public long[] query(long deviceId, long ownerId, double latitude, double longitude) {
+    long[] found = NONE;
+    int count = 0;
+
+    int[] candidates = cell(row(latitude, cellSize) * columns + column(longitude, cellSize));
+    if (candidates != null) {
+      for (int candidate : candidates) {
+        Fence fence = fences[candidate];
+        if (fence.appliesTo(deviceId, ownerId) && fence.contains(latitude, longitude)) {
+          found = append(found, count++, fence.id);
+        }
+      }
+    }
+    for (int candidate : largeFences) {
+      Fence fence = fences[candidate];
+      if (fence.appliesTo(deviceId, ownerId) && fence.contains(latitude, longitude)) {
+        found = append(found, count++, fence.id);
+      }
+    }
+
+    if (count == 0) {
+      return NONE;
+    }
+    long[] result = count == found.length ? found : Arrays.copyOf(found, count);
+    Arrays.sort(result);
+    return result;
+  }
+
+  private int[] cell(long key) {
+    int mask = cellKeys.length - 1;
+    int slot = slot(key, mask);
+    while (cellFences[slot] != null) {
+      if (cellKeys[slot] == key) {
+        return cellFences[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  private static long[] append(long[] array, int count, long value) {
+    if (count == array.length) {
+      array = Arrays.copyOf(array, Math.max(4, count * 2));
+    }
+    array[count] = value;
+    return array;
+  }
+
+  private static int slot(long key, int mask) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+  }
+
+  private static long row(double latitude, double cellSize) {
+    return (long) Math.floor((latitude + 90.0) / cellSize);
+  }
+
+  private static long column(double longitude, double cellSize) {
+    return (long) Math.floor((longitude + 180.0) / cellSize);
+  }
+
+  /**
+   * Geocerca compilada para la prueba de contención.
+   */
+  public static final class Fence {
+
+    final long id;
+    final long deviceId;
+    final long ownerId;
+    final String name;
+    final double minLat;
+    final double maxLat;
+    final double minLon;
+    final double maxLon;
+    final boolean circle;
+    final double centerLat;
+    final double centerLon;
+    final double radiusSquared;
+    final double cosLat;
+    final double[] lats;
+    final double[] lons;
+
+    private Fence(long id, long deviceId, long ownerId, String name, double minLat, double maxLat, double minLon,
+        double maxLon, boolean circle, double centerLat, double centerLon, double radius, double[] lats,
+        double[] lons) {
+      this.id = id;
+      this.deviceId = deviceId;
+      this.ownerId = ownerId;
+      this.name = name;
+      this.minLat = minLat;
+      this.maxLat = maxLat;
+      this.minLon = minLon;
+      this.maxLon = maxLon;
+      this.circle = circle;
+      this.centerLat = centerLat;
+      this.centerLon = centerLon;
+      this.radiusSquared = radius * radius;
+      this.cosLat = Math.cos(Math.toRadians(centerLat));
+      this.lats = lats;
+      this.lons = lons;
+    }
+
+    static Fence of(Geofence geofence) {
+      long deviceId = geofence.getDevice() != null ? geofence.getDevice().getId() : 0L;
+      long ownerId = geofence.getUser().getId();
+      if (geofence.getShape() == Geofence.Shape.CIRCLE) {
+        double lat = geofence.getCenterLatitude();
+        double lon = geofence.getCenterLongitude();
+        double radius = geofence.getRadiusMeters();
+        double dLat = radius / METERS_PER_DEGREE;
+        double dLon = dLat / Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+        return new Fence(geofence.getId(), deviceId, ownerId, geofence.getName(),
+            Math.max(-90.0, lat - dLat), Math.min(90.0, lat + dLat),
+            Math.max(-180.0, lon - dLon), Math.min(180.0, lon + dLon),
+            true, lat, lon, radius, null, null);
+      }
+
+      String[] vertices = geofence.getVertices().split(";");
+      double[] lats = new double[vertices.length];
+      double[] lons = new double[vertices.length];
+      double minLat = 90.0, maxLat = -90.0, minLon = 180.0, maxLon = -180.0;
+      for (int i = 0; i < vertices.length; i++) {
+        int comma = vertices[i].indexOf(',');
+        lats[i] = Double.parseDouble(vertices[i].substring(0, comma));
+        lons[i] = Double.parseDouble(vertices[i].substring(comma + 1));
+        minLat = Math.min(minLat, lats[i]);
+        maxLat = Math.max(maxLat, lats[i]);
+        minLon = Math.min(minLon, lons[i]);
+        maxLon = Math.max(maxLon, lons[i]);
+      }
+      return new Fence(geofence.getId(), deviceId, ownerId, geofence.getName(), minLat, maxLat, minLon, maxLon,
+          false, 0.0, 0.0, 0.0, lats, lons);
+    }
+
+    public long id() {
+      return id;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    boolean appliesTo(long device, long owner) {
+      return deviceId != 0 ? deviceId == device : ownerId == owner;
+    }
+
+    boolean contains(double lat, double lon) {
+      if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+        return false;
+      }
+      if (circle) {
+        double dy = (lat - centerLat) * METERS_PER_DEGREE;
+        double dx = (lon - centerLon) * METERS_PER_DEGREE * cosLat;
+        return dx * dx + dy * dy <= radiusSquared;
+      }
+      // Ray casting
+      boolean inside = false;
+      for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+        if ((lats[i] > lat) != (lats[j] > lat)
+            && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+          inside = !inside;
+        }
+      }
+      return inside;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.arojas.gpstracker.dto.Coordinate;
+import com.arojas.gpstracker.dto.GeofenceRequest;
+import com.arojas.gpstracker.dto.GpsLocationDTO;
+import com.arojas.gpstracker.entities.Alert;
+import com.arojas.gpstracker.entities.Geofence;
+import com.arojas.gpstracker.entities.User;
+import com.arojas.gpstracker.exception.BadRequestException;
+import com.arojas.gpstracker.exception.NotFoundException;
+import com.arojas.gpstracker.mappers.GeofenceMapper;
+import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.repositories.GeofenceRepository;
+import com.arojas.gpstracker.services.DeviceRegistry.DeviceEntry;
+import com.arojas.gpstracker.services.GeofenceIndex.Fence;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Geocercas: alta y baja, índice en memoria y detección de entradas y
+ * salidas.
+ *
+ * <p>
+ * Cada ubicación aceptada se evalúa contra el índice y se compara con el
+ * conjunto de geocercas en las que estaba el dispositivo. Una entrada genera
+ * GEOFENCE_ENTERED y una salida LOCATION_OUT_OF_BOUNDS. La primera ubicación
+ * de un dispositivo tras el arranque solo fija su estado, sin alertas.
+ * </p>
+ *
+ * <p>
+ * Cada nodo tiene su propio índice: un alta o baja se avisa por
+ * {@link CacheInvalidationBus} para que los demás lo reconstruyan desde la
+ * base de datos.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class GeofenceService {
+
+  static final String TOPIC = "geofence";
+  static final String DEVICE_TOPIC = "geofence-device";
+
+  private final GeofenceRepository geofenceRepository;
+  private final DeviceRepository deviceRepository;
+  private final DeviceRegistry deviceRegistry;
+  private final AlertService alertService;
+  private final GeofenceMapper geofenceMapper;
+  private final CacheInvalidationBus invalidationBus;
+  private final TransactionTemplate alertTransaction;
+  private final double cellSize;
+  private final int maxCellsPerFence;
+
+  private final Map<Long, long[]> insideByDevice = new ConcurrentHashMap<>();
+  private volatile GeofenceIndex index = GeofenceIndex.EMPTY;
+
+  public GeofenceService(GeofenceRepository geofenceRepository, DeviceRepository deviceRepository,
+      DeviceRegistry deviceRegistry, AlertService alertService, GeofenceMapper geofenceMapper,
+      CacheInvalidationBus invalidationBus, PlatformTransactionManager transactionManager,
+      @Value("${gps.geofence.cell-size-degrees:0.05}") double cellSize,
+      @Value("${gps.geofence.max-cells-per-fence:1024}") int maxCellsPerFence) {
+    this.geofenceRepository = geofenceRepository;
+    this.deviceRepository = deviceRepository;
+    this.deviceRegistry = deviceRegistry;
+    this.alertService = alertService;
+    this.geofenceMapper = geofenceMapper;
+    this.invalidationBus = invalidationBus;
+    // Las alertas se crean después del commit de la ubicación: necesitan su
+    // propia transacción
+    this.alertTransaction = new TransactionTemplate(transactionManager);
+    this.alertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.cellSize = cellSize;
+    this.maxCellsPerFence = maxCellsPerFence;
+    invalidationBus.subscribe(TOPIC, ids -> rebuild());
+    invalidationBus.subscribe(DEVICE_TOPIC, ids -> {
+      rebuild();
+      for (long deviceId : ids) {
+        insideByDevice.remove(deviceId);
+      }
+    });
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    rebuild();
+    log.info("Índice de geocercas cargado: {} geocercas", index.size());
+  }
+
+  public Geofence createGeofence(GeofenceRequest request, User user) {
+    validate(request);
+    Geofence geofence = geofenceMapper.toEntity(request);
+    geofence.setUser(user);
+    if (request.getDeviceId() != null) {
+      if (!deviceRegistry.isOwnedBy(request.getDeviceId(), user.getId())) {
+        throw new NotFoundException("Dispositivo no encontrado con ID: " + request.getDeviceId());
+      }
+      geofence.setDevice(deviceRepository.getReferenceById(request.getDeviceId()));
+    }
+    Geofence saved = geofenceRepository.save(geofence);
+    rebuild();
+    invalidationBus.publish(TOPIC, saved.getId());
+    log.info("Geocerca creada: {} ({})", saved.getId(), saved.getName());
+    return saved;
+  }
+
+  public List<Geofence> getUserGeofences(Long userId) {
+    return geofenceRepository.findByUserIdOrderByIdAsc(userId);
+  }
+
+  public void deleteGeofence(Long id, User user) {
+    Fence fence = index.get(id);
+    if (fence == null || fence.ownerId != user.getId()) {
+      throw new NotFoundException("Geocerca no encontrada con ID: " + id);
+    }
+    geofenceRepository.deleteById(id);
+    rebuild();
+    invalidationBus.publish(TOPIC, id);
+    log.info("Geocerca eliminada: {}", id);
+  }
+
+  /**
+   * Elimina las geocercas propias de un dispositivo antes de borrarlo.
+   */
+  public void deleteDeviceGeofences(long deviceId) {
+    if (geofenceRepository.deleteByDeviceId(deviceId) > 0) {
+      rebuild();
+    }
+    insideByDevice.remove(deviceId);
+    invalidationBus.publish(DEVICE_TOPIC, deviceId);
+  }
+
+  /**
+   * Evalúa una ubicación ya guardada y genera las alertas de entrada y salida.
+   */
+  public void evaluate(GpsLocationDTO location) {
+    long deviceId = location.getDeviceId();
+    DeviceEntry device = deviceRegistry.get(deviceId);
+    if (device == null) {
+      return;
+    }
+
+    GeofenceIndex current = index;
+    long[] inside = current.query(deviceId, device.ownerId(), location.getLatitude(), location.getLongitude());
+    long[] previous = insideByDevice.put(deviceId, inside);
+    if (previous == null || previous == inside) {
+      return;
+    }
+
+    // Ambos arreglos están ordenados: un solo recorrido encuentra las diferencias
+    int i = 0;
+    int j = 0;
+    while (i < previous.length || j < inside.length) {
+      if (j == inside.length || (i < previous.length && previous[i] < inside[j])) {
+        Fence exited = current.get(previous[i++]);
+        if (exited != null) {
+          raise(deviceId, Alert.AlertType.LOCATION_OUT_OF_BOUNDS,
+              "El dispositivo salió de la geocerca '" + exited.name() + "'");
+        }
+      } else if (i == previous.length || inside[j] < previous[i]) {
+        Fence entered = current.get(inside[j++]);
+        raise(deviceId, Alert.AlertType.GEOFENCE_ENTERED,
+            "El dispositivo entró en la geocerca '" + entered.name() + "'");
+      } else {
+        i++;
+        j++;
+      }
+    }
+  }
+
+  private void raise(long deviceId, Alert.AlertType type, String message) {
+    try {
+      alertTransaction.executeWithoutResult(status -> alertService.createAlert(deviceId,
+          Alert.builder().type(type).message(message).build()));
+    } catch (Exception e) {
+      log.error("No se pudo crear la alerta {} para el dispositivo {}: {}", type, deviceId, e.getMessage());
+    }
+  }
+
+  private synchronized void rebuild() {
+    index = GeofenceIndex.build(geofenceRepository.findAll(), cellSize, maxCellsPerFence);
+  }
+
+  private void validate(GeofenceRequest request) {
+    if (request.getShape() == Geofence.Shape.CIRCLE) {
+      if (request.getCenterLatitude() == null || request.getCenterLongitude() == null
+          || request.getRadiusMeters() == null) {
+        throw new BadRequestException("Una geocerca circular requiere centro y radio");
+      }
+      request.setVertices(null);
+    } else {
+      List<Coordinate> vertices = request.getVertices();
+      if (vertices == null || vertices.size() < 3) {
+        throw new BadRequestException("Un polígono requiere al menos 3 vértices");
+      }
+      request.setCenterLatitude(null);
+      request.setCenterLongitude(null);
+      request.setRadiusMeters(null);
+    }
+  }
+}
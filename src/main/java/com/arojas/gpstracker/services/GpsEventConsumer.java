@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.dto.GpsEventMessage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Consumidor de eventos GPS en lote. Los offsets se confirman al retornar,
+ * cuando el lote ya está guardado.
+ *
+ * @author neta1
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GpsEventConsumer {
+
+  private final GpsEventService gpsEventService;
+
+  @KafkaListener(id = "gps-events-batch", topics = GpsEventService.TOPIC, groupId = "gps-tracker-group", containerFactory = "batchListenerContainerFactory")
+  public void processEvents(List<ConsumerRecord<String, GpsEventMessage>> records) {
+    List<GpsEventMessage> valid = new ArrayList<>(records.size());
+    for (ConsumerRecord<String, GpsEventMessage> record : records) {
+      GpsEventMessage message = record.value();
+      if (message != null && message.getDeviceId() != null && message.getEventType() != null) {
+        valid.add(message);
+      } else {
+        log.warn("Discarding invalid event at {}-{}@{}: {}",
+            record.topic(), record.partition(), record.offset(), message);
+      }
+    }
+
+    int saved = valid.isEmpty() ? 0 : gpsEventService.saveEvents(valid);
+    log.debug("Processed batch of {} event records, {} events saved", records.size(), saved);
+  }
+}
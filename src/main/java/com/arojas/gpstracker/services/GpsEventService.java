@@ -24,18 +24,27 @@
 
 package com.arojas.gpstracker.services;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Page;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import com.arojas.gpstracker.entities.Device;
+import com.arojas.gpstracker.dto.DeviceStateResponse;
+import com.arojas.gpstracker.dto.GpsEventMessage;
 import com.arojas.gpstracker.entities.GpsEvent;
 import com.arojas.gpstracker.entities.GpsEvent.EventType;
 import com.arojas.gpstracker.exception.NotFoundException;
-import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.repositories.GpsEventJdbcRepository;
 import com.arojas.gpstracker.repositories.GpsEventRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -50,22 +59,91 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class GpsEventService {
 
+    public static final String TOPIC = "gps-events";
+
     private final GpsEventRepository eventRepository;
-    private final DeviceRepository deviceRepository;
+    private final GpsEventJdbcRepository eventJdbcRepository;
+    private final KafkaTemplate<String, GpsEventMessage> kafkaTemplate;
+    private final DeviceRegistry deviceRegistry;
+    private final LivenessMonitor livenessMonitor;
+    private final DeviceStateProjection deviceStateProjection;
+    private final PresenceStore presenceStore;
+
+    /**
+     * Publica el evento en el tópico gps-events con el ID del dispositivo como
+     * clave, para conservar el orden por dispositivo. Se guarda en lote al
+     * consumirlo.
+     */
+    public void publishEvent(Long deviceId, EventType eventType) {
+        if (!deviceRegistry.exists(deviceId)) {
+            throw new NotFoundException("Dispositivo no encontrado con ID: " + deviceId);
+        }
+        GpsEventMessage message = new GpsEventMessage();
+        message.setDeviceId(deviceId);
+        message.setEventType(eventType);
+        message.setEventTime(System.currentTimeMillis());
+        kafkaTemplate.send(TOPIC, String.valueOf(deviceId), message);
+    }
 
-    public GpsEvent registerEvent(Long deviceId, EventType eventType) {
-        Device device = deviceRepository.findById(deviceId)
-                .orElseThrow(() -> new NotFoundException("Dispositivo no encontrado con ID: " + deviceId));
+    /**
+     * Guarda un lote de eventos con un solo INSERT. Los eventos de
+     * dispositivos desconocidos se descartan. La proyección de estado, que los
+     * difunde a los demás nodos, y el monitor de actividad se actualizan tras
+     * el commit, en el orden del lote.
+     *
+     * @param messages Eventos recibidos en un poll de Kafka
+     * @return Número de eventos guardados
+     */
+    @Transactional
+    public int saveEvents(List<GpsEventMessage> messages) {
+        List<GpsEventMessage> accepted = new ArrayList<>(messages.size());
+        for (GpsEventMessage message : messages) {
+            if (deviceRegistry.exists(message.getDeviceId())) {
+                accepted.add(message);
+            } else {
+                log.warn("Descartando evento para dispositivo desconocido {}", message.getDeviceId());
+            }
+        }
+        if (accepted.isEmpty()) {
+            return 0;
+        }
 
-        GpsEvent event = GpsEvent.builder()
-                .device(device)
-                .eventType(eventType)
-                .timestamp(LocalDateTime.now())
-                .build();
+        int size = accepted.size();
+        long[] deviceIds = new long[size];
+        EventType[] eventTypes = new EventType[size];
+        LocalDateTime[] timestamps = new LocalDateTime[size];
+        for (int i = 0; i < size; i++) {
+            GpsEventMessage message = accepted.get(i);
+            deviceIds[i] = message.getDeviceId();
+            eventTypes[i] = message.getEventType();
+            timestamps[i] = LocalDateTime.ofInstant(Instant.ofEpochMilli(message.getEventTime()),
+                    ZoneId.systemDefault());
+        }
+        long[] ids = eventJdbcRepository.insertBatch(deviceIds, eventTypes, timestamps);
+        log.info("Guardado lote de {} eventos", size);
 
-        log.info("Registrando evento '{}' para dispositivo ID {}", eventType, deviceId);
+        afterCommit(() -> {
+            presenceStore.touch(Arrays.stream(deviceIds).distinct().toArray());
+            deviceStateProjection.record(deviceIds, ids, eventTypes, timestamps);
+            for (int i = 0; i < size; i++) {
+                livenessMonitor.recordEvent(deviceIds[i], eventTypes[i]);
+            }
+        });
+        return size;
+    }
 
-        return eventRepository.save(event);
+    /**
+     * Estado actual del dispositivo, servido desde la proyección en memoria.
+     */
+    public DeviceStateResponse getDeviceState(Long deviceId) {
+        if (!deviceRegistry.exists(deviceId)) {
+            throw new NotFoundException("Dispositivo no encontrado con ID: " + deviceId);
+        }
+        return deviceStateProjection.get(deviceId)
+                .orElseGet(() -> DeviceStateResponse.builder()
+                        .deviceId(deviceId)
+                        .powerState(DeviceStateResponse.PowerState.UNKNOWN)
+                        .build());
     }
 
     public Page<GpsEvent> getRecentEvents(Long deviceId, Pageable pageable) {
@@ -73,8 +151,25 @@ public class GpsEventService {
         return eventRepository.findByDeviceId(deviceId, pageable);
     }
 
-    public List<GpsEvent> getEventsByType(Long deviceId, EventType eventType) {
+    /**
+     * Historial de eventos de un tipo, para auditoría. Para saber si el
+     * dispositivo está encendido usar {@link #getDeviceState(Long)}.
+     */
+    public Page<GpsEvent> getEventsByType(Long deviceId, EventType eventType, Pageable pageable) {
         log.debug("Consultando eventos de tipo '{}' para dispositivo ID {}", eventType, deviceId);
-        return eventRepository.findByDeviceIdAndEventType(deviceId, eventType);
+        return eventRepository.findByDeviceIdAndEventTypeOrderByTimestampDesc(deviceId, eventType, pageable);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.config.GpsFixBatchSerde;
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publica lotes de ubicaciones en formato binario compacto.
+ *
+ * <p>
+ * Usa su propio productor con {@link GpsFixBatchSerde}; no se registra como
+ * bean KafkaTemplate para no desplazar la plantilla JSON autoconfigurada.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class GpsFixPublisher implements DisposableBean {
+
+  public static final String TOPIC = "gps-locations-compact";
+
+  private final DefaultKafkaProducerFactory<String, GpsFixBatch> producerFactory;
+  private final KafkaTemplate<String, GpsFixBatch> kafkaTemplate;
+
+  public GpsFixPublisher(ProducerFactory<Object, Object> jsonProducerFactory) {
+    this.producerFactory = new DefaultKafkaProducerFactory<>(
+        jsonProducerFactory.getConfigurationProperties(), new StringSerializer(), new GpsFixBatchSerde());
+    this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+  }
+
+  /**
+   * Agrupa las ubicaciones por dispositivo y publica un registro por
+   * dispositivo con su ID como clave, para conservar el orden por partición.
+   *
+   * @return Número de registros Kafka enviados
+   */
+  public int publish(GpsFixBatch batch) {
+    Map<Long, GpsFixBatch> byDevice = new LinkedHashMap<>();
+    for (int i = 0; i < batch.size(); i++) {
+      byDevice.computeIfAbsent(batch.deviceId(i), id -> new GpsFixBatch(16))
+          .addFrom(batch, i);
+    }
+    byDevice.forEach((deviceId, fixes) -> kafkaTemplate.send(TOPIC, String.valueOf(deviceId), fixes));
+    log.debug("Published {} fixes for {} devices to {}", batch.size(), byDevice.size(), TOPIC);
+    return byDevice.size();
+  }
+
+  @Override
+  public void destroy() {
+    producerFactory.destroy();
+  }
+}
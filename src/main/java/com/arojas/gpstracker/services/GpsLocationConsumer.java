@@ -24,16 +24,27 @@
 
 package com.arojas.gpstracker.services;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import com.arojas.gpstracker.dto.GpsFixBatch;
 import com.arojas.gpstracker.dto.GpsLocationMessage;
-import com.arojas.gpstracker.exception.BadRequestException;
+import com.arojas.gpstracker.services.LocationErrorRouter.Cause;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Consumidores de ubicaciones. Ningún mensaje detiene su partición: los
+ * inválidos van al DLT y los fallos de base de datos al tópico de reintentos
+ * (ver {@link LocationErrorRouter}).
  *
  * @author neta1
  */
@@ -42,23 +53,211 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class GpsLocationConsumer {
 
+  public static final String TOPIC = "gps-locations";
+
   private final GpsLocationService gpsLocationService;
+  private final DeviceStripedExecutor stripedExecutor;
+  private final DeviceRegistry deviceRegistry;
+  private final LocationErrorRouter errorRouter;
+  private final ReplayFilter replayFilter;
+
+  @KafkaListener(id = "gps-locations-single", topics = TOPIC, groupId = "gps-tracker-group", concurrency = "${gps.ingest.consumer.concurrency:3}", autoStartup = "#{!${gps.ingest.batch.enabled:true}}")
+  public void processLocation(ConsumerRecord<String, GpsLocationMessage> record) {
+    List<CompletableFuture<?>> rejected = new ArrayList<>(1);
+    GpsFixBatch valid = new GpsFixBatch(1);
+    accept(record, valid, rejected);
+    try {
+      if (!valid.isEmpty()) {
+        log.info("Processing location for device: {}, lat: {}, lng: {}",
+            valid.deviceId(0), valid.latitude(0), valid.longitude(0));
+        save(valid);
+      }
+      LocationErrorRouter.await(rejected);
+    } catch (RuntimeException e) {
+      replayFilter.release(valid);
+      throw e;
+    }
+  }
+
+  /**
+   * Procesa un poll completo: valida en memoria y guarda el lote repartido por
+   * dispositivo (ver {@link DeviceStripedExecutor}). Los offsets se confirman
+   * al retornar, cuando el lote ya es durable.
+   */
+  @KafkaListener(id = "gps-locations-batch", topics = TOPIC, groupId = "gps-tracker-group", containerFactory = "batchListenerContainerFactory", autoStartup = "${gps.ingest.batch.enabled:true}")
+  public void processLocations(List<ConsumerRecord<String, GpsLocationMessage>> records) {
+    List<CompletableFuture<?>> rejected = new ArrayList<>();
+    GpsFixBatch valid = new GpsFixBatch(records.size());
+    for (ConsumerRecord<String, GpsLocationMessage> record : records) {
+      accept(record, valid, rejected);
+    }
+
+    int saved = saveAll(valid, rejected);
+    log.debug("Processed batch of {} records, {} locations saved", records.size(), saved);
+  }
+
+  /**
+   * Procesa los lotes binarios publicados por la ingesta masiva.
+   */
+  @KafkaListener(id = "gps-locations-compact", topics = GpsFixPublisher.TOPIC, groupId = "gps-tracker-group", containerFactory = "compactBatchListenerContainerFactory")
+  public void processCompactLocations(List<ConsumerRecord<String, GpsFixBatch>> records) {
+    List<CompletableFuture<?>> rejected = new ArrayList<>();
+    int total = 0;
+    for (ConsumerRecord<String, GpsFixBatch> record : records) {
+      total += record.value() != null ? record.value().size() : 0;
+    }
+
+    GpsFixBatch valid = new GpsFixBatch(total);
+    for (ConsumerRecord<String, GpsFixBatch> record : records) {
+      GpsFixBatch batch = record.value();
+      if (batch == null) {
+        rejected.add(errorRouter.deadLetterUnreadable(record));
+        continue;
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        Cause cause = check(batch.deviceId(i), batch.latitude(i), batch.longitude(i));
+        if (cause == null) {
+          if (replayFilter.accept(batch.deviceId(i), batch.seq(i))) {
+            valid.addFrom(batch, i);
+          }
+        } else {
+          GpsLocationMessage message = new GpsLocationMessage();
+          message.setDeviceId(batch.deviceId(i));
+          message.setLatitude(batch.latitude(i));
+          message.setLongitude(batch.longitude(i));
+          message.setFixTime(batch.fixTime(i) > 0 ? batch.fixTime(i) : null);
+          message.setSeq(batch.seq(i) > 0 ? batch.seq(i) : null);
+          rejected.add(errorRouter.deadLetter(message, cause, reason(cause, message), record));
+        }
+      }
+    }
+
+    int saved = saveAll(valid, rejected);
+    log.debug("Processed {} compact fixes, {} locations saved", total, saved);
+  }
+
+  /**
+   * Reintenta ubicaciones cuyo guardado falló por un error transitorio. Un
+   * registro que aún no vence se devuelve con {@code nack}: el contenedor
+   * pausa el consumidor de reintentos hasta el plazo, sin bloquear el hilo
+   * del poll, y lo vuelve a entregar.
+   */
+  @KafkaListener(id = "gps-locations-retry", topics = LocationErrorRouter.RETRY_TOPIC, groupId = "gps-tracker-group", containerFactory = "retryListenerContainerFactory")
+  public void processRetry(ConsumerRecord<String, GpsLocationMessage> record, Acknowledgment ack) {
+    GpsLocationMessage message = record.value();
+    if (message == null || message.getDeviceId() == null) {
+      LocationErrorRouter.await(List.of(errorRouter.deadLetterUnreadable(record)));
+      ack.acknowledge();
+      return;
+    }
+    Duration delay = errorRouter.remainingDelay(record);
+    if (!delay.isZero()) {
+      ack.nack(delay);
+      return;
+    }
+
+    // Ya pasó el filtro de reenvíos al llegar por primera vez
+    GpsFixBatch fix = new GpsFixBatch(1);
+    addMessage(fix, message);
+    try {
+      errorRouter.recovered(gpsLocationService.saveLocations(fix));
+    } catch (RuntimeException e) {
+      errorRouter.retryOrDeadLetter(fix, LocationErrorRouter.attemptOf(record), e);
+    }
+    ack.acknowledge();
+  }
 
-  @KafkaListener(topics = "gps-locations", groupId = "gps-tracker-group")
-  public void processLocation(GpsLocationMessage message) {
-    log.info("Processing location for device: {}, lat: {}, lng: {}",
-        message.getDeviceId(), message.getLatitude(), message.getLongitude());
+  private void accept(ConsumerRecord<String, GpsLocationMessage> record, GpsFixBatch valid,
+      List<CompletableFuture<?>> rejected) {
+    GpsLocationMessage message = record.value();
+    if (message == null) {
+      rejected.add(errorRouter.deadLetterUnreadable(record));
+      return;
+    }
+    Cause cause = message.getDeviceId() == null
+        ? Cause.INVALID_MESSAGE
+        : check(message.getDeviceId(), message.getLatitude(), message.getLongitude());
+    if (cause == null) {
+      if (replayFilter.accept(message.getDeviceId(), message.getSeq() != null ? message.getSeq() : 0L)) {
+        addMessage(valid, message);
+      } else {
+        log.debug("Dropping replayed location for device {} with seq {}", message.getDeviceId(), message.getSeq());
+      }
+    } else {
+      rejected.add(errorRouter.deadLetter(message, cause, reason(cause, message), record));
+    }
+  }
 
-    // Validar coordenadas
-    if (message.getLatitude() < -90.0 || message.getLatitude() > 90.0) {
-      log.error("Invalid latitude: {}", message.getLatitude());
-      throw new BadRequestException("Latitude must be between -90 and 90");
+  /**
+   * Guarda las ubicaciones aceptadas. Si el poll falla y se volverá a
+   * entregar, sus secuencias se liberan para que la nueva entrega no se
+   * descarte como reenvío.
+   */
+  private int saveAll(GpsFixBatch valid, List<CompletableFuture<?>> rejected) {
+    try {
+      int saved = stripedExecutor.process(valid, this::save);
+      LocationErrorRouter.await(rejected);
+      return saved;
+    } catch (RuntimeException e) {
+      replayFilter.release(valid);
+      throw e;
     }
-    if (message.getLongitude() < -180.0 || message.getLongitude() > 180.0) {
-      log.error("Invalid longitude: {}", message.getLongitude());
-      throw new BadRequestException("Longitude must be between -180 and 180");
+  }
+
+  private static void addMessage(GpsFixBatch fixes, GpsLocationMessage message) {
+    fixes.add(message.getDeviceId(), message.getFixTime() != null ? message.getFixTime() : 0L,
+        message.getSeq() != null ? message.getSeq() : 0L, message.getLatitude(), message.getLongitude());
+  }
+
+  /**
+   * Guarda una franja. Un error transitorio manda la franja entera a
+   * reintentos; cualquier otro se debe a alguna ubicación concreta, así que la
+   * franja se parte en mitades hasta aislarla y solo esa va al DLT.
+   */
+  private int save(GpsFixBatch fixes) {
+    try {
+      return gpsLocationService.saveLocations(fixes);
+    } catch (RuntimeException e) {
+      if (fixes.size() == 1 || LocationErrorRouter.isTransient(e)) {
+        errorRouter.retryOrDeadLetter(fixes, 0, e);
+        return 0;
+      }
+      log.warn("Isolating failed locations in a stripe of {}: {}", fixes.size(), e.getMessage());
+      int half = fixes.size() / 2;
+      return save(slice(fixes, 0, half)) + save(slice(fixes, half, fixes.size()));
     }
+  }
+
+  private static GpsFixBatch slice(GpsFixBatch fixes, int from, int to) {
+    GpsFixBatch part = new GpsFixBatch(to - from);
+    for (int i = from; i < to; i++) {
+      part.addFrom(fixes, i);
+    }
+    return part;
+  }
+
+  private Cause check(long deviceId, double latitude, double longitude) {
+    if (!isValid(latitude, longitude)) {
+      return Cause.INVALID_COORDINATES;
+    }
+    if (!deviceRegistry.exists(deviceId)) {
+      return Cause.UNKNOWN_DEVICE;
+    }
+    return null;
+  }
+
+  private static String reason(Cause cause, GpsLocationMessage message) {
+    return switch (cause) {
+      case INVALID_MESSAGE -> "Missing device ID";
+      case INVALID_COORDINATES -> "Coordinates out of range: (" + message.getLatitude() + ", "
+          + message.getLongitude() + ")";
+      case UNKNOWN_DEVICE -> "Device not found with ID: " + message.getDeviceId();
+      default -> cause.name();
+    };
+  }
 
-    gpsLocationService.saveLocation(message.getDeviceId(), message.getLatitude(), message.getLongitude());
+  private boolean isValid(double latitude, double longitude) {
+    return latitude >= -90.0 && latitude <= 90.0
+        && longitude >= -180.0 && longitude <= 180.0;
   }
 }
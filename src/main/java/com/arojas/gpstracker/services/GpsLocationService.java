@@ -24,29 +24,46 @@
 
 package com.arojas.gpstracker.services;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
-import javax.validation.constraints.DecimalMax;
-import javax.validation.constraints.DecimalMin;
-
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.validation.annotation.Validated;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.arojas.gpstracker.dto.CursorSliceResponse;
+import com.arojas.gpstracker.dto.GpsFixBatch;
 import com.arojas.gpstracker.dto.GpsLocationDTO;
+import com.arojas.gpstracker.dto.LocationExportFormat;
+import com.arojas.gpstracker.dto.PresenceResponse;
 import com.arojas.gpstracker.entities.GpsLocation;
 import com.arojas.gpstracker.exception.BadRequestException;
 import com.arojas.gpstracker.exception.NotFoundException;
-import com.arojas.gpstracker.mappers.GpsLocationMapper;
-import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.repositories.GpsLocationJdbcRepository;
 import com.arojas.gpstracker.repositories.GpsLocationRepository;
+import com.arojas.gpstracker.services.LastPositionStore.LastPosition;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -60,41 +77,103 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Validated
 public class GpsLocationService {
 
+  private static final int MAX_HISTORY_SLICE = 1000;
+  private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+  private static final DateTimeFormatter EXPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
   private final GpsLocationRepository locationRepository;
-  private final DeviceRepository deviceRepository;
-  private final SimpMessagingTemplate messagingTemplate;
-  private final GpsLocationMapper gpsLocationMapper;
+  private final GpsLocationJdbcRepository locationJdbcRepository;
+  private final DeviceRegistry deviceRegistry;
+  private final LastPositionStore lastPositionStore;
+  private final PresenceStore presenceStore;
+  private final LocationFanout locationFanout;
+  private final GeofenceService geofenceService;
+  private final LivenessMonitor livenessMonitor;
+  private final DeviceRollupService deviceRollupService;
 
-  @Transactional
-  public GpsLocation saveLocation(
-      Long deviceId,
-      @DecimalMin(value = "-90.0", message = "Latitude must be between -90 and 90") @DecimalMax(value = "90.0", message = "Latitude must be between -90 and 90") double latitude,
-      @DecimalMin(value = "-180.0", message = "Longitude must be between -180 and 180") @DecimalMax(value = "180.0", message = "Longitude must be between -180 and 180") double longitude) {
-    if (!deviceRepository.existsById(deviceId)) {
-      throw new NotFoundException("Device not found with ID: " + deviceId);
-    }
+  @Value("${gps.track.max-raw-points:500000}")
+  private int maxTrackRawPoints;
 
-    log.info("Saving location for device {}: ({}, {})", deviceId, latitude, longitude);
+  @Value("${gps.ingest.max-clock-skew:5m}")
+  private Duration maxClockSkew;
 
-    locationRepository.insertLocation(deviceId, latitude, longitude);
+  /**
+   * Saves a whole batch of already validated locations with one multi-row
+   * insert. Fixes for unknown devices are discarded instead of failing the
+   * batch. Fixes are stored with the device time; fixes without one, or with
+   * one further in the future than {@code gps.ingest.max-clock-skew}, are
+   * stored with the arrival time. A fix whose sequence number is already
+   * stored is skipped, and only the inserted fixes reach the post-commit
+   * consumers (last position, fan-out, geofences, liveness and rollups).
+   *
+   * @param fixes Locations received in one Kafka poll
+   * @return Number of locations stored
+   */
+  @Transactional
+  public int saveLocations(GpsFixBatch fixes) {
+    GpsFixBatch accepted = new GpsFixBatch(fixes.size());
+    for (int i = 0; i < fixes.size(); i++) {
+      if (deviceRegistry.exists(fixes.deviceId(i))) {
+        accepted.addFrom(fixes, i);
+      } else {
+        log.warn("Discarding location for unknown device {}", fixes.deviceId(i));
+      }
+    }
+    if (accepted.isEmpty()) {
+      return 0;
+    }
 
-    GpsLocation location = locationRepository.findTopByDeviceIdOrderByTimestampDesc(deviceId)
-        .orElseThrow(() -> new NotFoundException("Failed to retrieve newly inserted location for device: " + deviceId));
+    LocalDateTime arrival = LocalDateTime.now();
+    long latestAccepted = System.currentTimeMillis() + maxClockSkew.toMillis();
+    LocalDateTime[] timestamps = new LocalDateTime[accepted.size()];
+    for (int i = 0; i < accepted.size(); i++) {
+      long fixTime = accepted.fixTime(i);
+      timestamps[i] = fixTime > 0 && fixTime <= latestAccepted
+          ? LocalDateTime.ofInstant(Instant.ofEpochMilli(fixTime), ZoneId.systemDefault())
+          : arrival;
+    }
+    long[] ids = locationJdbcRepository.insertBatch(accepted, timestamps);
 
-    GpsLocationDTO dto = gpsLocationMapper.toDto(location);
-    messagingTemplate.convertAndSend("/topic/gps-updates/" + deviceId, dto);
-    log.debug("Sent WebSocket notification for device {}: {}", deviceId, dto);
+    List<GpsLocationDTO> saved = new ArrayList<>(accepted.size());
+    for (int i = 0; i < accepted.size(); i++) {
+      if (ids[i] == GpsLocationJdbcRepository.DUPLICATE) {
+        log.debug("Skipping stored location for device {} with seq {}", accepted.deviceId(i), accepted.seq(i));
+        continue;
+      }
+      GpsLocationDTO dto = GpsLocationDTO.builder()
+          .id(ids[i] > 0 ? ids[i] : null)
+          .latitude(accepted.latitude(i))
+          .longitude(accepted.longitude(i))
+          .timestamp(timestamps[i])
+          .deviceId(accepted.deviceId(i))
+          .build();
+      saved.add(dto);
+    }
+    log.info("Saved batch of {} locations, {} already stored", saved.size(), accepted.size() - saved.size());
+    if (saved.isEmpty()) {
+      return 0;
+    }
+    afterCommit(() -> {
+      List<LastPosition> positions = new ArrayList<>(saved.size());
+      saved.forEach(dto -> positions.add(LastPosition.of(dto)));
+      lastPositionStore.updateAll(positions);
+      presenceStore.touch(positions.stream().mapToLong(LastPosition::deviceId).distinct().toArray());
+      saved.forEach(dto -> {
+        locationFanout.publish(dto);
+        geofenceService.evaluate(dto);
+        livenessMonitor.recordFix(dto.getDeviceId());
+        deviceRollupService.record(dto);
+      });
+    });
 
-    return location;
+    return saved.size();
   }
 
-  @Cacheable(value = "deviceLocations", key = "#deviceId + '-' + #page + '-' + #size")
   @Transactional(readOnly = true)
   public Page<GpsLocation> getLocationsForDevice(Long deviceId, int page, int size) {
-    if (!deviceRepository.existsById(deviceId)) {
+    if (!deviceRegistry.exists(deviceId)) {
       throw new NotFoundException("Device not found with ID: " + deviceId);
     }
 
@@ -103,24 +182,221 @@ public class GpsLocationService {
     return locationRepository.findAllByDeviceIdOrderByTimestampDesc(deviceId, pageable);
   }
 
-  @Cacheable(value = "lastLocation", key = "#deviceId")
+  /**
+   * Returns a device's history using keyset pagination. The cursor is opaque
+   * to the client and encodes the {@code (timestamp, id)} of the last row
+   * returned.
+   *
+   * @param deviceId ID of the device
+   * @param cursor   Cursor returned by the previous call, or null for the
+   *                 first slice
+   * @param size     Maximum number of locations
+   */
+  @Transactional(readOnly = true)
+  public CursorSliceResponse<GpsLocationDTO> getLocationHistory(Long deviceId, String cursor, int size) {
+    if (!deviceRegistry.exists(deviceId)) {
+      throw new NotFoundException("Device not found with ID: " + deviceId);
+    }
+    if (size < 1 || size > MAX_HISTORY_SLICE) {
+      throw new BadRequestException("Size must be between 1 and " + MAX_HISTORY_SLICE);
+    }
+
+    Pageable pageable = PageRequest.of(0, size);
+    Slice<GpsLocationDTO> slice;
+    if (cursor == null || cursor.isBlank()) {
+      slice = locationRepository.findHistorySlice(deviceId, pageable);
+    } else {
+      GpsLocationDTO last = decodeCursor(cursor);
+      slice = locationRepository.findHistorySliceBefore(deviceId, last.getTimestamp(), last.getId(), pageable);
+    }
+
+    List<GpsLocationDTO> content = slice.getContent();
+    String nextCursor = slice.hasNext() && !content.isEmpty() ? encodeCursor(content.get(content.size() - 1)) : null;
+    return new CursorSliceResponse<>(content, nextCursor, slice.hasNext());
+  }
+
+  /**
+   * Returns the last accepted location of a device. Served from the local
+   * cache or Redis; the database is only read when neither has it.
+   */
   @Transactional(readOnly = true)
-  public Optional<GpsLocation> getLastLocation(Long deviceId) {
-    log.debug("Fetching last location for device ID {}", deviceId);
-    return locationRepository.findTopByDeviceIdOrderByTimestampDesc(deviceId);
+  public Optional<GpsLocationDTO> getLastLocation(Long deviceId) {
+    LastPosition position = lastPositionStore.get(deviceId);
+    if (position == null) {
+      log.debug("Last location for device ID {} not in memory, loading from database", deviceId);
+      locationRepository.findLatestByDeviceIds(List.of(deviceId))
+          .forEach(dto -> lastPositionStore.update(LastPosition.of(dto)));
+      position = lastPositionStore.get(deviceId);
+    }
+    return Optional.ofNullable(position).map(LastPosition::toDto);
+  }
+
+  /**
+   * Returns whether the device has reported recently, as seen by any node.
+   */
+  public PresenceResponse getPresence(Long deviceId) {
+    if (!deviceRegistry.exists(deviceId)) {
+      throw new NotFoundException("Device not found with ID: " + deviceId);
+    }
+    return presenceStore.get(deviceId);
+  }
+
+  /**
+   * Returns the last location of every device owned by the user, for fleet
+   * dashboards.
+   */
+  @Transactional(readOnly = true)
+  public List<GpsLocationDTO> getLastLocationsForUser(Long userId) {
+    long[] deviceIds = deviceRegistry.deviceIdsOwnedBy(userId);
+    List<LastPosition> positions = lastPositionStore.getAll(deviceIds);
+
+    if (positions.size() < deviceIds.length) {
+      Set<Long> found = new HashSet<>();
+      positions.forEach(position -> found.add(position.deviceId()));
+      List<Long> missing = new ArrayList<>();
+      for (long deviceId : deviceIds) {
+        if (!found.contains(deviceId)) {
+          missing.add(deviceId);
+        }
+      }
+      List<LastPosition> loaded = new ArrayList<>();
+      locationRepository.findLatestByDeviceIds(missing).forEach(dto -> loaded.add(LastPosition.of(dto)));
+      lastPositionStore.updateAll(loaded);
+      positions = lastPositionStore.getAll(deviceIds);
+    }
+
+    List<GpsLocationDTO> dtos = new ArrayList<>(positions.size());
+    positions.forEach(position -> dtos.add(position.toDto()));
+    return dtos;
   }
 
   @Transactional(readOnly = true)
   public List<GpsLocation> getLocationsByTimeRange(Long deviceId, LocalDateTime start, LocalDateTime end) {
-    if (!deviceRepository.existsById(deviceId)) {
+    validateTimeRange(deviceId, start, end);
+
+    log.debug("Fetching locations for device ID {} between {} and {}", deviceId, start, end);
+    return locationRepository.findByDeviceIdAndTimestampBetweenOrderByTimestampDesc(deviceId, start, end);
+  }
+
+  public void validateTimeRange(Long deviceId, LocalDateTime start, LocalDateTime end) {
+    if (!deviceRegistry.exists(deviceId)) {
       throw new NotFoundException("Device not found with ID: " + deviceId);
     }
 
     if (start.isAfter(end)) {
       throw new BadRequestException("Start time must be before end time");
     }
+  }
 
-    log.debug("Fetching locations for device ID {} between {} and {}", deviceId, start, end);
-    return locationRepository.findByDeviceIdAndTimestampBetweenOrderByTimestampDesc(deviceId, start, end);
+  /**
+   * Writes the locations of a time range to {@code out} as they are read from
+   * the database, oldest first. Memory use does not depend on the size of the
+   * range. Call {@link #validateTimeRange} before the response is committed.
+   *
+   * @param deviceId ID of the device
+   * @param start    Start of the time range
+   * @param end      End of the time range
+   * @param format   Output format
+   * @param out      Response body
+   */
+  public void exportLocations(Long deviceId, LocalDateTime start, LocalDateTime end,
+      LocationExportFormat format, OutputStream out) throws IOException {
+    log.debug("Exporting locations for device ID {} between {} and {} as {}", deviceId, start, end, format);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+    if (format == LocationExportFormat.CSV) {
+      writer.write("id,latitude,longitude,timestamp,deviceId\n");
+    }
+
+    locationJdbcRepository.streamRange(deviceId, start, end, (id, latitude, longitude, timestamp) -> {
+      String time = EXPORT_TIMESTAMP.format(timestamp);
+      if (format == LocationExportFormat.CSV) {
+        writer.write(id + "," + latitude + "," + longitude + "," + time + "," + deviceId + "\n");
+      } else {
+        writer.write("{\"id\":" + id + ",\"latitude\":" + latitude + ",\"longitude\":" + longitude
+            + ",\"timestamp\":\"" + time + "\",\"deviceId\":" + deviceId + "}\n");
+      }
+    });
+    writer.flush();
+  }
+
+  /**
+   * Returns the track of a time range simplified for display, oldest first.
+   * Rows are streamed from the database into primitive arrays; points closer
+   * than the tolerance to the previous kept point are dropped while reading.
+   * With a tolerance, Douglas–Peucker keeps every point that deviates more than
+   * that from the simplified line; with a point budget, Visvalingam–Whyatt
+   * removes the least significant points until it is met. When both are given
+   * the tolerance is applied first. The first and last points are always kept.
+   *
+   * @param deviceId        ID of the device
+   * @param start           Start of the time range
+   * @param end             End of the time range
+   * @param toleranceMeters Maximum deviation in meters, optional
+   * @param maxPoints       Maximum number of points, optional
+   * @return Simplified track
+   */
+  @Transactional(readOnly = true)
+  public List<GpsLocationDTO> getSimplifiedTrack(Long deviceId, LocalDateTime start, LocalDateTime end,
+      Double toleranceMeters, Integer maxPoints) {
+    validateTimeRange(deviceId, start, end);
+    if (toleranceMeters == null && maxPoints == null) {
+      throw new BadRequestException("toleranceMeters or maxPoints is required");
+    }
+    if (toleranceMeters != null && !(toleranceMeters > 0)) {
+      throw new BadRequestException("toleranceMeters must be positive");
+    }
+    if (maxPoints != null && maxPoints < 2) {
+      throw new BadRequestException("maxPoints must be at least 2");
+    }
+
+    double tolerance = toleranceMeters != null ? toleranceMeters : 0;
+    TrackSimplifier.Track track = new TrackSimplifier.Track(tolerance);
+    locationJdbcRepository.streamRange(deviceId, start, end, (id, latitude, longitude, timestamp) -> {
+      if (track.read() >= maxTrackRawPoints) {
+        throw new BadRequestException("Time range exceeds " + maxTrackRawPoints + " locations");
+      }
+      track.add(id, latitude, longitude, timestamp);
+    });
+    track.finish();
+
+    int[] kept = TrackSimplifier.simplify(track, tolerance, maxPoints != null ? maxPoints : 0);
+    log.debug("Simplified track for device ID {} from {} to {} points", deviceId, track.read(), kept.length);
+
+    List<GpsLocationDTO> dtos = new ArrayList<>(kept.length);
+    for (int i : kept) {
+      dtos.add(new GpsLocationDTO(track.id(i), track.latitude(i), track.longitude(i), track.timestamp(i), deviceId));
+    }
+    return dtos;
+  }
+
+  private static String encodeCursor(GpsLocationDTO last) {
+    String raw = last.getTimestamp() + "|" + last.getId();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static GpsLocationDTO decodeCursor(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = raw.indexOf('|');
+      return GpsLocationDTO.builder()
+          .timestamp(LocalDateTime.parse(raw.substring(0, separator)))
+          .id(Long.parseLong(raw.substring(separator + 1)))
+          .build();
+    } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+      throw new BadRequestException("Invalid cursor");
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.entities.HttpLog;
+import com.arojas.gpstracker.repositories.HttpLogJdbcRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Escritor asíncrono de logs HTTP.
+ *
+ * <p>
+ * El filtro solo encola el registro; un hilo en segundo plano vacía la cola
+ * en lotes JDBC. Cuando la cola está llena se aplica la política configurada
+ * en {@code gps.http-log.overflow-policy}.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class HttpLogWriter implements InitializingBean, DisposableBean {
+
+  /**
+   * Qué hacer cuando la cola está llena.
+   */
+  public enum OverflowPolicy {
+    /** Descarta el registro que llega. */
+    DROP_NEWEST,
+    /** Descarta el registro más antiguo de la cola. */
+    DROP_OLDEST,
+    /** Espera hasta block-timeout-ms y luego descarta el registro que llega. */
+    BLOCK
+  }
+
+  private record SampleRule(String prefix, double rate) {
+  }
+
+  private final HttpLogJdbcRepository httpLogJdbcRepository;
+  private final BlockingQueue<HttpLog> queue;
+  private final OverflowPolicy overflowPolicy;
+  private final long blockTimeoutMs;
+  private final int batchSize;
+  private final long flushIntervalMs;
+  private final double defaultSampleRate;
+  private final List<SampleRule> sampleRules;
+  private final Counter droppedOverflow;
+  private final Counter droppedError;
+  private final Counter written;
+
+  private volatile boolean running = true;
+  private Thread worker;
+
+  public HttpLogWriter(HttpLogJdbcRepository httpLogJdbcRepository, MeterRegistry meterRegistry,
+      @Value("${gps.http-log.queue-capacity:10000}") int queueCapacity,
+      @Value("${gps.http-log.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy,
+      @Value("${gps.http-log.block-timeout-ms:50}") long blockTimeoutMs,
+      @Value("${gps.http-log.batch-size:500}") int batchSize,
+      @Value("${gps.http-log.flush-interval-ms:1000}") long flushIntervalMs,
+      @Value("${gps.http-log.default-sample-rate:1.0}") double defaultSampleRate,
+      @Value("${gps.http-log.sample-rates:}") List<String> sampleRates) {
+    this.httpLogJdbcRepository = httpLogJdbcRepository;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.overflowPolicy = overflowPolicy;
+    this.blockTimeoutMs = blockTimeoutMs;
+    this.batchSize = batchSize;
+    this.flushIntervalMs = flushIntervalMs;
+    this.defaultSampleRate = defaultSampleRate;
+    this.sampleRules = parseSampleRules(sampleRates);
+
+    Gauge.builder("http.log.queue.depth", queue, BlockingQueue::size)
+        .description("HTTP logs waiting to be written")
+        .register(meterRegistry);
+    this.droppedOverflow = Counter.builder("http.log.dropped").tag("reason", "overflow")
+        .description("HTTP logs discarded before reaching the database")
+        .register(meterRegistry);
+    this.droppedError = Counter.builder("http.log.dropped").tag("reason", "error")
+        .description("HTTP logs discarded before reaching the database")
+        .register(meterRegistry);
+    this.written = Counter.builder("http.log.written")
+        .description("HTTP logs written to the database")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Decide si una petición a esta ruta se registra completa. Gana la regla con
+   * el prefijo más largo; sin regla se usa la tasa por defecto.
+   */
+  public boolean isSampled(String path) {
+    double rate = defaultSampleRate;
+    for (SampleRule rule : sampleRules) {
+      if (path.startsWith(rule.prefix())) {
+        rate = rule.rate();
+        break;
+      }
+    }
+    return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  /**
+   * Encola el registro sin bloquear el hilo de la petición, salvo con la
+   * política BLOCK.
+   */
+  public void submit(HttpLog httpLog) {
+    boolean accepted = switch (overflowPolicy) {
+      case DROP_NEWEST -> queue.offer(httpLog);
+      case DROP_OLDEST -> offerDroppingOldest(httpLog);
+      case BLOCK -> offerBlocking(httpLog);
+    };
+    if (!accepted) {
+      droppedOverflow.increment();
+    }
+  }
+
+  private boolean offerDroppingOldest(HttpLog httpLog) {
+    while (!queue.offer(httpLog)) {
+      if (queue.poll() != null) {
+        droppedOverflow.increment();
+      }
+    }
+    return true;
+  }
+
+  private boolean offerBlocking(HttpLog httpLog) {
+    try {
+      return queue.offer(httpLog, blockTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    worker = new Thread(this::drainLoop, "http-log-writer");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  private void drainLoop() {
+    List<HttpLog> batch = new ArrayList<>(batchSize);
+    while (running) {
+      try {
+        HttpLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+    // Vaciar lo que quede al apagar
+    while (queue.drainTo(batch, batchSize) > 0) {
+      write(batch);
+    }
+  }
+
+  private void write(List<HttpLog> batch) {
+    try {
+      httpLogJdbcRepository.insertBatch(batch);
+      written.increment(batch.size());
+    } catch (Exception e) {
+      droppedError.increment(batch.size());
+      log.error("Failed to save {} HTTP logs: {}", batch.size(), e.getMessage(), e);
+    } finally {
+      batch.clear();
+    }
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    // Sin interrupt: el hilo termina su lote actual y sale en el siguiente poll
+    running = false;
+    worker.join(flushIntervalMs + TimeUnit.SECONDS.toMillis(10));
+  }
+
+  private static List<SampleRule> parseSampleRules(List<String> sampleRates) {
+    List<SampleRule> rules = new ArrayList<>();
+    for (String entry : sampleRates) {
+      int separator = entry.lastIndexOf('=');
+      if (separator <= 0) {
+        continue;
+      }
+      rules.add(new SampleRule(entry.substring(0, separator).trim(),
+          Double.parseDouble(entry.substring(separator + 1).trim())));
+    }
+    rules.sort(Comparator.comparingInt((SampleRule rule) -> rule.prefix().length()).reversed());
+    return List.copyOf(rules);
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.config.IngestRedis;
+import com.arojas.gpstracker.dto.GpsLocationDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Última posición aceptada de cada dispositivo, escrita por la ruta de
+ * ingesta después del commit.
+ *
+ * <p>
+ * Caché de dos niveles compartida entre nodos: una caché Caffeine local
+ * delante del hash Redis {@value #HASH}. Las escrituras de un lote actualizan
+ * Redis con una sola llamada a un script que solo reemplaza cada posición si
+ * es más reciente, y avisan a los demás nodos por {@link CacheInvalidationBus}
+ * para que descarten su copia local. Redis se usa a través de
+ * {@link IngestRedis}, con un tiempo de espera corto, porque las escrituras
+ * corren en el hilo del consumidor de Kafka. Las lecturas se sirven desde la caché local y, si falta la entrada,
+ * desde Redis. Si Redis no responde se sigue trabajando solo con la caché
+ * local.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class LastPositionStore {
+
+  public static final String HASH = "gps:last-position";
+  static final String TOPIC = "position";
+
+  // Por cada (campo, valor, hora, ID) reemplaza el campo solo si la posición
+  // es más reciente (hora, luego ID); devuelve 1 o 0 por campo
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static final RedisScript<List<Long>> UPDATE_IF_NEWER = new DefaultRedisScript("""
+      local replaced = {}
+      for i = 1, #ARGV, 4 do
+        local newer = 1
+        local current = redis.call('HGET', KEYS[1], ARGV[i])
+        if current then
+          local millis, id = string.match(current, '^(-?%d+)|(%d+)|')
+          millis = tonumber(millis)
+          id = tonumber(id)
+          local newMillis = tonumber(ARGV[i + 2])
+          if millis > newMillis or (millis == newMillis and id > tonumber(ARGV[i + 3])) then
+            newer = 0
+          end
+        end
+        if newer == 1 then
+          redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+        end
+        replaced[#replaced + 1] = newer
+      end
+      return replaced
+      """, List.class);
+
+  // Dispositivos por llamada al script, para no bloquear Redis con lotes enormes
+  private static final int SCRIPT_CHUNK = 1000;
+
+  /**
+   * Posición inmutable y compacta de un dispositivo.
+   */
+  public record LastPosition(long locationId, long deviceId, double latitude, double longitude,
+      LocalDateTime timestamp) {
+
+    public static LastPosition of(GpsLocationDTO dto) {
+      return new LastPosition(dto.getId() != null ? dto.getId() : 0L, dto.getDeviceId(),
+          dto.getLatitude(), dto.getLongitude(), dto.getTimestamp());
+    }
+
+    public GpsLocationDTO toDto() {
+      return new GpsLocationDTO(locationId != 0L ? locationId : null, latitude, longitude, timestamp, deviceId);
+    }
+
+    boolean isNewerThan(LastPosition other) {
+      int cmp = timestamp.compareTo(other.timestamp);
+      return cmp > 0 || (cmp == 0 && locationId >= other.locationId);
+    }
+
+    long epochMillis() {
+      return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    String encode() {
+      return epochMillis() + "|" + locationId + "|" + latitude + "|" + longitude + "|" + timestamp;
+    }
+
+    static LastPosition decode(long deviceId, String value) {
+      String[] parts = value.split("\\|");
+      return new LastPosition(Long.parseLong(parts[1]), deviceId, Double.parseDouble(parts[2]),
+          Double.parseDouble(parts[3]), LocalDateTime.parse(parts[4]));
+    }
+  }
+
+  private final StringRedisTemplate redisTemplate;
+  private final CacheInvalidationBus invalidationBus;
+  private final Cache<Long, LastPosition> positions;
+
+  public LastPositionStore(IngestRedis ingestRedis, CacheInvalidationBus invalidationBus,
+      @Value("${gps.cache.near.maximum-size:100000}") long maximumSize,
+      @Value("${gps.cache.near.ttl:30s}") Duration ttl) {
+    this.redisTemplate = ingestRedis.template();
+    this.invalidationBus = invalidationBus;
+    this.positions = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .build();
+    invalidationBus.subscribe(TOPIC, ids -> {
+      for (long deviceId : ids) {
+        positions.invalidate(deviceId);
+      }
+    });
+  }
+
+  /**
+   * Guarda la posición si es más reciente que la conocida.
+   */
+  public void update(LastPosition position) {
+    updateAll(List.of(position));
+  }
+
+  /**
+   * Guarda las posiciones más recientes de un lote: una llamada al script en
+   * Redis por cada {@value #SCRIPT_CHUNK} dispositivos y un solo aviso a los
+   * demás nodos.
+   */
+  public void updateAll(Collection<LastPosition> batch) {
+    Map<Long, LastPosition> newest = new LinkedHashMap<>();
+    for (LastPosition position : batch) {
+      newest.merge(position.deviceId(), position,
+          (current, candidate) -> candidate.isNewerThan(current) ? candidate : current);
+    }
+
+    List<LastPosition> pending = new ArrayList<>(newest.size());
+    for (LastPosition position : newest.values()) {
+      LastPosition kept = positions.asMap().merge(position.deviceId(), position,
+          (current, candidate) -> candidate.isNewerThan(current) ? candidate : current);
+      if (kept == position) {
+        pending.add(position); // si no, la copia local ya es más reciente
+      }
+    }
+
+    long[] changed = new long[pending.size()];
+    int count = 0;
+    for (int from = 0; from < pending.size(); from += SCRIPT_CHUNK) {
+      List<LastPosition> chunk = pending.subList(from, Math.min(from + SCRIPT_CHUNK, pending.size()));
+      List<Long> replaced = write(chunk);
+      for (int i = 0; i < chunk.size(); i++) {
+        long deviceId = chunk.get(i).deviceId();
+        if (replaced != null && i < replaced.size() && replaced.get(i) == 0L) {
+          // Otro nodo guardó una posición más reciente: se leerá de Redis
+          positions.invalidate(deviceId);
+        } else {
+          changed[count++] = deviceId;
+        }
+      }
+    }
+    if (count > 0) {
+      invalidationBus.publish(TOPIC, count == changed.length ? changed : Arrays.copyOf(changed, count));
+    }
+  }
+
+  // Devuelve 1 o 0 por posición, o null si Redis no respondió
+  private List<Long> write(List<LastPosition> chunk) {
+    String[] args = new String[chunk.size() * 4];
+    int a = 0;
+    for (LastPosition position : chunk) {
+      args[a++] = String.valueOf(position.deviceId());
+      args[a++] = position.encode();
+      args[a++] = String.valueOf(position.epochMillis());
+      args[a++] = String.valueOf(position.locationId());
+    }
+    try {
+      return redisTemplate.execute(UPDATE_IF_NEWER, List.of(HASH), (Object[]) args);
+    } catch (RuntimeException e) {
+      log.warn("No se pudieron guardar {} posiciones en Redis: {}", chunk.size(), e.getMessage());
+      return null;
+    }
+  }
+
+  public LastPosition get(long deviceId) {
+    LastPosition position = positions.getIfPresent(deviceId);
+    if (position != null) {
+      return position;
+    }
+    try {
+      Object value = redisTemplate.opsForHash().get(HASH, String.valueOf(deviceId));
+      if (value != null) {
+        position = LastPosition.decode(deviceId, value.toString());
+        positions.put(deviceId, position);
+      }
+    } catch (RuntimeException e) {
+      log.warn("No se pudo leer la posición del dispositivo {} de Redis: {}", deviceId, e.getMessage());
+    }
+    return position;
+  }
+
+  /**
+   * Posiciones conocidas de los dispositivos indicados; los que no tienen
+   * posición ni en la caché local ni en Redis se omiten.
+   */
+  public List<LastPosition> getAll(long[] deviceIds) {
+    List<LastPosition> result = new ArrayList<>(deviceIds.length);
+    List<Object> missing = new ArrayList<>();
+    for (long deviceId : deviceIds) {
+      LastPosition position = positions.getIfPresent(deviceId);
+      if (position != null) {
+        result.add(position);
+      } else {
+        missing.add(String.valueOf(deviceId));
+      }
+    }
+    if (missing.isEmpty()) {
+      return result;
+    }
+    try {
+      List<Object> values = redisTemplate.opsForHash().multiGet(HASH, missing);
+      for (int i = 0; i < values.size(); i++) {
+        if (values.get(i) != null) {
+          long deviceId = Long.parseLong(missing.get(i).toString());
+          LastPosition position = LastPosition.decode(deviceId, values.get(i).toString());
+          positions.put(deviceId, position);
+          result.add(position);
+        }
+      }
+    } catch (RuntimeException e) {
+      log.warn("No se pudieron leer {} posiciones de Redis: {}", missing.size(), e.getMessage());
+    }
+    return result;
+  }
+
+  public void remove(long deviceId) {
+    positions.invalidate(deviceId);
+    try {
+      redisTemplate.opsForHash().delete(HASH, String.valueOf(deviceId));
+    } catch (RuntimeException e) {
+      log.warn("No se pudo borrar la posición del dispositivo {} de Redis: {}", deviceId, e.getMessage());
+    }
+    invalidationBus.publish(TOPIC, deviceId);
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.entities.Alert;
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.entities.GpsEvent.EventType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Monitor de actividad de los dispositivos.
+ *
+ * <p>
+ * Guarda en memoria la última ubicación y el último evento ON de cada
+ * dispositivo y usa una {@link TimingWheel} para los plazos. Una ubicación
+ * solo actualiza la hora y arma el temporizador si no hay uno pendiente; al
+ * vencer, el temporizador compara con la hora actualizada y se reprograma si
+ * el dispositivo siguió activo. Así un dispositivo activo cuesta un
+ * temporizador por ventana, no uno por ubicación.
+ * </p>
+ *
+ * <p>
+ * Genera DEVICE_OFFLINE si no llegan ubicaciones en {@code offline-after} y
+ * DEVICE_ON_TOO_LONG si pasa {@code max-on} desde un ON sin OFF. Ambas se
+ * resuelven solas cuando el dispositivo vuelve a reportar o se apaga. Solo se
+ * vigilan los dispositivos vistos desde el arranque.
+ * </p>
+ *
+ * <p>
+ * Cada dispositivo lo vigila un solo nodo: el que consume la partición de
+ * gps-locations donde cae su clave. Las ubicaciones y eventos que llegan por
+ * otros tópicos (compacto, reintentos, eventos) solo cuentan en ese nodo.
+ * Cuando el rebalanceo de gps-locations le quita una partición, el nodo
+ * olvida sus dispositivos, para no generar DEVICE_OFFLINE de un dispositivo
+ * que ahora reporta a otro nodo; los rebalanceos de otros tópicos no lo
+ * afectan. El nodo que lo recibe resuelve las alertas que quedaron abiertas
+ * en la base de datos la primera vez que lo ve. Mientras no hay asignación de
+ * gps-locations (al arrancar), se vigila todo lo que llega.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class LivenessMonitor implements ConsumerAwareRebalanceListener, DisposableBean {
+
+  private static final class Liveness {
+    volatile long lastFixAt;
+    volatile long onSince;
+    // Solo se modifican en el hilo de la rueda o con el lock del objeto
+    boolean offlineArmed;
+    boolean onArmed;
+    boolean offlineRaised;
+    boolean onTooLongRaised;
+  }
+
+  private final AlertService alertService;
+  private final TimingWheel wheel;
+  private final long offlineAfterMs;
+  private final long maxOnMs;
+  // Las alertas tocan la base de datos: se crean fuera del hilo de la rueda
+  private final ExecutorService alertExecutor = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "liveness-alerts");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final Map<Long, Liveness> devices = new ConcurrentHashMap<>();
+  // Particiones de gps-locations de cada consumidor de este nodo
+  private final Map<Consumer<?, ?>, Set<Integer>> assignedByConsumer = new ConcurrentHashMap<>();
+  // Particiones revocadas a cada consumidor, pendientes de la nueva asignación
+  private final Map<Consumer<?, ?>, Set<Integer>> revokedByConsumer = new ConcurrentHashMap<>();
+  // Particiones de gps-locations de este nodo y total del tópico; null mientras
+  // no haya asignación
+  private volatile Set<Integer> ownedPartitions;
+  private volatile int partitionCount;
+
+  public LivenessMonitor(AlertService alertService,
+      @Value("${gps.liveness.offline-after:10m}") Duration offlineAfter,
+      @Value("${gps.liveness.max-on:8h}") Duration maxOn,
+      @Value("${gps.liveness.tick:1s}") Duration tick,
+      @Value("${gps.liveness.wheel-size:512}") int wheelSize) {
+    this.alertService = alertService;
+    this.offlineAfterMs = offlineAfter.toMillis();
+    this.maxOnMs = maxOn.toMillis();
+    this.wheel = new TimingWheel("liveness-wheel", tick.toMillis(), wheelSize);
+  }
+
+  /**
+   * Registra una ubicación del dispositivo.
+   */
+  public void recordFix(long deviceId) {
+    if (!owns(deviceId)) {
+      return;
+    }
+    Liveness known = devices.get(deviceId);
+    Liveness liveness = known != null ? known : track(deviceId);
+    liveness.lastFixAt = System.currentTimeMillis();
+    synchronized (liveness) {
+      if (liveness.offlineRaised) {
+        liveness.offlineRaised = false;
+        resolve(deviceId, AlertType.DEVICE_OFFLINE);
+      }
+      if (!liveness.offlineArmed) {
+        liveness.offlineArmed = true;
+        wheel.schedule(offlineAfterMs, () -> checkOffline(deviceId, liveness));
+      }
+    }
+  }
+
+  private Liveness track(long deviceId) {
+    Liveness created = new Liveness();
+    Liveness existing = devices.putIfAbsent(deviceId, created);
+    if (existing != null) {
+      return existing;
+    }
+    // Otro nodo pudo dejarla abierta antes de perder la partición
+    resolveIfOpen(deviceId, AlertType.DEVICE_OFFLINE);
+    return created;
+  }
+
+  /**
+   * Registra un evento ON/OFF del dispositivo.
+   */
+  public void recordEvent(long deviceId, EventType eventType) {
+    if (!owns(deviceId)) {
+      return;
+    }
+    switch (eventType) {
+      case ON -> {
+        Liveness liveness = devices.computeIfAbsent(deviceId, id -> new Liveness());
+        synchronized (liveness) {
+          if (liveness.onSince == 0) {
+            liveness.onSince = System.currentTimeMillis();
+          }
+          if (!liveness.onArmed) {
+            liveness.onArmed = true;
+            wheel.schedule(maxOnMs, () -> checkOnTooLong(deviceId, liveness));
+          }
+        }
+      }
+      case OFF -> {
+        Liveness liveness = devices.get(deviceId);
+        if (liveness != null) {
+          synchronized (liveness) {
+            liveness.onSince = 0;
+            if (liveness.onTooLongRaised) {
+              liveness.onTooLongRaised = false;
+              resolve(deviceId, AlertType.DEVICE_ON_TOO_LONG);
+            }
+          }
+        } else {
+          resolveIfOpen(deviceId, AlertType.DEVICE_ON_TOO_LONG);
+        }
+      }
+      case LOCATION_UPDATE -> recordFix(deviceId);
+    }
+  }
+
+  /**
+   * Deja de vigilar un dispositivo eliminado.
+   */
+  public void remove(long deviceId) {
+    devices.remove(deviceId);
+  }
+
+  @Override
+  public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+    // Con el protocolo eager se revoca todo y se vuelve a asignar casi lo mismo:
+    // solo se olvida lo que no vuelve a este nodo
+    Set<Integer> revoked = locationPartitions(partitions);
+    if (!revoked.isEmpty()) {
+      revokedByConsumer.put(consumer, revoked);
+    }
+  }
+
+  @Override
+  public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+    Set<Integer> assigned = locationPartitions(partitions);
+    Set<Integer> revoked = revokedByConsumer.remove(consumer);
+    if (assigned.isEmpty() && revoked == null) {
+      // Rebalanceo de otro tópico
+      return;
+    }
+    Set<Integer> current = assignedByConsumer.computeIfAbsent(consumer, c -> ConcurrentHashMap.newKeySet());
+    if (revoked != null) {
+      current.removeAll(revoked);
+    }
+    current.addAll(assigned);
+    if (partitionCount == 0) {
+      partitionCount = consumer.partitionsFor(GpsLocationConsumer.TOPIC).size();
+    }
+    release();
+  }
+
+  @Override
+  public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+    Set<Integer> lost = locationPartitions(partitions);
+    revokedByConsumer.remove(consumer);
+    Set<Integer> current = assignedByConsumer.get(consumer);
+    if (current != null && !lost.isEmpty()) {
+      current.removeAll(lost);
+      release();
+    }
+  }
+
+  private static Set<Integer> locationPartitions(Collection<TopicPartition> partitions) {
+    Set<Integer> result = new HashSet<>();
+    for (TopicPartition partition : partitions) {
+      if (GpsLocationConsumer.TOPIC.equals(partition.topic())) {
+        result.add(partition.partition());
+      }
+    }
+    return result;
+  }
+
+  // Recalcula las particiones del nodo y olvida los dispositivos que ya no le
+  // corresponden
+  private synchronized void release() {
+    Set<Integer> owned = new HashSet<>();
+    assignedByConsumer.values().forEach(owned::addAll);
+    ownedPartitions = Set.copyOf(owned);
+    int before = devices.size();
+    devices.keySet().removeIf(deviceId -> !owns(deviceId));
+    log.info("Rebalanceo de {}: particiones {}, se dejan de vigilar {} dispositivos", GpsLocationConsumer.TOPIC,
+        ownedPartitions, before - devices.size());
+  }
+
+  boolean owns(long deviceId) {
+    Set<Integer> owned = ownedPartitions;
+    return owned == null || owned.contains(partitionFor(deviceId, partitionCount));
+  }
+
+  /**
+   * Partición que el particionador por defecto de Kafka asigna a la clave del
+   * dispositivo.
+   */
+  static int partitionFor(long deviceId, int partitionCount) {
+    byte[] key = String.valueOf(deviceId).getBytes(StandardCharsets.UTF_8);
+    return Utils.toPositive(Utils.murmur2(key)) % partitionCount;
+  }
+
+  private void checkOffline(long deviceId, Liveness liveness) {
+    synchronized (liveness) {
+      if (devices.get(deviceId) != liveness) {
+        liveness.offlineArmed = false;
+        return;
+      }
+      long remaining = liveness.lastFixAt + offlineAfterMs - System.currentTimeMillis();
+      if (remaining > 0) {
+        wheel.schedule(remaining, () -> checkOffline(deviceId, liveness));
+        return;
+      }
+      liveness.offlineArmed = false;
+      liveness.offlineRaised = true;
+    }
+    raise(deviceId, AlertType.DEVICE_OFFLINE,
+        "Sin ubicaciones desde hace " + Duration.ofMillis(offlineAfterMs).toMinutes() + " minutos");
+  }
+
+  private void checkOnTooLong(long deviceId, Liveness liveness) {
+    synchronized (liveness) {
+      if (devices.get(deviceId) != liveness || liveness.onSince == 0) {
+        liveness.onArmed = false;
+        return;
+      }
+      long remaining = liveness.onSince + maxOnMs - System.currentTimeMillis();
+      if (remaining > 0) {
+        wheel.schedule(remaining, () -> checkOnTooLong(deviceId, liveness));
+        return;
+      }
+      liveness.onArmed = false;
+      if (liveness.onTooLongRaised) {
+        return;
+      }
+      liveness.onTooLongRaised = true;
+    }
+    raise(deviceId, AlertType.DEVICE_ON_TOO_LONG,
+        "Encendido desde hace más de " + Duration.ofMillis(maxOnMs).toHours() + " horas");
+  }
+
+  private void raise(long deviceId, AlertType type, String message) {
+    alertExecutor.execute(() -> {
+      try {
+        alertService.createAlert(deviceId, Alert.builder().type(type).message(message).build());
+      } catch (Exception e) {
+        log.error("No se pudo crear la alerta {} para el dispositivo {}: {}", type, deviceId, e.getMessage());
+      }
+    });
+  }
+
+  private void resolveIfOpen(long deviceId, AlertType type) {
+    alertExecutor.execute(() -> {
+      try {
+        if (alertService.hasOpenAlert(deviceId, type)) {
+          int resolved = alertService.resolveOpenAlerts(deviceId, type);
+          log.info("Resueltas {} alertas {} abiertas del dispositivo {}", resolved, type, deviceId);
+        }
+      } catch (Exception e) {
+        log.error("No se pudieron resolver las alertas {} del dispositivo {}: {}", type, deviceId, e.getMessage());
+      }
+    });
+  }
+
+  private void resolve(long deviceId, AlertType type) {
+    alertExecutor.execute(() -> {
+      try {
+        int resolved = alertService.resolveOpenAlerts(deviceId, type);
+        log.info("Resueltas {} alertas {} del dispositivo {}", resolved, type, deviceId);
+      } catch (Exception e) {
+        log.error("No se pudieron resolver las alertas {} del dispositivo {}: {}", type, deviceId, e.getMessage());
+      }
+    });
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    wheel.stop();
+    alertExecutor.shutdown();
+    alertExecutor.awaitTermination(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+import com.arojas.gpstracker.dto.GpsLocationMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Encamina las ubicaciones que no se pudieron guardar sin bloquear la
+ * partición de origen.
+ *
+ * <p>
+ * Los mensajes inválidos (no deserializables, sin dispositivo, coordenadas
+ * fuera de rango o dispositivo desconocido) van directo a
+ * {@value #DEAD_LETTER_TOPIC} con la causa en cabeceras. Los errores
+ * transitorios de base de datos se reenvían a {@value #RETRY_TOPIC} con un
+ * plazo de espera exponencial; al agotar los intentos, o ante cualquier otro
+ * error, la ubicación termina en el DLT. El consumidor de reintentos no duerme
+ * esperando el plazo: devuelve el registro con {@code nack} y el contenedor
+ * pausa la partición hasta que vence. Cada camino tiene un contador por
+ * causa: {@code gps.ingest.dead-letter} y {@code gps.ingest.retry}.
+ * </p>
+ *
+ * <p>
+ * El DLT usa su propio productor de bytes para conservar el contenido
+ * original de los mensajes que no se pudieron leer. Los reintentos se
+ * publican con la plantilla JSON para que el consumidor los lea como
+ * cualquier otro {@link GpsLocationMessage}.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class LocationErrorRouter implements DisposableBean {
+
+  public static final String DEAD_LETTER_TOPIC = "gps-locations.DLT";
+  public static final String RETRY_TOPIC = "gps-locations-retry";
+
+  public static final String CAUSE_HEADER = "gps-dlt-cause";
+  public static final String EXCEPTION_HEADER = "gps-dlt-exception";
+  public static final String ORIGINAL_TOPIC_HEADER = "gps-dlt-original-topic";
+  public static final String ORIGINAL_PARTITION_HEADER = "gps-dlt-original-partition";
+  public static final String ORIGINAL_OFFSET_HEADER = "gps-dlt-original-offset";
+  public static final String ATTEMPT_HEADER = "gps-retry-attempt";
+  public static final String NOT_BEFORE_HEADER = "gps-retry-not-before";
+
+  private static final LogAccessor LOG_ACCESSOR = new LogAccessor(LocationErrorRouter.class);
+
+  public enum Cause {
+    DESERIALIZATION,
+    INVALID_MESSAGE,
+    INVALID_COORDINATES,
+    UNKNOWN_DEVICE,
+    PROCESSING_ERROR,
+    RETRIES_EXHAUSTED
+  }
+
+  private final DefaultKafkaProducerFactory<String, byte[]> deadLetterProducerFactory;
+  private final KafkaTemplate<String, byte[]> deadLetterTemplate;
+  private final KafkaTemplate<String, GpsLocationMessage> retryTemplate;
+  private final ObjectMapper objectMapper;
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+
+  private final Map<Cause, Counter> deadLettered = new EnumMap<>(Cause.class);
+  private final Counter retried;
+  private final Counter recovered;
+
+  public LocationErrorRouter(ProducerFactory<Object, Object> jsonProducerFactory,
+      KafkaTemplate<String, GpsLocationMessage> retryTemplate, ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      @Value("${gps.ingest.retry.max-attempts:4}") int maxAttempts,
+      @Value("${gps.ingest.retry.initial-backoff:2s}") Duration initialBackoff,
+      @Value("${gps.ingest.retry.max-backoff:60s}") Duration maxBackoff) {
+    this.deadLetterProducerFactory = new DefaultKafkaProducerFactory<>(
+        jsonProducerFactory.getConfigurationProperties(), new StringSerializer(), new ByteArraySerializer());
+    this.deadLetterTemplate = new KafkaTemplate<>(deadLetterProducerFactory);
+    this.retryTemplate = retryTemplate;
+    this.objectMapper = objectMapper;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+
+    for (Cause cause : Cause.values()) {
+      deadLettered.put(cause, Counter.builder("gps.ingest.dead-letter").tag("cause", cause.name())
+          .description("Locations sent to the dead-letter topic")
+          .register(meterRegistry));
+    }
+    this.retried = Counter.builder("gps.ingest.retry").tag("cause", "transient-db")
+        .description("Locations sent to the retry topic")
+        .register(meterRegistry);
+    this.recovered = Counter.builder("gps.ingest.retry.recovered")
+        .description("Locations saved from the retry topic")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Sends a record whose value could not be deserialized, keeping the
+   * original bytes.
+   */
+  public CompletableFuture<?> deadLetterUnreadable(ConsumerRecord<String, ?> record) {
+    DeserializationException exception = SerializationUtils.getExceptionFromHeader(record,
+        SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+    byte[] payload = exception != null ? exception.getData() : null;
+    String detail = exception != null ? describe(exception) : "Null value";
+    log.warn("Unreadable location at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), detail);
+    return send(record.key(), payload, Cause.DESERIALIZATION, detail, record);
+  }
+
+  /**
+   * Sends one invalid location.
+   *
+   * @param message Location as received
+   * @param cause   Why it was rejected
+   * @param detail  Human readable reason
+   * @param source  Record it was read from
+   */
+  public CompletableFuture<?> deadLetter(GpsLocationMessage message, Cause cause, String detail,
+      ConsumerRecord<String, ?> source) {
+    log.warn("Dead-lettering location for device {} ({}): {}", message.getDeviceId(), cause, detail);
+    return send(source.key(), toJson(message), cause, detail, source);
+  }
+
+  /**
+   * Routes fixes whose save failed: transient database errors go to the retry
+   * topic while attempts remain, everything else to the dead-letter topic.
+   * Returns when every record has been acknowledged by Kafka.
+   *
+   * @param fixes   Fixes that were not saved
+   * @param attempt Attempts already made through the retry topic
+   * @param error   Error raised by the save
+   */
+  public void retryOrDeadLetter(GpsFixBatch fixes, int attempt, RuntimeException error) {
+    boolean retry = isTransient(error) && attempt < maxAttempts;
+    Cause cause = isTransient(error) ? Cause.RETRIES_EXHAUSTED : Cause.PROCESSING_ERROR;
+    String detail = describe(error);
+    if (retry) {
+      log.warn("Retrying {} locations (attempt {}): {}", fixes.size(), attempt + 1, detail);
+    } else {
+      log.error("Dead-lettering {} locations ({}): {}", fixes.size(), cause, detail);
+    }
+
+    long notBefore = System.currentTimeMillis() + backoff(attempt + 1).toMillis();
+    List<CompletableFuture<?>> futures = new ArrayList<>(fixes.size());
+    for (int i = 0; i < fixes.size(); i++) {
+      GpsLocationMessage message = toMessage(fixes, i);
+      String key = String.valueOf(fixes.deviceId(i));
+      if (retry) {
+        ProducerRecord<String, GpsLocationMessage> record = new ProducerRecord<>(RETRY_TOPIC, key, message);
+        record.headers().add(ATTEMPT_HEADER, bytes(attempt + 1));
+        record.headers().add(NOT_BEFORE_HEADER, bytes(notBefore));
+        futures.add(retryTemplate.send(record));
+        retried.increment();
+      } else {
+        futures.add(send(key, toJson(message), cause, detail, null));
+      }
+    }
+    await(futures);
+  }
+
+  /**
+   * Counts a location saved from the retry topic.
+   */
+  public void recovered(int count) {
+    recovered.increment(count);
+  }
+
+  /**
+   * Returns how long a retried record still has to wait, never more than
+   * {@code gps.ingest.retry.max-backoff}; 0 when it is due.
+   */
+  public Duration remainingDelay(ConsumerRecord<String, ?> record) {
+    long notBefore = longHeader(record.headers(), NOT_BEFORE_HEADER);
+    long wait = Math.min(notBefore - System.currentTimeMillis(), maxBackoff.toMillis());
+    return wait > 0 ? Duration.ofMillis(wait) : Duration.ZERO;
+  }
+
+  public static int attemptOf(ConsumerRecord<String, ?> record) {
+    return (int) longHeader(record.headers(), ATTEMPT_HEADER);
+  }
+
+  /**
+   * Waits for every send to be acknowledged, so offsets are only committed once
+   * the rejected records are safe in Kafka.
+   */
+  public static void await(List<CompletableFuture<?>> futures) {
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+  }
+
+  static boolean isTransient(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      // Otro consumidor guardó la misma secuencia a la vez; al reintentar se omite
+      if (t instanceof DuplicateKeyException
+          || t instanceof TransientDataAccessException || t instanceof RecoverableDataAccessException
+          || t instanceof DataAccessResourceFailureException || t instanceof CannotCreateTransactionException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Duration backoff(int attempt) {
+    long millis = initialBackoff.toMillis() << Math.min(attempt - 1, 20);
+    return Duration.ofMillis(Math.min(millis, maxBackoff.toMillis()));
+  }
+
+  private CompletableFuture<?> send(String key, byte[] payload, Cause cause, String detail,
+      ConsumerRecord<String, ?> source) {
+    ProducerRecord<String, byte[]> record = new ProducerRecord<>(DEAD_LETTER_TOPIC, key, payload);
+    Headers headers = record.headers();
+    headers.add(CAUSE_HEADER, cause.name().getBytes(StandardCharsets.UTF_8));
+    headers.add(EXCEPTION_HEADER, detail.getBytes(StandardCharsets.UTF_8));
+    if (source != null) {
+      headers.add(ORIGINAL_TOPIC_HEADER, source.topic().getBytes(StandardCharsets.UTF_8));
+      headers.add(ORIGINAL_PARTITION_HEADER, bytes(source.partition()));
+      headers.add(ORIGINAL_OFFSET_HEADER, bytes(source.offset()));
+    }
+    deadLettered.get(cause).increment();
+    return deadLetterTemplate.send(record);
+  }
+
+  private byte[] toJson(GpsLocationMessage message) {
+    try {
+      return objectMapper.writeValueAsBytes(message);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot serialize location message", e);
+    }
+  }
+
+  private static GpsLocationMessage toMessage(GpsFixBatch fixes, int index) {
+    GpsLocationMessage message = new GpsLocationMessage();
+    message.setDeviceId(fixes.deviceId(index));
+    message.setLatitude(fixes.latitude(index));
+    message.setLongitude(fixes.longitude(index));
+    // Sin hora del dispositivo se fija la de ahora, no la del reintento
+    message.setFixTime(fixes.fixTime(index) > 0 ? fixes.fixTime(index) : System.currentTimeMillis());
+    message.setSeq(fixes.seq(index) > 0 ? fixes.seq(index) : null);
+    return message;
+  }
+
+  private static String describe(Throwable error) {
+    return error.getClass().getName() + ": " + error.getMessage();
+  }
+
+  private static byte[] bytes(long value) {
+    return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static long longHeader(Headers headers, String name) {
+    Header header = headers.lastHeader(name);
+    if (header == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    deadLetterProducerFactory.destroy();
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.dto.GpsLocationDTO;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Etapa de difusión STOMP para /topic/gps-updates/{deviceId}.
+ *
+ * <p>
+ * Cada dispositivo se asigna siempre al mismo shard, y cada shard tiene su
+ * propio hilo. Dentro de una ventana solo se guarda la última posición de
+ * cada dispositivo, así que un dispositivo muy activo genera como mucho un
+ * mensaje por ventana y no retrasa a los demás shards. La coalescencia se
+ * hace antes de {@link WebSocketClusterRelay}, así que en modo clúster a
+ * Redis también llega como mucho un mensaje por dispositivo y ventana.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class LocationFanout implements DisposableBean {
+
+  private static final String DESTINATION_PREFIX = "/topic/gps-updates/";
+
+  private final WebSocketClusterRelay relay;
+  private final long coalesceWindowMs;
+  private final Shard[] shards;
+
+  private volatile boolean running = true;
+
+  public LocationFanout(WebSocketClusterRelay relay,
+      @Value("${gps.websocket.fanout.shards:4}") int shardCount,
+      @Value("${gps.websocket.fanout.coalesce-window-ms:250}") long coalesceWindowMs) {
+    this.relay = relay;
+    this.coalesceWindowMs = coalesceWindowMs;
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard("gps-fanout-" + i);
+    }
+  }
+
+  /**
+   * Programa el envío de la posición. Si el dispositivo ya tiene una posición
+   * pendiente en la ventana actual, se reemplaza por la más reciente.
+   */
+  public void publish(GpsLocationDTO dto) {
+    shardFor(dto.getDeviceId()).offer(dto);
+  }
+
+  private Shard shardFor(long deviceId) {
+    long h = deviceId * 0x9E3779B97F4A7C15L;
+    return shards[(int) ((h >>> 32) % shards.length)];
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    running = false;
+    for (Shard shard : shards) {
+      shard.thread.interrupt();
+    }
+    for (Shard shard : shards) {
+      shard.thread.join(1000);
+    }
+  }
+
+  private final class Shard implements Runnable {
+
+    private final Map<Long, GpsLocationDTO> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Long> dirty = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    Shard(String name) {
+      thread = new Thread(this, name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    void offer(GpsLocationDTO dto) {
+      boolean[] added = new boolean[1];
+      pending.compute(dto.getDeviceId(), (deviceId, current) -> {
+        if (current == null) {
+          added[0] = true;
+          return dto;
+        }
+        return newest(current, dto);
+      });
+      // Solo la primera posición de la ventana marca el dispositivo como pendiente
+      if (added[0]) {
+        dirty.offer(dto.getDeviceId());
+      }
+    }
+
+    private static GpsLocationDTO newest(GpsLocationDTO current, GpsLocationDTO candidate) {
+      if (current.getTimestamp() != null && candidate.getTimestamp() != null
+          && candidate.getTimestamp().isBefore(current.getTimestamp())) {
+        return current;
+      }
+      return candidate;
+    }
+
+    @Override
+    public void run() {
+      List<Long> deviceIds = new ArrayList<>();
+      while (running) {
+        try {
+          deviceIds.add(dirty.take());
+          if (coalesceWindowMs > 0) {
+            Thread.sleep(coalesceWindowMs);
+          }
+        } catch (InterruptedException e) {
+          break;
+        }
+        dirty.drainTo(deviceIds);
+        for (Long deviceId : deviceIds) {
+          GpsLocationDTO dto = pending.remove(deviceId);
+          if (dto != null) {
+            send(dto);
+          }
+        }
+        deviceIds.clear();
+      }
+    }
+
+    private void send(GpsLocationDTO dto) {
+      try {
+        relay.send(DESTINATION_PREFIX + dto.getDeviceId(), dto);
+      } catch (Exception e) {
+        log.warn("Failed to send WebSocket update for device {}: {}", dto.getDeviceId(), e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.repositories.GpsLocationPartitionRepository;
+import com.arojas.gpstracker.repositories.GpsLocationPartitionRepository.Partition;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mantenimiento de las particiones diarias de gps_locations.
+ *
+ * <p>
+ * Al arrancar y luego a diario crea las particiones de los próximos días y
+ * elimina las que quedaron fuera del período de retención. Eliminar una
+ * partición es una operación de metadatos, sin DELETE masivo. Con varios
+ * nodos, solo el que obtiene el lock {@code GET_LOCK} hace el mantenimiento.
+ * </p>
+ *
+ * <p>
+ * En una instalación nueva la tabla nace particionada ({@code schema.sql});
+ * una tabla existente se convierte una sola vez con la migración
+ * {@code db/partition-gps-locations.sql}. Mientras no esté particionada, o si
+ * el mantenimiento falla, el health de la aplicación queda DOWN en todos los
+ * nodos: sin particiones la retención no se aplica.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LocationPartitionService implements HealthIndicator {
+
+  private final GpsLocationPartitionRepository partitionRepository;
+
+  @Value("${gps.locations.partitioning.enabled:true}")
+  private boolean enabled;
+
+  @Value("${gps.locations.partitioning.retention-days:365}")
+  private int retentionDays;
+
+  @Value("${gps.locations.partitioning.precreate-days:7}")
+  private int precreateDays;
+
+  // Motivo del último fallo, o null si el mantenimiento está al día
+  private volatile String problem;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void init() {
+    if (enabled) {
+      maintain();
+    }
+  }
+
+  @Scheduled(cron = "${gps.locations.partitioning.cron:0 15 0 * * *}")
+  public void scheduledMaintain() {
+    if (enabled) {
+      maintain();
+    }
+  }
+
+  synchronized void maintain() {
+    try {
+      // Cada nodo verifica la tabla para reportar su estado, tenga o no el lock
+      if (partitionRepository.findPartitions().isEmpty()) {
+        problem = "gps_locations no está particionada: ejecute la migración db/partition-gps-locations.sql";
+        log.error(problem);
+        return;
+      }
+      if (!partitionRepository.runLocked(this::maintainPartitions)) {
+        log.info("Otro nodo está manteniendo las particiones de gps_locations");
+      }
+      problem = null;
+    } catch (Exception e) {
+      problem = "Error en el mantenimiento de particiones: " + e.getMessage();
+      log.error("Error en el mantenimiento de particiones de gps_locations: {}", e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public Health health() {
+    if (!enabled) {
+      return Health.up().withDetail("partitioning", "disabled").build();
+    }
+    String current = problem;
+    return current == null ? Health.up().build() : Health.down().withDetail("error", current).build();
+  }
+
+  private void maintainPartitions() {
+    LocalDate today = LocalDate.now();
+    List<Partition> partitions = partitionRepository.findPartitions();
+    createFuturePartitions(partitions, today);
+    dropExpiredPartitions(partitions, today);
+  }
+
+  private void createFuturePartitions(List<Partition> partitions, LocalDate today) {
+    // Último día cubierto por una partición acotada
+    LocalDate nextDay = today;
+    for (Partition partition : partitions) {
+      if (partition.upperBound() != null && partition.upperBound().isAfter(nextDay)) {
+        nextDay = partition.upperBound();
+      }
+    }
+    List<LocalDate> missing = days(nextDay, today.plusDays(precreateDays));
+    if (!missing.isEmpty()) {
+      partitionRepository.addPartitions(missing);
+      log.info("Creadas {} particiones de gps_locations hasta {}", missing.size(), missing.get(missing.size() - 1));
+    }
+  }
+
+  private void dropExpiredPartitions(List<Partition> partitions, LocalDate today) {
+    LocalDate cutoff = today.minusDays(retentionDays);
+    List<String> expired = new ArrayList<>();
+    for (Partition partition : partitions) {
+      // Solo si todas sus filas son anteriores al corte
+      if (partition.upperBound() != null && !partition.upperBound().isAfter(cutoff)) {
+        expired.add(partition.name());
+      }
+    }
+    // MySQL no permite eliminar todas las particiones
+    if (!expired.isEmpty() && expired.size() < partitions.size()) {
+      partitionRepository.dropPartitions(expired);
+      log.info("Eliminadas {} particiones de gps_locations anteriores a {}", expired.size(), cutoff);
+    }
+  }
+
+  private static List<LocalDate> days(LocalDate from, LocalDate toInclusive) {
+    List<LocalDate> days = new ArrayList<>();
+    for (LocalDate day = from; !day.isAfter(toInclusive); day = day.plusDays(1)) {
+      days.add(day);
+    }
+    return days;
+  }
+}
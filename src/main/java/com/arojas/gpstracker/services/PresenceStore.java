@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.config.IngestRedis;
+import com.arojas.gpstracker.dto.PresenceResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Presencia de los dispositivos compartida entre nodos: hora de la última
+ * señal (ubicación o evento) en el hash Redis {@value #HASH}, con una caché
+ * Caffeine local delante.
+ *
+ * <p>
+ * Para no escribir en Redis con cada ubicación, la hora solo se guarda cuando
+ * avanza más de {@code gps.cache.presence.resolution} sobre la última escrita,
+ * y todas las de un lote van en una sola llamada a un script que además
+ * devuelve la hora anterior, con la que se sabe si el dispositivo vuelve a
+ * estar en línea para todo el clúster. Como {@link LastPositionStore}, usa
+ * {@link IngestRedis} para no retener al consumidor si Redis está lento.
+ * Los demás nodos solo reciben aviso cuando un dispositivo pasa a estar en
+ * línea, que es el único cambio que altera la respuesta; el resto de las
+ * diferencias desaparecen al expirar la caché local.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class PresenceStore {
+
+  public static final String HASH = "gps:presence";
+  static final String TOPIC = "presence";
+
+  // Por cada (campo, hora) guarda la hora solo si es posterior a la registrada;
+  // devuelve la hora que había antes, o -1 si no había ninguna
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static final RedisScript<List<Long>> UPDATE_IF_LATER = new DefaultRedisScript("""
+      local previous = {}
+      for i = 1, #ARGV, 2 do
+        local current = tonumber(redis.call('HGET', KEYS[1], ARGV[i]))
+        if not current or current < tonumber(ARGV[i + 1]) then
+          redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+        end
+        previous[#previous + 1] = current or -1
+      end
+      return previous
+      """, List.class);
+
+  private final StringRedisTemplate redisTemplate;
+  private final CacheInvalidationBus invalidationBus;
+  private final Cache<Long, Long> lastSeen;
+  private final Map<Long, Long> lastWritten = new ConcurrentHashMap<>();
+  private final long resolutionMillis;
+  private final long offlineAfterMillis;
+
+  public PresenceStore(IngestRedis ingestRedis, CacheInvalidationBus invalidationBus,
+      @Value("${gps.cache.near.maximum-size:100000}") long maximumSize,
+      @Value("${gps.cache.near.ttl:30s}") Duration ttl,
+      @Value("${gps.cache.presence.resolution:30s}") Duration resolution,
+      @Value("${gps.liveness.offline-after:10m}") Duration offlineAfter) {
+    this.redisTemplate = ingestRedis.template();
+    this.invalidationBus = invalidationBus;
+    this.lastSeen = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .build();
+    this.resolutionMillis = resolution.toMillis();
+    this.offlineAfterMillis = offlineAfter.toMillis();
+    invalidationBus.subscribe(TOPIC, ids -> {
+      for (long deviceId : ids) {
+        lastSeen.invalidate(deviceId);
+      }
+    });
+  }
+
+  /**
+   * Records that the devices were heard from now.
+   */
+  public void touch(long... deviceIds) {
+    long now = System.currentTimeMillis();
+    long[] pending = new long[deviceIds.length];
+    boolean[] unknown = new boolean[deviceIds.length];
+    int count = 0;
+    for (long deviceId : deviceIds) {
+      Long previous = lastSeen.asMap().put(deviceId, now);
+      // Sin señal reciente en este nodo: puede que otro nodo ya lo viera
+      boolean locallyOffline = previous == null || now - previous > offlineAfterMillis;
+      Long written = lastWritten.get(deviceId);
+      if (!locallyOffline && written != null && now - written < resolutionMillis) {
+        continue;
+      }
+      lastWritten.put(deviceId, now);
+      unknown[count] = locallyOffline;
+      pending[count++] = deviceId;
+    }
+    if (count == 0) {
+      return;
+    }
+
+    String[] args = new String[count * 2];
+    for (int i = 0; i < count; i++) {
+      args[2 * i] = String.valueOf(pending[i]);
+      args[2 * i + 1] = String.valueOf(now);
+    }
+    List<Long> stored = null;
+    try {
+      stored = redisTemplate.execute(UPDATE_IF_LATER, List.of(HASH), (Object[]) args);
+    } catch (RuntimeException e) {
+      log.warn("No se pudo guardar la presencia de {} dispositivos en Redis: {}", count, e.getMessage());
+    }
+
+    long[] cameOnline = new long[count];
+    int online = 0;
+    for (int i = 0; i < count; i++) {
+      if (!unknown[i]) {
+        continue;
+      }
+      long previous = stored != null && i < stored.size() ? stored.get(i) : -1L;
+      if (previous < 0 || now - previous > offlineAfterMillis) {
+        cameOnline[online++] = pending[i];
+      }
+    }
+    if (online > 0) {
+      invalidationBus.publish(TOPIC, Arrays.copyOf(cameOnline, online));
+    }
+  }
+
+  /**
+   * Returns the presence of the device as seen by the whole cluster.
+   */
+  public PresenceResponse get(long deviceId) {
+    Long seen = lastSeen.getIfPresent(deviceId);
+    if (seen == null) {
+      seen = read(deviceId);
+      if (seen != null) {
+        lastSeen.put(deviceId, seen);
+      }
+    }
+    boolean online = seen != null && System.currentTimeMillis() - seen <= offlineAfterMillis;
+    LocalDateTime lastSeenAt = seen != null
+        ? LocalDateTime.ofInstant(Instant.ofEpochMilli(seen), ZoneId.systemDefault())
+        : null;
+    return new PresenceResponse(deviceId, online, lastSeenAt);
+  }
+
+  public void remove(long deviceId) {
+    lastSeen.invalidate(deviceId);
+    lastWritten.remove(deviceId);
+    try {
+      redisTemplate.opsForHash().delete(HASH, String.valueOf(deviceId));
+    } catch (RuntimeException e) {
+      log.warn("No se pudo borrar la presencia del dispositivo {} de Redis: {}", deviceId, e.getMessage());
+    }
+    invalidationBus.publish(TOPIC, deviceId);
+  }
+
+  private Long read(long deviceId) {
+    try {
+      Object value = redisTemplate.opsForHash().get(HASH, String.valueOf(deviceId));
+      return value != null ? Long.valueOf(value.toString()) : null;
+    } catch (RuntimeException e) {
+      log.warn("No se pudo leer la presencia del dispositivo {} de Redis: {}", deviceId, e.getMessage());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Descarta ubicaciones repetidas por número de secuencia antes de llegar a
+ * MySQL.
+ *
+ * <p>
+ * Por dispositivo se guarda la secuencia más alta vista y un mapa de bits con
+ * las {@code window} secuencias anteriores, como la ventana anti-replay de
+ * IPsec. Una secuencia dentro de la ventana ya marcada es un duplicado. Una
+ * secuencia anterior a la ventana reinicia la ventana: suele ser un
+ * dispositivo reiniciado que vuelve a contar desde cero. Las ubicaciones sin
+ * secuencia siempre pasan. La clave única (device_id, seq, timestamp) de
+ * gps_locations atrapa lo que se escape, por ejemplo tras un reinicio del
+ * servicio.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class ReplayFilter {
+
+  private static final class Window {
+    long highest;
+    final long[] bits;
+
+    Window(int words) {
+      bits = new long[words];
+    }
+  }
+
+  private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+  private final int windowBits;
+  private final Counter duplicates;
+
+  public ReplayFilter(MeterRegistry meterRegistry, @Value("${gps.ingest.dedup.window:1024}") int window) {
+    // Múltiplo de 64 para que la ventana ocupe palabras completas
+    this.windowBits = Math.max(64, (window + 63) / 64 * 64);
+    this.duplicates = Counter.builder("gps.ingest.duplicates")
+        .description("Locations dropped as replays of an already accepted sequence number")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Marks the sequence number as seen.
+   *
+   * @param deviceId ID of the device
+   * @param seq      Sequence number, 0 or negative when the device sends none
+   * @return {@code false} if the location is a replay and must be dropped
+   */
+  public boolean accept(long deviceId, long seq) {
+    if (seq <= 0) {
+      return true;
+    }
+    Window window = windows.computeIfAbsent(deviceId, id -> new Window(windowBits / 64));
+    synchronized (window) {
+      if (window.highest == 0 || seq <= window.highest - windowBits) {
+        if (window.highest != 0) {
+          log.debug("Sequence of device {} restarted: {} after {}", deviceId, seq, window.highest);
+        }
+        Arrays.fill(window.bits, 0L);
+        window.highest = seq;
+        set(window, seq);
+        return true;
+      }
+      if (seq > window.highest) {
+        long shift = seq - window.highest;
+        if (shift >= windowBits) {
+          Arrays.fill(window.bits, 0L);
+        } else {
+          for (long s = window.highest + 1; s < seq; s++) {
+            clear(window, s);
+          }
+        }
+        window.highest = seq;
+        set(window, seq);
+        return true;
+      }
+      if (isSet(window, seq)) {
+        duplicates.increment();
+        return false;
+      }
+      set(window, seq);
+      return true;
+    }
+  }
+
+  /**
+   * Forgets the sequence numbers of fixes that were accepted but could not be
+   * stored, so a redelivery is not dropped.
+   */
+  public void release(GpsFixBatch fixes) {
+    for (int i = 0; i < fixes.size(); i++) {
+      long seq = fixes.seq(i);
+      Window window = seq > 0 ? windows.get(fixes.deviceId(i)) : null;
+      if (window != null) {
+        synchronized (window) {
+          if (seq <= window.highest && seq > window.highest - windowBits) {
+            clear(window, seq);
+          }
+        }
+      }
+    }
+  }
+
+  public void remove(long deviceId) {
+    windows.remove(deviceId);
+  }
+
+  private void set(Window window, long seq) {
+    int bit = (int) (seq % windowBits);
+    window.bits[bit >>> 6] |= 1L << bit;
+  }
+
+  private void clear(Window window, long seq) {
+    int bit = (int) (seq % windowBits);
+    window.bits[bit >>> 6] &= ~(1L << bit);
+  }
+
+  private boolean isSet(Window window, long seq) {
+    int bit = (int) (seq % windowBits);
+    return (window.bits[bit >>> 6] & (1L << bit)) != 0;
+  }
+}
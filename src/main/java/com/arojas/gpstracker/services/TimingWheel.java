@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Temporizador de rueda (hashed timing wheel).
+ *
+ * <p>
+ * Programar una tarea solo la encola; el hilo de la rueda la coloca en el
+ * casillero de su tick y, en cada tick, recorre únicamente el casillero
+ * actual. El costo de una tarea pendiente es un nodo en memoria: no hay
+ * ordenamiento ni reloj por tarea. La precisión es de un tick.
+ * </p>
+ *
+ * <p>
+ * Las tareas se ejecutan en el hilo de la rueda y deben ser breves.
+ * </p>
+ *
+ * @author neta1
+ */
+@Slf4j
+public final class TimingWheel {
+
+  private static final class Timeout {
+    final long deadline;
+    final Runnable task;
+    long rounds;
+    Timeout next;
+
+    Timeout(long deadline, Runnable task) {
+      this.deadline = deadline;
+      this.task = task;
+    }
+  }
+
+  private final long tickMs;
+  private final Timeout[] buckets;
+  private final int mask;
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final Thread worker;
+  private final long startTime;
+
+  private volatile boolean running = true;
+  private long tick;
+
+  /**
+   * @param name      Nombre del hilo
+   * @param tickMs    Duración de un tick
+   * @param wheelSize Número de casilleros (se redondea a potencia de dos)
+   */
+  public TimingWheel(String name, long tickMs, int wheelSize) {
+    this.tickMs = tickMs;
+    int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+    this.buckets = new Timeout[size];
+    this.mask = size - 1;
+    this.startTime = System.currentTimeMillis();
+    this.worker = new Thread(this::run, name);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Ejecuta la tarea en el hilo de la rueda cuando pase el retardo.
+   */
+  public void schedule(long delayMs, Runnable task) {
+    pending.add(new Timeout(System.currentTimeMillis() + Math.max(0, delayMs), task));
+  }
+
+  public void stop() throws InterruptedException {
+    running = false;
+    worker.interrupt();
+    worker.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  private void run() {
+    while (running) {
+      long sleepMs = startTime + (tick + 1) * tickMs - System.currentTimeMillis();
+      if (sleepMs > 0) {
+        try {
+          Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+      transferPending();
+      expire(tick & mask);
+      tick++;
+    }
+  }
+
+  private void transferPending() {
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      long calculated = (timeout.deadline - startTime) / tickMs;
+      timeout.rounds = (calculated - tick) / buckets.length;
+      int index = (int) (Math.max(calculated, tick) & mask);
+      timeout.next = buckets[index];
+      buckets[index] = timeout;
+    }
+  }
+
+  private void expire(long index) {
+    int bucket = (int) index;
+    Timeout previous = null;
+    Timeout timeout = buckets[bucket];
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      if (timeout.rounds <= 0) {
+        // Desenlazar y ejecutar
+        if (previous == null) {
+          buckets[bucket] = next;
+        } else {
+          previous.next = next;
+        }
+        timeout.next = null;
+        try {
+          timeout.task.run();
+        } catch (Exception e) {
+          log.error("Timer task failed: {}", e.getMessage(), e);
+        }
+      } else {
+        timeout.rounds--;
+        previous = timeout;
+      }
+      timeout = next;
+    }
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Simplificación de trayectos sobre arreglos primitivos.
+ *
+ * <p>
+ * Las coordenadas se proyectan a metros con una proyección equirectangular
+ * centrada en el primer punto, suficiente para las distancias de un trayecto.
+ * {@link Track} acumula las filas mientras se leen del cursor y descarta de
+ * inmediato los puntos a menos de la tolerancia del último conservado; luego
+ * Douglas–Peucker aplica la tolerancia y Visvalingam–Whyatt el máximo de
+ * puntos.
+ * </p>
+ *
+ * @author neta1
+ */
+public final class TrackSimplifier {
+
+  private static final double METERS_PER_DEGREE = 111_320.0;
+
+  private TrackSimplifier() {
+  }
+
+  /**
+   * Puntos de un trayecto en orden cronológico, en arreglos que crecen según
+   * se agregan filas.
+   */
+  public static final class Track {
+
+    private final double radialTolerance;
+    private long[] ids = new long[1024];
+    private double[] latitudes = new double[1024];
+    private double[] longitudes = new double[1024];
+    private LocalDateTime[] timestamps = new LocalDateTime[1024];
+    private double[] x = new double[1024];
+    private double[] y = new double[1024];
+    private int size;
+    private int read;
+    private double originLatitude;
+    private double originLongitude;
+    private double cosOrigin;
+
+    // Último punto leído cuando no se conservó: se agrega al cerrar el trayecto
+    private long pendingId;
+    private double pendingLatitude;
+    private double pendingLongitude;
+    private LocalDateTime pendingTimestamp;
+    private boolean hasPending;
+
+    /**
+     * @param radialTolerance Distancia mínima en metros al último punto
+     *                        conservado; 0 conserva todas las filas
+     */
+    public Track(double radialTolerance) {
+      this.radialTolerance = radialTolerance;
+    }
+
+    public void add(long id, double latitude, double longitude, LocalDateTime timestamp) {
+      if (read++ == 0) {
+        originLatitude = latitude;
+        originLongitude = longitude;
+        cosOrigin = Math.cos(Math.toRadians(latitude));
+      }
+      double px = (longitude - originLongitude) * METERS_PER_DEGREE * cosOrigin;
+      double py = (latitude - originLatitude) * METERS_PER_DEGREE;
+      if (size > 0 && radialTolerance > 0) {
+        double dx = px - x[size - 1];
+        double dy = py - y[size - 1];
+        if (dx * dx + dy * dy < radialTolerance * radialTolerance) {
+          pendingId = id;
+          pendingLatitude = latitude;
+          pendingLongitude = longitude;
+          pendingTimestamp = timestamp;
+          hasPending = true;
+          return;
+        }
+      }
+      append(id, latitude, longitude, timestamp, px, py);
+    }
+
+    /**
+     * Cierra el trayecto: el último punto leído siempre se conserva.
+     */
+    public void finish() {
+      if (hasPending) {
+        hasPending = false;
+        append(pendingId, pendingLatitude, pendingLongitude, pendingTimestamp,
+            (pendingLongitude - originLongitude) * METERS_PER_DEGREE * cosOrigin,
+            (pendingLatitude - originLatitude) * METERS_PER_DEGREE);
+      }
+    }
+
+    private void append(long id, double latitude, double longitude, LocalDateTime timestamp, double px,
+        double py) {
+      if (size == ids.length) {
+        int capacity = size * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+      }
+      ids[size] = id;
+      latitudes[size] = latitude;
+      longitudes[size] = longitude;
+      timestamps[size] = timestamp;
+      x[size] = px;
+      y[size] = py;
+      size++;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /** Filas leídas del cursor, incluidas las descartadas. */
+    public int read() {
+      return read;
+    }
+
+    public long id(int i) {
+      return ids[i];
+    }
+
+    public double latitude(int i) {
+      return latitudes[i];
+    }
+
+    public double longitude(int i) {
+      return longitudes[i];
+    }
+
+    public LocalDateTime timestamp(int i) {
+      return timestamps[i];
+    }
+  }
+
+  /**
+   * Simplifica el trayecto.
+   *
+   * @param track           Trayecto cerrado con {@link Track#finish()}
+   * @param toleranceMeters Desviación máxima en metros, o 0 para no aplicarla
+   * @param maxPoints       Máximo de puntos, o 0 para no aplicarlo
+   * @return Índices de los puntos conservados, en orden
+   */
+  public static int[] simplify(Track track, double toleranceMeters, int maxPoints) {
+    int[] kept = toleranceMeters > 0
+        ? douglasPeucker(track.x, track.y, track.size, toleranceMeters)
+        : identity(track.size);
+    if (maxPoints > 0 && kept.length > maxPoints) {
+      kept = visvalingam(track.x, track.y, kept, maxPoints);
+    }
+    return kept;
+  }
+
+  private static int[] identity(int n) {
+    int[] indices = new int[n];
+    for (int i = 0; i < n; i++) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  /**
+   * Douglas–Peucker iterativo con pila explícita.
+   */
+  static int[] douglasPeucker(double[] x, double[] y, int n, double tolerance) {
+    if (n <= 2) {
+      return identity(n);
+    }
+    boolean[] keep = new boolean[n];
+    keep[0] = true;
+    keep[n - 1] = true;
+    double toleranceSquared = tolerance * tolerance;
+
+    int[] stack = new int[64];
+    int top = 0;
+    stack[top++] = 0;
+    stack[top++] = n - 1;
+    while (top > 0) {
+      int last = stack[--top];
+      int first = stack[--top];
+      double maxDistance = 0;
+      int index = -1;
+      for (int i = first + 1; i < last; i++) {
+        double distance = segmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+        if (distance > maxDistance) {
+          maxDistance = distance;
+          index = i;
+        }
+      }
+      if (index >= 0 && maxDistance > toleranceSquared) {
+        keep[index] = true;
+        if (top + 4 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top++] = first;
+        stack[top++] = index;
+        stack[top++] = index;
+        stack[top++] = last;
+      }
+    }
+
+    int count = 0;
+    for (boolean k : keep) {
+      if (k) {
+        count++;
+      }
+    }
+    int[] kept = new int[count];
+    for (int i = 0, j = 0; i < n; i++) {
+      if (keep[i]) {
+        kept[j++] = i;
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Visvalingam–Whyatt: elimina repetidamente el punto cuyo triángulo con sus
+   * vecinos tiene menor área, con un montículo indexado sobre arreglos.
+   */
+  static int[] visvalingam(double[] x, double[] y, int[] points, int maxPoints) {
+    int n = points.length;
+    int[] prev = new int[n];
+    int[] next = new int[n];
+    double[] area = new double[n];
+    for (int i = 0; i < n; i++) {
+      prev[i] = i - 1;
+      next[i] = i + 1;
+    }
+
+    // Montículo mínimo de los puntos interiores, con su posición para actualizar
+    int[] heap = new int[n];
+    int[] position = new int[n];
+    Arrays.fill(position, -1);
+    int heapSize = 0;
+    for (int i = 1; i < n - 1; i++) {
+      area[i] = triangleArea(x, y, points[i - 1], points[i], points[i + 1]);
+      heap[heapSize] = i;
+      position[i] = heapSize;
+      heapSize++;
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(heap, position, area, heapSize, i);
+    }
+
+    int remaining = n;
+    double lastRemoved = 0;
+    while (remaining > maxPoints && heapSize > 0) {
+      int point = heap[0];
+      heapSize--;
+      if (heapSize > 0) {
+        heap[0] = heap[heapSize];
+        position[heap[0]] = 0;
+        siftDown(heap, position, area, heapSize, 0);
+      }
+      position[point] = -1;
+      // El área nunca baja de la del último punto eliminado
+      lastRemoved = Math.max(lastRemoved, area[point]);
+
+      int p = prev[point];
+      int q = next[point];
+      next[p] = q;
+      prev[q] = p;
+      remaining--;
+
+      for (int neighbour : new int[] { p, q }) {
+        if (position[neighbour] >= 0) {
+          double updated = Math.max(lastRemoved,
+              triangleArea(x, y, points[prev[neighbour]], points[neighbour], points[next[neighbour]]));
+          double old = area[neighbour];
+          area[neighbour] = updated;
+          if (updated < old) {
+            siftUp(heap, position, area, position[neighbour]);
+          } else {
+            siftDown(heap, position, area, heapSize, position[neighbour]);
+          }
+        }
+      }
+    }
+
+    int[] kept = new int[remaining];
+    for (int i = 0, j = 0; i < n && j < remaining; i = next[i]) {
+      kept[j++] = points[i];
+    }
+    return kept;
+  }
+
+  private static void siftUp(int[] heap, int[] position, double[] area, int index) {
+    int item = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (area[heap[parent]] <= area[item]) {
+        break;
+      }
+      heap[index] = heap[parent];
+      position[heap[index]] = index;
+      index = parent;
+    }
+    heap[index] = item;
+    position[item] = index;
+  }
+
+  private static void siftDown(int[] heap, int[] position, double[] area, int size, int index) {
+    int item = heap[index];
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && area[heap[child + 1]] < area[heap[child]]) {
+        child++;
+      }
+      if (area[heap[child]] >= area[item]) {
+        break;
+      }
+      heap[index] = heap[child];
+      position[heap[index]] = index;
+      index = child;
+    }
+    heap[index] = item;
+    position[item] = index;
+  }
+
+  private static double triangleArea(double[] x, double[] y, int a, int b, int c) {
+    return Math.abs((x[b] - x[a]) * (y[c] - y[a]) - (x[c] - x[a]) * (y[b] - y[a])) / 2.0;
+  }
+
+  private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+    double dx = bx - ax;
+    double dy = by - ay;
+    double lengthSquared = dx * dx + dy * dy;
+    double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+    t = Math.max(0, Math.min(1, t));
+    double ex = ax + t * dx - px;
+    double ey = ay + t * dy - py;
+    return ex * ex + ey * ey;
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.arojas.gpstracker.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.arojas.gpstracker.dto.AlertResponse;
+import com.arojas.gpstracker.entities.Alert;
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.repositories.AlertRepository;
+import com.arojas.gpstracker.repositories.AlertRepository.UnresolvedAlertRow;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Índice en memoria de las alertas sin resolver.
+ *
+ * <p>
+ * Lo mantiene {@link AlertService} al crear y resolver alertas y se
+ * reconstruye desde la base de datos al arrancar. Ofrece una vista global y
+ * una por dueño, ordenadas de la más reciente a la más antigua (por ID, que
+ * crece con la fecha de creación), y conteos por tipo sin recorrer las
+ * alertas.
+ * </p>
+ *
+ * <p>
+ * Cada nodo tiene su propio índice. Los cambios se avisan por
+ * {@link CacheInvalidationBus} tras el commit y los demás nodos releen esas
+ * alertas de la base de datos. Como el pub/sub no garantiza la entrega, el
+ * índice además se concilia con la base de datos cada
+ * {@code gps.alerts.index-reconcile-interval-ms}.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class UnresolvedAlertIndex {
+
+  static final String TOPIC = "alert";
+  private static final int REFRESH_CHUNK = 500;
+
+  private record Entry(long id, long deviceId, long ownerId, AlertType type, String message,
+      LocalDateTime createdAt, int occurrences, LocalDateTime lastOccurredAt) {
+
+    AlertResponse toResponse() {
+      return AlertResponse.builder()
+          .id(id)
+          .type(type)
+          .message(message)
+          .resolved(false)
+          .createdAt(createdAt)
+          .occurrences(occurrences)
+          .lastOccurredAt(lastOccurredAt)
+          .deviceId(deviceId)
+          .build();
+    }
+  }
+
+  // Alertas de un ámbito (global o de un dueño) con su tamaño y conteo por tipo
+  private static final class View {
+    final ConcurrentSkipListMap<Long, Entry> alerts = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    final AtomicInteger size = new AtomicInteger();
+    final AtomicLongArray countsByType = new AtomicLongArray(AlertType.values().length);
+
+    void add(Entry entry) {
+      if (alerts.put(entry.id(), entry) == null) {
+        size.incrementAndGet();
+        countsByType.incrementAndGet(entry.type().ordinal());
+      }
+    }
+
+    void remove(Entry entry) {
+      if (alerts.remove(entry.id()) != null) {
+        size.decrementAndGet();
+        countsByType.decrementAndGet(entry.type().ordinal());
+      }
+    }
+
+    Page<AlertResponse> page(Pageable pageable) {
+      List<AlertResponse> content = new ArrayList<>(pageable.getPageSize());
+      Iterator<Entry> iterator = alerts.values().iterator();
+      for (long skipped = 0; skipped < pageable.getOffset() && iterator.hasNext(); skipped++) {
+        iterator.next();
+      }
+      while (content.size() < pageable.getPageSize() && iterator.hasNext()) {
+        content.add(iterator.next().toResponse());
+      }
+      return new PageImpl<>(content, pageable, size.get());
+    }
+
+    Map<AlertType, Long> counts() {
+      Map<AlertType, Long> counts = new EnumMap<>(AlertType.class);
+      for (AlertType type : AlertType.values()) {
+        counts.put(type, Math.max(0, countsByType.get(type.ordinal())));
+      }
+      return counts;
+    }
+  }
+
+  private final AlertRepository alertRepository;
+  private final CacheInvalidationBus invalidationBus;
+
+  private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+  private final View all = new View();
+  private final Map<Long, View> byOwner = new ConcurrentHashMap<>();
+
+  public UnresolvedAlertIndex(AlertRepository alertRepository, CacheInvalidationBus invalidationBus) {
+    this.alertRepository = alertRepository;
+    this.invalidationBus = invalidationBus;
+    invalidationBus.subscribe(TOPIC, this::refresh);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    for (UnresolvedAlertRow row : alertRepository.findAllUnresolved()) {
+      add(toEntry(row));
+    }
+    log.info("Índice de alertas sin resolver cargado: {} alertas", all.size.get());
+  }
+
+  /**
+   * Corrige las diferencias con la base de datos que dejaron los avisos
+   * perdidos. Las alertas distintas se vuelven a leer una a una, para no
+   * deshacer un cambio hecho mientras corría la consulta completa.
+   */
+  @Scheduled(fixedDelayString = "${gps.alerts.index-reconcile-interval-ms:300000}",
+      initialDelayString = "${gps.alerts.index-reconcile-interval-ms:300000}")
+  public void reconcile() {
+    Set<Long> stored = new HashSet<>();
+    Set<Long> changed = new HashSet<>();
+    for (UnresolvedAlertRow row : alertRepository.findAllUnresolved()) {
+      stored.add(row.getId());
+      if (!byId.containsKey(row.getId())) {
+        changed.add(row.getId());
+      }
+    }
+    for (Long id : byId.keySet()) {
+      if (!stored.contains(id)) {
+        changed.add(id);
+      }
+    }
+    if (!changed.isEmpty()) {
+      log.info("Conciliando {} alertas del índice con la base de datos", changed.size());
+      refresh(changed.stream().mapToLong(Long::longValue).toArray());
+    }
+  }
+
+  /**
+   * Registra una alerta recién creada.
+   */
+  public void add(Alert alert, long ownerId) {
+    add(new Entry(alert.getId(), alert.getDevice().getId(), ownerId, alert.getType(), alert.getMessage(),
+        alert.getCreatedAt(), alert.getOccurrences(), alert.getLastOccurredAt()));
+    publish(alert.getId());
+  }
+
+  private void add(Entry entry) {
+    if (byId.putIfAbsent(entry.id(), entry) == null) {
+      all.add(entry);
+      byOwner.computeIfAbsent(entry.ownerId(), id -> new View()).add(entry);
+    }
+  }
+
+  /**
+   * Actualiza las ocurrencias tras el flush de la deduplicación.
+   */
+  public void updateOccurrences(long alertId, int occurrences, LocalDateTime lastOccurredAt) {
+    replace(alertId, occurrences, lastOccurredAt);
+    publish(alertId);
+  }
+
+  private void replace(long alertId, int occurrences, LocalDateTime lastOccurredAt) {
+    Entry updated = byId.computeIfPresent(alertId, (id, entry) -> new Entry(entry.id(), entry.deviceId(),
+        entry.ownerId(), entry.type(), entry.message(), entry.createdAt(), occurrences, lastOccurredAt));
+    if (updated != null) {
+      // Reemplazo en el mismo lugar: tamaño y conteos no cambian
+      all.alerts.replace(alertId, updated);
+      View owner = byOwner.get(updated.ownerId());
+      if (owner != null) {
+        owner.alerts.replace(alertId, updated);
+      }
+    }
+  }
+
+  public void remove(long alertId) {
+    removeLocal(alertId);
+    publish(alertId);
+  }
+
+  private void removeLocal(long alertId) {
+    Entry entry = byId.remove(alertId);
+    if (entry != null) {
+      all.remove(entry);
+      View owner = byOwner.get(entry.ownerId());
+      if (owner != null) {
+        owner.remove(entry);
+      }
+    }
+  }
+
+  /**
+   * Quita las alertas abiertas de un tipo para el dispositivo.
+   */
+  public void removeOpen(long deviceId, long ownerId, AlertType type) {
+    View owner = byOwner.get(ownerId);
+    if (owner == null) {
+      return;
+    }
+    List<Long> removed = new ArrayList<>();
+    for (Entry entry : owner.alerts.values()) {
+      if (entry.deviceId() == deviceId && entry.type() == type) {
+        removeLocal(entry.id());
+        removed.add(entry.id());
+      }
+    }
+    if (!removed.isEmpty()) {
+      publish(removed.stream().mapToLong(Long::longValue).toArray());
+    }
+  }
+
+  public boolean hasOpen(long deviceId, long ownerId, AlertType type) {
+    View owner = byOwner.get(ownerId);
+    if (owner == null || owner.countsByType.get(type.ordinal()) <= 0) {
+      return false;
+    }
+    for (Entry entry : owner.alerts.values()) {
+      if (entry.deviceId() == deviceId && entry.type() == type) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Vuelve a leer las alertas indicadas: las que siguen sin resolver se
+   * agregan o actualizan y las demás se quitan.
+   */
+  void refresh(long[] alertIds) {
+    for (int i = 0; i < alertIds.length; i += REFRESH_CHUNK) {
+      List<Long> ids = new ArrayList<>(Math.min(REFRESH_CHUNK, alertIds.length - i));
+      for (int j = i; j < Math.min(i + REFRESH_CHUNK, alertIds.length); j++) {
+        ids.add(alertIds[j]);
+      }
+      refresh(ids);
+    }
+  }
+
+  private void refresh(Collection<Long> ids) {
+    Set<Long> missing = new HashSet<>(ids);
+    for (UnresolvedAlertRow row : alertRepository.findUnresolvedByIds(ids)) {
+      missing.remove(row.getId());
+      Entry entry = toEntry(row);
+      if (byId.containsKey(entry.id())) {
+        replace(entry.id(), entry.occurrences(), entry.lastOccurredAt());
+      } else {
+        add(entry);
+      }
+    }
+    missing.forEach(this::removeLocal);
+  }
+
+  // Los demás nodos releen la alerta cuando el cambio ya está confirmado
+  private void publish(long... alertIds) {
+    Runnable action = () -> invalidationBus.publish(TOPIC, alertIds);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  private static Entry toEntry(UnresolvedAlertRow row) {
+    return new Entry(row.getId(), row.getDeviceId(), row.getOwnerId() != null ? row.getOwnerId() : 0L,
+        row.getType(), row.getMessage(), row.getCreatedAt(),
+        row.getOccurrences() != null ? row.getOccurrences() : 1, row.getLastOccurredAt());
+  }
+
+  public Page<AlertResponse> page(Pageable pageable) {
+    return all.page(pageable);
+  }
+
+  public Page<AlertResponse> pageForOwner(long ownerId, Pageable pageable) {
+    View owner = byOwner.get(ownerId);
+    return owner != null ? owner.page(pageable) : Page.empty(pageable);
+  }
+
+  public Map<AlertType, Long> counts() {
+    return all.counts();
+  }
+
+  public Map<AlertType, Long> countsForOwner(long ownerId) {
+    View owner = byOwner.get(ownerId);
+    return owner != null ? owner.counts() : new View().counts();
+  }
+}
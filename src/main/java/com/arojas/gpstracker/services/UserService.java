@@ -33,6 +33,7 @@ import com.arojas.gpstracker.entities.User;
 import com.arojas.gpstracker.exception.BadRequestException;
 import com.arojas.gpstracker.exception.UserNotFoundException;
 import com.arojas.gpstracker.repositories.UserRepository;
+import com.arojas.gpstracker.security.JwtAuthenticationCache;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -48,6 +49,7 @@ public class UserService {
 
   private final UserRepository userRepository;
   private final PasswordEncoder passwordEncoder;
+  private final JwtAuthenticationCache authenticationCache;
 
   public User register(String email, String password, String fullName) {
     log.debug("Intentando registrar usuario: {}", email);
@@ -83,6 +85,7 @@ public class UserService {
 
     user.setPassword(passwordEncoder.encode(newPassword));
     userRepository.save(user);
+    authenticationCache.evictUser(email);
   }
 
   public Optional<User> findByEmail(String email) {
@@ -0,0 +1,309 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 neta1.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.arojas.gpstracker.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Envío de mensajes STOMP a /topic con reparto entre nodos.
+ *
+ * <p>
+ * Con {@code gps.websocket.cluster.enabled=false} es un simple
+ * {@code convertAndSend} al broker en memoria. Activado, cada destino tiene
+ * su canal de Redis ({@code gps:ws:<destino>}) y un nodo solo se suscribe a
+ * los canales de los destinos que tienen al menos una sesión local, así que
+ * Redis no le entrega actualizaciones que nadie en él escucha. El mensaje se
+ * serializa una vez en el nodo que lo origina y los demás reenvían los bytes
+ * JSON tal cual a sus sesiones, sin deserializarlos.
+ * </p>
+ *
+ * <p>
+ * Las suscripciones con comodín de Ant se traducen a patrones de Redis. Un
+ * {@code *} de Redis también cruza '/', así que lo recibido por patrón solo
+ * se entrega si lo acepta alguna suscripción local con las reglas de Ant,
+ * igual que el broker. Cada envío consulta un mapa concurrente de destinos
+ * exactos y el pequeño conjunto de destinos con comodín, sin lock.
+ * </p>
+ *
+ * @author neta1
+ */
+@Service
+@Slf4j
+public class WebSocketClusterRelay implements MessageListener {
+
+  private static final String CHANNEL_PREFIX = "gps:ws:";
+  // Mismas reglas que el broker simple
+  private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final RedisMessageListenerContainer listenerContainer;
+  private final ObjectMapper objectMapper;
+  private final boolean clusterEnabled;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final byte[] nodePrefix = (nodeId + '|').getBytes(StandardCharsets.UTF_8);
+
+  // Suscripciones locales: sesión -> (suscripción -> destino). Se modifican
+  // con el lock del relay, igual que los dos mapas siguientes; estos se leen
+  // sin lock en cada envío
+  private final Map<String, Map<String, String>> sessions = new HashMap<>();
+  // Suscripciones por destino y destinos con comodín
+  private final Map<String, Integer> interest = new ConcurrentHashMap<>();
+  private final Set<String> patterns = ConcurrentHashMap.newKeySet();
+
+  public WebSocketClusterRelay(SimpMessagingTemplate messagingTemplate,
+      RedisTemplate<String, String> redisTemplate, RedisMessageListenerContainer listenerContainer,
+      ObjectMapper objectMapper,
+      @Value("${gps.websocket.cluster.enabled:false}") boolean clusterEnabled) {
+    this.messagingTemplate = messagingTemplate;
+    this.redisTemplate = redisTemplate;
+    this.listenerContainer = listenerContainer;
+    this.objectMapper = objectMapper;
+    this.clusterEnabled = clusterEnabled;
+  }
+
+  /**
+   * Sends the payload to every session subscribed to the destination, on this
+   * node and, in cluster mode, on the others.
+   */
+  public void send(String destination, Object payload) {
+    if (!clusterEnabled) {
+      messagingTemplate.convertAndSend(destination, payload);
+      return;
+    }
+    String json;
+    try {
+      json = objectMapper.writeValueAsString(payload);
+    } catch (JsonProcessingException e) {
+      log.warn("No se pudo serializar el mensaje para {}: {}", destination, e.getMessage());
+      return;
+    }
+    if (hasLocalInterest(destination)) {
+      deliver(destination, json.getBytes(StandardCharsets.UTF_8));
+    }
+    try {
+      redisTemplate.convertAndSend(CHANNEL_PREFIX + destination, nodeId + '|' + json);
+    } catch (RuntimeException e) {
+      log.warn("No se pudo publicar en Redis el mensaje para {}: {}", destination, e.getMessage());
+    }
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    byte[] body = message.getBody();
+    if (startsWith(body, nodePrefix)) {
+      return;
+    }
+    int separator = indexOf(body, (byte) '|');
+    if (separator < 0) {
+      return;
+    }
+    String destination = new String(message.getChannel(), StandardCharsets.UTF_8)
+        .substring(CHANNEL_PREFIX.length());
+    // Por patrón: si el destino también está suscrito sin comodín ya llega
+    // por su canal, y si ninguna suscripción de Ant lo acepta se descarta
+    if (pattern != null && pattern.length > 0
+        && (interest.containsKey(destination) || !matchesPattern(destination))) {
+      return;
+    }
+    deliver(destination, Arrays.copyOfRange(body, separator + 1, body.length));
+  }
+
+  @EventListener
+  public void onSubscribe(SessionSubscribeEvent event) {
+    if (!clusterEnabled) {
+      return;
+    }
+    StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+    String destination = accessor.getDestination();
+    if (accessor.getSessionId() == null || destination == null || !destination.startsWith("/topic/")) {
+      return;
+    }
+    synchronized (this) {
+      sessions.computeIfAbsent(accessor.getSessionId(), id -> new HashMap<>())
+          .put(accessor.getSubscriptionId(), destination);
+      if (interest.merge(destination, 1, Integer::sum) == 1) {
+        if (PATH_MATCHER.isPattern(destination)) {
+          patterns.add(destination);
+        }
+        listenerContainer.addMessageListener(this, topicFor(destination));
+      }
+    }
+  }
+
+  @EventListener
+  public void onUnsubscribe(SessionUnsubscribeEvent event) {
+    if (!clusterEnabled) {
+      return;
+    }
+    StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+    synchronized (this) {
+      Map<String, String> subscriptions = sessions.get(accessor.getSessionId());
+      if (subscriptions == null) {
+        return;
+      }
+      String destination = subscriptions.remove(accessor.getSubscriptionId());
+      if (subscriptions.isEmpty()) {
+        sessions.remove(accessor.getSessionId());
+      }
+      if (destination != null) {
+        release(destination);
+      }
+    }
+  }
+
+  @EventListener
+  public void onDisconnect(SessionDisconnectEvent event) {
+    if (!clusterEnabled) {
+      return;
+    }
+    synchronized (this) {
+      Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+      if (subscriptions != null) {
+        subscriptions.values().forEach(this::release);
+      }
+    }
+  }
+
+  private void release(String destination) {
+    Integer remaining = interest.computeIfPresent(destination, (key, count) -> count == 1 ? null : count - 1);
+    if (remaining == null) {
+      patterns.remove(destination);
+      listenerContainer.removeMessageListener(this, topicFor(destination));
+    }
+  }
+
+  private boolean hasLocalInterest(String destination) {
+    return interest.containsKey(destination) || matchesPattern(destination);
+  }
+
+  private boolean matchesPattern(String destination) {
+    for (String subscribed : patterns) {
+      if (PATH_MATCHER.match(subscribed, destination)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void deliver(String destination, byte[] json) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    accessor.setLeaveMutable(true);
+    try {
+      messagingTemplate.send(destination, MessageBuilder.createMessage(json, accessor.getMessageHeaders()));
+    } catch (RuntimeException e) {
+      log.warn("Failed to deliver WebSocket message to {}: {}", destination, e.getMessage());
+    }
+  }
+
+  /**
+   * Ant-style patterns map onto Redis glob patterns that match at least the
+   * same destinations; everything else is an exact channel.
+   */
+  static Topic topicFor(String destination) {
+    if (PATH_MATCHER.isPattern(destination)) {
+      return new PatternTopic(globFor(CHANNEL_PREFIX + destination));
+    }
+    return new ChannelTopic(CHANNEL_PREFIX + destination);
+  }
+
+  /**
+   * Translates an Ant pattern to a Redis glob: '*', '**' and '{variable}'
+   * become '*', '?' stays, and the glob metacharacters '[', ']' and '\' are
+   * escaped. The glob is broader than the pattern (its '*' crosses '/'), so
+   * received messages are matched again with Ant rules.
+   */
+  static String globFor(String pattern) {
+    StringBuilder glob = new StringBuilder(pattern.length() + 4);
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      switch (c) {
+        case '*' -> {
+          if (glob.isEmpty() || glob.charAt(glob.length() - 1) != '*') {
+            glob.append('*');
+          }
+        }
+        case '{' -> {
+          int end = pattern.indexOf('}', i);
+          if (end < 0) {
+            glob.append(c);
+          } else {
+            glob.append('*');
+            i = end;
+          }
+        }
+        case '[', ']', '\\' -> glob.append('\\').append(c);
+        default -> glob.append(c);
+      }
+    }
+    return glob.toString();
+  }
+
+  private static boolean startsWith(byte[] body, byte[] prefix) {
+    return body.length >= prefix.length
+        && Arrays.equals(body, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+  private static int indexOf(byte[] body, byte value) {
+    for (int i = 0; i < body.length; i++) {
+      if (body[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
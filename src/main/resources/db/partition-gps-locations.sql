@@ -0,0 +1,60 @@
+-- Migración única: convierte gps_locations en tabla particionada por día.
+--
+-- MySQL exige que la clave primaria incluya la columna de partición y no admite
+-- claves foráneas en tablas particionadas: se quitan los FK y la PK pasa a
+-- (id, timestamp). ALTER TABLE ... PARTITION BY reconstruye la tabla completa,
+-- así que conviene ejecutarla en una ventana de mantenimiento:
+--
+--   mysql -u <usuario> -p <base> < partition-gps-locations.sql
+--
+-- Todas las filas anteriores a hoy quedan en p_history y el resto en pmax.
+-- LocationPartitionService crea las particiones diarias a partir de pmax en su
+-- siguiente ejecución. Si la tabla ya está particionada, el script no hace nada.
+
+DROP PROCEDURE IF EXISTS gps_partition_locations;
+
+DELIMITER //
+
+CREATE PROCEDURE gps_partition_locations()
+BEGIN
+  DECLARE done INT DEFAULT 0;
+  DECLARE foreign_key VARCHAR(64);
+  DECLARE foreign_keys CURSOR FOR
+    SELECT CONSTRAINT_NAME
+    FROM information_schema.KEY_COLUMN_USAGE
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'gps_locations' AND REFERENCED_TABLE_NAME IS NOT NULL;
+  DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = 1;
+
+  IF NOT EXISTS (
+      SELECT 1 FROM information_schema.PARTITIONS
+      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'gps_locations' AND PARTITION_NAME IS NOT NULL) THEN
+
+    OPEN foreign_keys;
+    drop_foreign_keys: LOOP
+      FETCH foreign_keys INTO foreign_key;
+      IF done THEN
+        LEAVE drop_foreign_keys;
+      END IF;
+      SET @ddl = CONCAT('ALTER TABLE gps_locations DROP FOREIGN KEY `', foreign_key, '`');
+      PREPARE statement FROM @ddl;
+      EXECUTE statement;
+      DEALLOCATE PREPARE statement;
+    END LOOP;
+    CLOSE foreign_keys;
+
+    ALTER TABLE gps_locations MODIFY timestamp DATETIME(6) NOT NULL,
+      DROP PRIMARY KEY, ADD PRIMARY KEY (id, timestamp);
+
+    SET @ddl = CONCAT('ALTER TABLE gps_locations PARTITION BY RANGE (TO_DAYS(timestamp)) (',
+      'PARTITION p_history VALUES LESS THAN (', TO_DAYS(CURDATE()), '), ',
+      'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+    PREPARE statement FROM @ddl;
+    EXECUTE statement;
+    DEALLOCATE PREPARE statement;
+  END IF;
+END //
+
+DELIMITER ;
+
+CALL gps_partition_locations();
+DROP PROCEDURE gps_partition_locations;
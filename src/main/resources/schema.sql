@@ -0,0 +1,19 @@
+-- Se ejecuta antes de que Hibernate actualice el esquema (spring.sql.init), así
+-- que en una instalación nueva gps_locations nace particionada por día.
+-- Hibernate no toca la clave primaria de una tabla existente y la entidad no
+-- declara FK, así que ddl-auto=update la deja como está.
+-- Para una tabla existente sin particiones, ver db/partition-gps-locations.sql.
+CREATE TABLE IF NOT EXISTS gps_locations (
+    id BIGINT AUTO_INCREMENT,
+    device_id BIGINT NOT NULL,
+    latitude DOUBLE NOT NULL,
+    longitude DOUBLE NOT NULL,
+    timestamp DATETIME(6) NOT NULL,
+    seq BIGINT,
+    PRIMARY KEY (id, timestamp),
+    INDEX idx_device_id_timestamp (device_id, timestamp),
+    UNIQUE KEY uk_device_seq_timestamp (device_id, seq, timestamp)
+)
+PARTITION BY RANGE (TO_DAYS(timestamp)) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
@@ -0,0 +1,81 @@
+package com.arojas.gpstracker.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+class GpsFixBatchSerdeTests {
+
+	@Test
+	void versionTwoRoundTrips() {
+		GpsFixBatch batch = new GpsFixBatch(2);
+		batch.add(7L, 1_700_000_000_000L, 41L, 4.6097102, -74.0817500);
+		batch.add(8L, 1_700_000_001_000L, 42L, -33.4488897, -70.6692655);
+
+		byte[] frame = GpsFixBatchSerde.encode(batch);
+		GpsFixBatch decoded = GpsFixBatchSerde.decode(frame, 10);
+
+		assertThat(frame).hasSize(GpsFixBatchSerde.HEADER_BYTES + 2 * GpsFixBatchSerde.FIX_BYTES);
+		assertThat(frame[0]).isEqualTo(GpsFixBatchSerde.VERSION);
+		assertThat(decoded.size()).isEqualTo(2);
+		assertThat(decoded.deviceId(1)).isEqualTo(8L);
+		assertThat(decoded.fixTime(1)).isEqualTo(1_700_000_001_000L);
+		assertThat(decoded.seq(0)).isEqualTo(41L);
+		assertThat(decoded.latitude(0)).isCloseTo(4.6097102, within(1e-7));
+		assertThat(decoded.longitude(1)).isCloseTo(-70.6692655, within(1e-7));
+	}
+
+	@Test
+	void versionOneDecodesWithoutSequence() {
+		ByteBuffer frame = ByteBuffer.allocate(GpsFixBatchSerde.HEADER_BYTES + GpsFixBatchSerde.FIX_BYTES_WITHOUT_SEQ);
+		frame.put(GpsFixBatchSerde.VERSION_WITHOUT_SEQ);
+		frame.putInt(1);
+		frame.putLong(5L);
+		frame.putLong(1_700_000_000_000L);
+		frame.putInt(46_097_102);
+		frame.putInt(-740_817_500);
+
+		GpsFixBatch decoded = GpsFixBatchSerde.decode(frame.array(), 10);
+
+		assertThat(decoded.size()).isEqualTo(1);
+		assertThat(decoded.deviceId(0)).isEqualTo(5L);
+		assertThat(decoded.seq(0)).isZero();
+		assertThat(decoded.latitude(0)).isCloseTo(4.6097102, within(1e-7));
+		assertThat(decoded.longitude(0)).isCloseTo(-74.08175, within(1e-7));
+	}
+
+	@Test
+	void malformedFramesAreRejected() {
+		GpsFixBatch batch = new GpsFixBatch(1);
+		batch.add(1L, 0L, 1L, 0.0, 0.0);
+		byte[] frame = GpsFixBatchSerde.encode(batch);
+
+		byte[] unknownVersion = frame.clone();
+		unknownVersion[0] = 9;
+		assertThatThrownBy(() -> GpsFixBatchSerde.decode(unknownVersion, 10))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("version");
+		assertThatThrownBy(() -> GpsFixBatchSerde.decode(Arrays.copyOf(frame, frame.length - 1), 10))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> GpsFixBatchSerde.decode(Arrays.copyOf(frame, 3), 10))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Truncated");
+		assertThatThrownBy(() -> GpsFixBatchSerde.decode(frame, 0))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("count");
+	}
+
+	@Test
+	void kafkaDeserializerWrapsFormatErrors() {
+		GpsFixBatchSerde serde = new GpsFixBatchSerde();
+
+		assertThat(serde.deserialize("topic", null)).isNull();
+		assertThatThrownBy(() -> serde.deserialize("topic", new byte[] { 9, 0, 0, 0, 0 }))
+				.isInstanceOf(SerializationException.class);
+	}
+}
@@ -0,0 +1,112 @@
+package com.arojas.gpstracker.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.arojas.gpstracker.entities.HttpLog;
+import com.arojas.gpstracker.services.HttpLogWriter;
+
+import jakarta.servlet.FilterChain;
+
+class HttpLoggingFilterTests {
+
+	private final HttpLogWriter httpLogWriter = mock(HttpLogWriter.class);
+	private final HttpLoggingFilter filter = new HttpLoggingFilter();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(filter, "httpLogWriter", httpLogWriter);
+		ReflectionTestUtils.setField(filter, "maxBodyBytes", 8);
+		when(httpLogWriter.isSampled(anyString())).thenReturn(true);
+	}
+
+	@Test
+	void bodyWithinLimitIsStoredWhole() throws Exception {
+		assertThat(logBody("12345678", null)).isEqualTo("12345678");
+	}
+
+	@Test
+	void chunkedBodyOverLimitIsCutWithMarker() throws Exception {
+		// Sin Content-Length, como en una petición chunked
+		assertThat(logBody("123456789abc", null)).isEqualTo("12345678...[truncated]");
+	}
+
+	@Test
+	void binaryBodyReportsOnlyTheCachedSize() throws Exception {
+		assertThat(logBody("1234", "application/octet-stream")).isEqualTo("[binary 4 bytes]");
+		assertThat(logBody("123456789abc", "application/octet-stream")).isEqualTo("[binary more than 8 bytes]");
+	}
+
+	@Test
+	void smallResponseIsLoggedAndWrittenThrough() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		HttpLog log = filter(response,
+				(req, res) -> res.getOutputStream().write("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+
+		assertThat(log.getResponseBody()).isEqualTo("{\"a\":1}");
+		assertThat(response.getContentAsString()).isEqualTo("{\"a\":1}");
+	}
+
+	@Test
+	void largeResponseIsOmittedButSentWhole() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		byte[] body = "0123456789".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+		HttpLog log = filter(response, (req, res) -> {
+			res.getOutputStream().write(body, 0, 500);
+			res.getOutputStream().write(body, 500, 500);
+		});
+
+		assertThat(log.getResponseBody()).isEqualTo("[omitted 1000 bytes]");
+		assertThat(response.getContentAsByteArray()).isEqualTo(body);
+	}
+
+	@Test
+	void responseWrittenWithWriterIsLogged() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		HttpLog log = filter(response, (req, res) -> {
+			res.setCharacterEncoding("UTF-8");
+			res.getWriter().write("hola");
+		});
+
+		assertThat(log.getResponseBody()).isEqualTo("hola");
+		assertThat(response.getContentAsString()).isEqualTo("hola");
+	}
+
+	private HttpLog filter(MockHttpServletResponse response, FilterChain chain) throws Exception {
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/test"), response, chain);
+
+		ArgumentCaptor<HttpLog> log = ArgumentCaptor.forClass(HttpLog.class);
+		verify(httpLogWriter).submit(log.capture());
+		return log.getValue();
+	}
+
+	private String logBody(String body, String contentType) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/test");
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+		request.removeHeader("Content-Length");
+		request.setContentType(contentType);
+		FilterChain chain = (req, res) -> req.getInputStream().readAllBytes();
+
+		filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		ArgumentCaptor<HttpLog> log = ArgumentCaptor.forClass(HttpLog.class);
+		verify(httpLogWriter, atLeastOnce()).submit(log.capture());
+		return log.getValue().getRequestBody();
+	}
+}
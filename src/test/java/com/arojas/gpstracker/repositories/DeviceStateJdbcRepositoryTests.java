@@ -0,0 +1,22 @@
+package com.arojas.gpstracker.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class DeviceStateJdbcRepositoryTests {
+
+	@Test
+	void upsertOnlyReplacesOlderSnapshots() {
+		String update = DeviceStateJdbcRepository.UPSERT
+				.substring(DeviceStateJdbcRepository.UPSERT.indexOf("ON DUPLICATE KEY UPDATE"));
+
+		for (String column : new String[] { "power_state", "last_change", "on_since", "cumulative_on_seconds",
+				"last_event_type", "last_event_at", "last_event_id" }) {
+			assertThat(update).contains(
+					column + " = IF(VALUES(last_event_id) > last_event_id, VALUES(" + column + "), " + column + ")");
+		}
+		// Se asigna al final: las columnas anteriores comparan con el valor guardado
+		assertThat(update).endsWith("VALUES(last_event_id), last_event_id)");
+	}
+}
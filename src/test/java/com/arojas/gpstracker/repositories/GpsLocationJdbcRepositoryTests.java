@@ -0,0 +1,113 @@
+package com.arojas.gpstracker.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.KeyHolder;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+class GpsLocationJdbcRepositoryTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0, 0, 123_000_000);
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final GpsLocationJdbcRepository repository = new GpsLocationJdbcRepository(jdbcTemplate);
+	private final List<Long> insertedDevices = new ArrayList<>();
+
+	@Test
+	void insertBatchSkipsStoredAndRepeatedFixesAndMapsIdsToInsertedRows() {
+		GpsFixBatch fixes = new GpsFixBatch(5);
+		fixes.add(1L, 0L, 10L, 1.0, 1.0); // nueva
+		fixes.add(1L, 0L, 11L, 2.0, 2.0); // ya guardada
+		fixes.add(2L, 0L, 0L, 3.0, 3.0); // sin secuencia
+		fixes.add(1L, 0L, 10L, 1.0, 1.0); // repetida en el lote
+		fixes.add(3L, 0L, 5L, 4.0, 4.0); // nueva
+		LocalDateTime[] timestamps = { T0, T0, T0, T0, T0.plusSeconds(1) };
+
+		stubStoredKeys(new Object[][] { { 1L, 11L, T0 } });
+		stubInsert(3);
+
+		long[] ids = repository.insertBatch(fixes, timestamps);
+
+		assertThat(ids).containsExactly(100L, GpsLocationJdbcRepository.DUPLICATE, 101L,
+				GpsLocationJdbcRepository.DUPLICATE, 102L);
+		assertThat(insertedDevices).containsExactly(1L, 2L, 3L);
+	}
+
+	@Test
+	void insertBatchDoesNotInsertWhenEveryFixIsStored() {
+		GpsFixBatch fixes = new GpsFixBatch(1);
+		fixes.add(1L, 0L, 11L, 2.0, 2.0);
+		stubStoredKeys(new Object[][] { { 1L, 11L, T0 } });
+
+		long[] ids = repository.insertBatch(fixes, new LocalDateTime[] { T0 });
+
+		assertThat(ids).containsExactly(GpsLocationJdbcRepository.DUPLICATE);
+		verify(jdbcTemplate, never()).batchUpdate(any(PreparedStatementCreator.class),
+				any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+	}
+
+	@Test
+	void insertBatchMarksInsertedRowsWhenKeysCannotBeMatched() {
+		GpsFixBatch fixes = new GpsFixBatch(2);
+		fixes.add(1L, 0L, 0L, 1.0, 1.0);
+		fixes.add(2L, 0L, 0L, 2.0, 2.0);
+		stubInsert(1);
+
+		long[] ids = repository.insertBatch(fixes, new LocalDateTime[] { T0, T0 });
+
+		assertThat(ids).containsExactly(GpsLocationJdbcRepository.UNKNOWN_ID, GpsLocationJdbcRepository.UNKNOWN_ID);
+	}
+
+	private void stubInsert(int generatedKeys) {
+		doAnswer(invocation -> {
+			BatchPreparedStatementSetter setter = invocation.getArgument(1);
+			KeyHolder keyHolder = invocation.getArgument(2);
+			for (int j = 0; j < setter.getBatchSize(); j++) {
+				PreparedStatement ps = mock(PreparedStatement.class);
+				doAnswer(set -> insertedDevices.add(set.getArgument(1))).when(ps).setLong(eq(1), anyLong());
+				setter.setValues(ps, j);
+			}
+			for (int j = 0; j < generatedKeys; j++) {
+				keyHolder.getKeyList().add(Map.of("GENERATED_KEY", 100L + j));
+			}
+			return new int[setter.getBatchSize()];
+		}).when(jdbcTemplate).batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+				any(KeyHolder.class));
+	}
+
+	private void stubStoredKeys(Object[][] rows) {
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (Object[] row : rows) {
+				ResultSet rs = mock(ResultSet.class);
+				when(rs.getLong(1)).thenReturn((Long) row[0]);
+				when(rs.getLong(2)).thenReturn((Long) row[1]);
+				when(rs.getObject(3, LocalDateTime.class)).thenReturn((LocalDateTime) row[2]);
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+	}
+}
@@ -0,0 +1,72 @@
+package com.arojas.gpstracker.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.arojas.gpstracker.repositories.GpsLocationPartitionRepository.Partition;
+
+class GpsLocationPartitionRepositoryTests {
+
+	// TO_DAYS('2025-01-01') en MySQL
+	private static final long TO_DAYS_2025_01_01 = 739_617L;
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final GpsLocationPartitionRepository repository = new GpsLocationPartitionRepository(jdbcTemplate);
+
+	@Test
+	void partitionNameIsTheCompactDate() {
+		assertThat(GpsLocationPartitionRepository.partitionName(LocalDate.of(2025, 3, 7))).isEqualTo("p20250307");
+	}
+
+	@Test
+	void addedPartitionsEndAtTheFollowingDay() {
+		repository.addPartitions(List.of(LocalDate.of(2024, 12, 31), LocalDate.of(2025, 1, 1)));
+
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate).execute(sql.capture());
+		assertThat(sql.getValue()).isEqualTo("ALTER TABLE gps_locations REORGANIZE PARTITION pmax INTO ("
+				+ "PARTITION p20241231 VALUES LESS THAN (" + TO_DAYS_2025_01_01 + "), "
+				+ "PARTITION p20250101 VALUES LESS THAN (" + (TO_DAYS_2025_01_01 + 1) + "), "
+				+ "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void partitionBoundsAreReadBackAsDates() throws Exception {
+		when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of());
+		repository.findPartitions();
+		ArgumentCaptor<RowMapper<Partition>> mapper = ArgumentCaptor.forClass(RowMapper.class);
+		verify(jdbcTemplate).query(anyString(), mapper.capture());
+
+		ResultSet daily = mock(ResultSet.class);
+		when(daily.getString("PARTITION_NAME")).thenReturn("p20241231");
+		when(daily.getString("PARTITION_DESCRIPTION")).thenReturn(String.valueOf(TO_DAYS_2025_01_01));
+		ResultSet max = mock(ResultSet.class);
+		when(max.getString("PARTITION_NAME")).thenReturn("pmax");
+		when(max.getString("PARTITION_DESCRIPTION")).thenReturn("MAXVALUE");
+
+		assertThat(mapper.getValue().mapRow(daily, 0))
+				.isEqualTo(new Partition("p20241231", LocalDate.of(2025, 1, 1)));
+		assertThat(mapper.getValue().mapRow(max, 1)).isEqualTo(new Partition("pmax", null));
+	}
+
+	@Test
+	void droppedPartitionsGoInOneStatement() {
+		repository.dropPartitions(List.of("p20240101", "p20240102"));
+
+		verify(jdbcTemplate).execute("ALTER TABLE gps_locations DROP PARTITION p20240101, p20240102");
+	}
+}
@@ -0,0 +1,63 @@
+package com.arojas.gpstracker.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Date;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.arojas.gpstracker.services.CacheInvalidationBus;
+
+class JwtAuthenticationCacheTests {
+
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private JwtAuthenticationCache cache;
+	private Consumer<long[]> remoteHandler;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		cache = new JwtAuthenticationCache(invalidationBus, 100);
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.forClass(Consumer.class);
+		verify(invalidationBus).subscribe(eq(JwtAuthenticationCache.TOPIC), handler.capture());
+		remoteHandler = handler.getValue();
+	}
+
+	@Test
+	void evictionIsAnnouncedToOtherNodes() {
+		cache.put("token-a", user("ana@example.com"), inOneHour());
+
+		cache.evictUser("ana@example.com");
+
+		assertThat(cache.get("token-a")).isNull();
+		verify(invalidationBus).publish(JwtAuthenticationCache.TOPIC,
+				JwtAuthenticationCache.userKey("ana@example.com"));
+	}
+
+	@Test
+	void remoteEvictionDropsOnlyThatUser() {
+		cache.put("token-a", user("ana@example.com"), inOneHour());
+		cache.put("token-b", user("bob@example.com"), inOneHour());
+
+		remoteHandler.accept(new long[] { JwtAuthenticationCache.userKey("ana@example.com") });
+
+		assertThat(cache.get("token-a")).isNull();
+		assertThat(cache.get("token-b")).isNotNull();
+	}
+
+	private static UserDetails user(String email) {
+		return User.withUsername(email).password("x").authorities("USER").build();
+	}
+
+	private static Date inOneHour() {
+		return new Date(System.currentTimeMillis() + 3_600_000L);
+	}
+}
@@ -0,0 +1,160 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.arojas.gpstracker.dto.AlertResponse;
+import com.arojas.gpstracker.dto.BulkResolveRequest;
+import com.arojas.gpstracker.dto.BulkResolveResponse;
+import com.arojas.gpstracker.entities.Alert;
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.entities.Device;
+import com.arojas.gpstracker.exception.NotFoundException;
+import com.arojas.gpstracker.mappers.AlertMapper;
+import com.arojas.gpstracker.repositories.AlertRepository;
+import com.arojas.gpstracker.repositories.AlertRepository.AlertRef;
+import com.arojas.gpstracker.repositories.AlertRepository.UnresolvedAlertRow;
+import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.services.DeviceRegistry.DeviceEntry;
+
+class AlertServiceTests {
+
+	private final AlertRepository alertRepository = mock(AlertRepository.class);
+	private final DeviceRepository deviceRepository = mock(DeviceRepository.class);
+	private final DeviceRegistry deviceRegistry = mock(DeviceRegistry.class);
+	private final AlertMapper alertMapper = mock(AlertMapper.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private final AlertService service = new AlertService(alertRepository, deviceRepository,
+			deviceRegistry, mock(UnresolvedAlertIndex.class), alertMapper,
+			mock(WebSocketClusterRelay.class), invalidationBus);
+	private final AtomicLong nextId = new AtomicLong(100);
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(service, "dedupWindow", Duration.ofMinutes(5));
+		ReflectionTestUtils.setField(service, "pushMinInterval", Duration.ofSeconds(1));
+		when(alertMapper.toResponse(any(Alert.class))).thenReturn(AlertResponse.builder().build());
+		when(deviceRegistry.get(3L)).thenReturn(new DeviceEntry(1L, true, "dev-3"));
+		when(deviceRepository.getReferenceById(3L)).thenReturn(Device.builder().id(3L).build());
+		when(alertRepository.save(any(Alert.class))).thenAnswer(invocation -> {
+			Alert alert = invocation.getArgument(0);
+			alert.setId(nextId.getAndIncrement());
+			return alert;
+		});
+	}
+
+	@Test
+	void repeatedAlertIsCountedOnTheOpenOne() {
+		Alert first = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+		Alert repeated = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+
+		assertThat(repeated.getId()).isEqualTo(first.getId());
+		assertThat(repeated.getOccurrences()).isEqualTo(2);
+		verify(alertRepository, times(1)).save(any(Alert.class));
+	}
+
+	@Test
+	void geofenceAlertsOfDifferentFencesAreNotMerged() {
+		Alert a = service.createAlert(3L, alert(AlertType.GEOFENCE_ENTERED, "El dispositivo entró en la geocerca 'A'"));
+		Alert b = service.createAlert(3L, alert(AlertType.GEOFENCE_ENTERED, "El dispositivo entró en la geocerca 'B'"));
+
+		assertThat(b.getId()).isNotEqualTo(a.getId());
+		assertThat(b.getMessage()).contains("'B'");
+		verify(alertRepository, times(2)).save(any(Alert.class));
+	}
+
+	@Test
+	void alertResolvedOnAnotherNodeLeavesTheWindow() {
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.captor();
+		verify(invalidationBus).subscribe(eq(UnresolvedAlertIndex.TOPIC), handler.capture());
+		Alert first = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+		when(alertRepository.findUnresolvedByIds(anyCollection())).thenReturn(List.of());
+
+		// Otro nodo resolvió la alerta y avisa por el bus
+		handler.getValue().accept(new long[] { first.getId() });
+		Alert next = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+
+		assertThat(next.getId()).isNotEqualTo(first.getId());
+		assertThat(next.getOccurrences()).isEqualTo(1);
+	}
+
+	@Test
+	void remoteChangeOfAStillOpenAlertKeepsTheWindow() {
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.captor();
+		verify(invalidationBus).subscribe(eq(UnresolvedAlertIndex.TOPIC), handler.capture());
+		Alert first = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+		UnresolvedAlertRow row = mock(UnresolvedAlertRow.class);
+		when(row.getId()).thenReturn(first.getId());
+		when(alertRepository.findUnresolvedByIds(anyCollection())).thenReturn(List.of(row));
+
+		handler.getValue().accept(new long[] { first.getId() });
+
+		assertThat(service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones")).getId())
+				.isEqualTo(first.getId());
+	}
+
+	@Test
+	void flushRetiresAnAlertThatWasResolvedMeanwhile() {
+		Alert first = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+		service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+		// El UPDATE no encuentra la alerta sin resolver: el aviso del bus se perdió
+		when(alertRepository.addOccurrences(eq(first.getId()), eq(1), any())).thenReturn(0);
+
+		service.flush();
+		Alert next = service.createAlert(3L, alert(AlertType.DEVICE_OFFLINE, "Sin ubicaciones"));
+
+		assertThat(next.getId()).isNotEqualTo(first.getId());
+	}
+
+	@Test
+	void bulkResolveOnlySelectsTheCallersAlerts() {
+		AlertRef ref = mock(AlertRef.class);
+		when(ref.getId()).thenReturn(10L);
+		when(ref.getDeviceId()).thenReturn(3L);
+		when(ref.getType()).thenReturn(AlertType.DEVICE_OFFLINE);
+		when(alertRepository.findUnresolvedRefs(eq(1L), isNull(), eq(AlertType.DEVICE_OFFLINE), isNull(), isNull()))
+				.thenReturn(List.of(ref));
+		when(alertRepository.resolveAlerts(anyCollection(), any())).thenReturn(1);
+		BulkResolveRequest request = new BulkResolveRequest();
+		request.setType(AlertType.DEVICE_OFFLINE);
+
+		BulkResolveResponse response = service.resolveAlerts(request, 1L);
+
+		assertThat(response.getResolved()).isEqualTo(1);
+		verify(alertRepository).resolveAlerts(eq(List.of(10L)), any());
+	}
+
+	@Test
+	void bulkResolveRejectsAnotherUsersDevice() {
+		when(deviceRegistry.isOwnedBy(3L, 1L)).thenReturn(false);
+		BulkResolveRequest request = new BulkResolveRequest();
+		request.setDeviceId(3L);
+
+		assertThatThrownBy(() -> service.resolveAlerts(request, 1L)).isInstanceOf(NotFoundException.class);
+		verify(alertRepository, never()).findUnresolvedRefs(anyLong(), any(), any(), any(), any());
+	}
+
+	private static Alert alert(AlertType type, String message) {
+		return Alert.builder().type(type).message(message).build();
+	}
+}
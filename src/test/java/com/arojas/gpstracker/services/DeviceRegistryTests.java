@@ -0,0 +1,110 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.arojas.gpstracker.entities.Device;
+import com.arojas.gpstracker.entities.User;
+import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.repositories.DeviceRepository.DeviceSummary;
+
+class DeviceRegistryTests {
+
+	private final DeviceRepository deviceRepository = mock(DeviceRepository.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private DeviceRegistry registry;
+	private Consumer<long[]> remoteHandler;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		registry = new DeviceRegistry(deviceRepository, invalidationBus, 100, Duration.ofMinutes(1));
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.forClass(Consumer.class);
+		verify(invalidationBus).subscribe(eq(DeviceRegistry.TOPIC), handler.capture());
+		remoteHandler = handler.getValue();
+	}
+
+	@Test
+	void unknownIdsAreLookedUpOnce() {
+		when(deviceRepository.findSummaryById(99L)).thenReturn(Optional.empty());
+
+		assertThat(registry.exists(99L)).isFalse();
+		assertThat(registry.exists(99L)).isFalse();
+
+		verify(deviceRepository, times(1)).findSummaryById(99L);
+	}
+
+	@Test
+	void remoteChangeDropsTheLocalEntry() {
+		DeviceSummary device = summary(5L, 1L, true);
+		when(deviceRepository.findSummaryById(5L)).thenReturn(Optional.of(device));
+		assertThat(registry.get(5L).activated()).isTrue();
+
+		when(deviceRepository.findSummaryById(5L)).thenReturn(Optional.empty());
+		remoteHandler.accept(new long[] { 5L });
+
+		assertThat(registry.exists(5L)).isFalse();
+	}
+
+	@Test
+	void remoteRegistrationClearsTheNegativeEntry() {
+		when(deviceRepository.findSummaryById(7L)).thenReturn(Optional.empty());
+		assertThat(registry.exists(7L)).isFalse();
+
+		DeviceSummary device = summary(7L, 1L, false);
+		when(deviceRepository.findSummaryById(7L)).thenReturn(Optional.of(device));
+		remoteHandler.accept(new long[] { 7L });
+
+		assertThat(registry.exists(7L)).isTrue();
+	}
+
+	@Test
+	void localChangesAreAnnounced() {
+		User owner = new User();
+		owner.setId(3L);
+		Device device = Device.builder().deviceIdentifier("abc").activated(true).user(owner).build();
+		device.setId(11L);
+
+		registry.put(device);
+		registry.remove(11L);
+
+		verify(invalidationBus, times(2)).publish(DeviceRegistry.TOPIC, 11L);
+		assertThat(registry.deviceIdsOwnedBy(3L)).isEmpty();
+		verify(deviceRepository, times(0)).findSummaryById(any());
+	}
+
+	@Test
+	void ownedDevicesIncludeThoseEvictedOrRegisteredElsewhere() {
+		DeviceSummary local = summary(5L, 1L, true);
+		when(deviceRepository.findSummaryById(5L)).thenReturn(Optional.of(local));
+		registry.get(5L);
+		// 5 lo descarta un aviso remoto; 6 se dio de alta en otro nodo y aquí nunca se leyó
+		remoteHandler.accept(new long[] { 5L });
+		when(deviceRepository.findIdsByOwnerId(1L)).thenReturn(List.of(5L, 6L));
+
+		assertThat(registry.deviceIdsOwnedBy(1L)).containsExactly(5L, 6L);
+	}
+
+	private static DeviceSummary summary(long id, long ownerId, boolean activated) {
+		DeviceSummary summary = mock(DeviceSummary.class);
+		when(summary.getId()).thenReturn(id);
+		when(summary.getOwnerId()).thenReturn(ownerId);
+		when(summary.getActivated()).thenReturn(activated);
+		when(summary.getDeviceIdentifier()).thenReturn("dev-" + id);
+		return summary;
+	}
+}
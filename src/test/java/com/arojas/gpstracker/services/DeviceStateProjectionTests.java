@@ -0,0 +1,167 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.arojas.gpstracker.dto.DeviceStateResponse;
+import com.arojas.gpstracker.dto.DeviceStateResponse.PowerState;
+import com.arojas.gpstracker.entities.GpsEvent.EventType;
+import com.arojas.gpstracker.repositories.DeviceStateJdbcRepository;
+import com.arojas.gpstracker.repositories.DeviceStateJdbcRepository.EventHandler;
+import com.arojas.gpstracker.repositories.DeviceStateJdbcRepository.StateRow;
+
+class DeviceStateProjectionTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 5, 1, 8, 0);
+
+	private final DeviceStateJdbcRepository stateRepository = mock(DeviceStateJdbcRepository.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private final DeviceStateProjection projection = new DeviceStateProjection(stateRepository, invalidationBus);
+
+	@Test
+	void replayStartsAtTheCheckpointInsteadOfTheOldestSnapshot() {
+		// El dispositivo 1 no envía eventos desde hace mucho
+		when(stateRepository.findAll()).thenReturn(List.of(row(1L, "OFF", 5L), row(2L, "OFF", 900L)));
+		when(stateRepository.findCheckpoint()).thenReturn(Optional.of(880L));
+
+		projection.load();
+
+		verify(stateRepository).streamEventsAfter(eq(880L), any());
+	}
+
+	@Test
+	void withoutCheckpointReplayStartsAtTheOldestSnapshot() {
+		when(stateRepository.findAll()).thenReturn(List.of(row(1L, "OFF", 5L), row(2L, "OFF", 900L)));
+		when(stateRepository.findCheckpoint()).thenReturn(Optional.empty());
+
+		projection.load();
+
+		verify(stateRepository).streamEventsAfter(eq(5L), any());
+	}
+
+	@Test
+	void replayedEventsAlreadyInTheSnapshotAreSkipped() {
+		when(stateRepository.findAll()).thenReturn(List.of(row(2L, "OFF", 900L)));
+		when(stateRepository.findCheckpoint()).thenReturn(Optional.of(880L));
+		doAnswer(invocation -> {
+			EventHandler handler = invocation.getArgument(1);
+			handler.handle(890L, 2L, EventType.ON, T0);
+			handler.handle(950L, 3L, EventType.ON, T0.plusMinutes(1));
+			return null;
+		}).when(stateRepository).streamEventsAfter(anyLong(), any());
+
+		projection.load();
+
+		assertThat(projection.get(2L).orElseThrow().getPowerState()).isEqualTo(PowerState.OFF);
+		assertThat(projection.get(3L).orElseThrow().getPowerState()).isEqualTo(PowerState.ON);
+	}
+
+	@Test
+	void checkpointTrailsTheSnapshotsByOneInterval() {
+		record(1L, 10L, EventType.ON, T0);
+		projection.snapshot();
+		verify(stateRepository, never()).advanceCheckpoint(anyLong());
+
+		record(1L, 20L, EventType.OFF, T0.plusMinutes(5));
+		projection.snapshot();
+		verify(stateRepository).advanceCheckpoint(10L);
+
+		projection.snapshot();
+		verify(stateRepository).advanceCheckpoint(20L);
+	}
+
+	@Test
+	void failedSnapshotDoesNotMoveTheCheckpoint() {
+		record(1L, 10L, EventType.ON, T0);
+		projection.snapshot();
+		doThrow(new IllegalStateException("sin conexión")).when(stateRepository).upsertBatch(anyList());
+
+		record(1L, 20L, EventType.OFF, T0.plusMinutes(5));
+		projection.snapshot();
+
+		verify(stateRepository, never()).advanceCheckpoint(anyLong());
+	}
+
+	@Test
+	void appliedEventsAreSentToTheOtherNodes() {
+		projection.record(new long[] { 1L, 2L, 1L }, new long[] { 10L, 0L, 11L },
+				new EventType[] { EventType.ON, EventType.ON, EventType.OFF },
+				new LocalDateTime[] { T0, T0, T0.plusMinutes(1) });
+
+		long millis = T0.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		// El evento sin ID no se guardó y no se difunde
+		verify(invalidationBus).publish(DeviceStateProjection.TOPIC, 1L, 10L, EventType.ON.ordinal(), millis, 1L, 11L,
+				EventType.OFF.ordinal(), millis + 60_000);
+	}
+
+	@Test
+	void eventsAppliedOnAnotherNodeUpdateTheLocalState() {
+		Consumer<long[]> handler = subscribedHandler(DeviceStateProjection.TOPIC);
+		long millis = T0.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+		handler.accept(new long[] { 5L, 40L, EventType.ON.ordinal(), millis });
+		// Un aviso repetido o atrasado no cambia nada
+		handler.accept(new long[] { 5L, 39L, EventType.OFF.ordinal(), millis });
+
+		DeviceStateResponse state = projection.get(5L).orElseThrow();
+		assertThat(state.getPowerState()).isEqualTo(PowerState.ON);
+		assertThat(state.getLastChange()).isEqualTo(T0);
+	}
+
+	@Test
+	void deviceRemovedOnAnotherNodeIsForgotten() {
+		Consumer<long[]> handler = subscribedHandler(DeviceStateProjection.REMOVED_TOPIC);
+		record(5L, 40L, EventType.ON, T0);
+
+		handler.accept(new long[] { 5L });
+		projection.snapshot();
+
+		assertThat(projection.get(5L)).isEmpty();
+		verify(stateRepository, never()).upsertBatch(anyList());
+		verify(stateRepository, never()).deleteByDeviceId(anyLong());
+	}
+
+	@Test
+	void removingADeviceTellsTheOtherNodes() {
+		record(5L, 40L, EventType.ON, T0);
+
+		projection.remove(5L);
+
+		assertThat(projection.get(5L)).isEmpty();
+		verify(stateRepository).deleteByDeviceId(5L);
+		verify(invalidationBus).publish(DeviceStateProjection.REMOVED_TOPIC, 5L);
+	}
+
+	private void record(long deviceId, long eventId, EventType eventType, LocalDateTime timestamp) {
+		projection.record(new long[] { deviceId }, new long[] { eventId }, new EventType[] { eventType },
+				new LocalDateTime[] { timestamp });
+	}
+
+	private Consumer<long[]> subscribedHandler(String topic) {
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.captor();
+		verify(invalidationBus).subscribe(eq(topic), handler.capture());
+		return handler.getValue();
+	}
+
+	private static StateRow row(long deviceId, String powerState, long lastEventId) {
+		return new StateRow(deviceId, powerState, T0, null, 0L, "OFF", T0, lastEventId);
+	}
+}
@@ -0,0 +1,123 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+class DeviceStripedExecutorTests {
+
+	private DeviceStripedExecutor executor;
+
+	@AfterEach
+	void tearDown() {
+		if (executor != null) {
+			executor.destroy();
+		}
+	}
+
+	@Test
+	void smallBatchesRunOnTheCallerThread() {
+		executor = new DeviceStripedExecutor(4, 200, 4, 20);
+		Thread caller = Thread.currentThread();
+		List<Thread> threads = new ArrayList<>();
+
+		int saved = executor.process(batch(10, 3), part -> {
+			threads.add(Thread.currentThread());
+			return part.size();
+		});
+
+		assertThat(saved).isEqualTo(30);
+		assertThat(threads).containsExactly(caller);
+	}
+
+	@Test
+	void eachDeviceStaysInOneStripeInArrivalOrder() {
+		executor = new DeviceStripedExecutor(4, 1, 4, 20);
+		Map<Long, List<Long>> seqByDevice = new ConcurrentHashMap<>();
+		Map<Long, Integer> stripesByDevice = new ConcurrentHashMap<>();
+		AtomicInteger stripeIds = new AtomicInteger();
+
+		int saved = executor.process(batch(50, 20), part -> {
+			int stripe = stripeIds.incrementAndGet();
+			for (int i = 0; i < part.size(); i++) {
+				seqByDevice.computeIfAbsent(part.deviceId(i), id -> new ArrayList<>()).add(part.seq(i));
+				assertThat(stripesByDevice.putIfAbsent(part.deviceId(i), stripe)).isIn(null, stripe);
+			}
+			return part.size();
+		});
+
+		assertThat(saved).isEqualTo(1000);
+		assertThat(stripeIds.get()).isLessThanOrEqualTo(4);
+		seqByDevice.values().forEach(seqs -> assertThat(seqs).isSorted().hasSize(20));
+	}
+
+	@Test
+	void concurrentWritesNeverExceedThePermits() {
+		executor = new DeviceStripedExecutor(16, 1, 2, 20);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+
+		executor.process(batch(200, 1), part -> {
+			peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return part.size();
+		});
+
+		assertThat(peak.get()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	void defaultPermitsAreHalfThePool() {
+		executor = new DeviceStripedExecutor(64, 1, 0, 8);
+		AtomicInteger stripes = new AtomicInteger();
+
+		executor.process(batch(500, 1), part -> {
+			stripes.incrementAndGet();
+			return part.size();
+		});
+
+		assertThat(stripes.get()).isLessThanOrEqualTo(4);
+	}
+
+	@Test
+	void handlerFailureIsRethrownAfterEveryStripeFinished() {
+		executor = new DeviceStripedExecutor(4, 1, 4, 20);
+		AtomicInteger saved = new AtomicInteger();
+
+		assertThatThrownBy(() -> executor.process(batch(100, 1), part -> {
+			for (int i = 0; i < part.size(); i++) {
+				if (part.deviceId(i) == 1L) {
+					throw new IllegalStateException("boom");
+				}
+			}
+			return saved.addAndGet(part.size());
+		})).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+		assertThat(saved.get()).isPositive().isLessThan(100);
+	}
+
+	// devices dispositivos con perDevice ubicaciones cada uno, intercaladas
+	private static GpsFixBatch batch(int devices, int perDevice) {
+		GpsFixBatch batch = new GpsFixBatch(devices * perDevice);
+		for (int seq = 1; seq <= perDevice; seq++) {
+			for (long device = 1; device <= devices; device++) {
+				batch.add(device, 0L, seq, 1.0, 1.0);
+			}
+		}
+		return batch;
+	}
+}
@@ -0,0 +1,103 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.arojas.gpstracker.entities.Device;
+import com.arojas.gpstracker.entities.Geofence;
+import com.arojas.gpstracker.entities.User;
+
+class GeofenceIndexTests {
+
+	private static final long OWNER = 1L;
+	private static final long DEVICE = 10L;
+
+	@Test
+	void circleContainsPointsWithinTheRadius() {
+		GeofenceIndex index = GeofenceIndex.build(List.of(circle(1L, null, 0.0, 0.0, 1000.0)), 0.1, 64);
+
+		assertThat(index.query(DEVICE, OWNER, 0.005, 0.005)).containsExactly(1L);
+		// Dentro del rectángulo envolvente pero fuera del círculo
+		assertThat(index.query(DEVICE, OWNER, 0.0085, 0.0085)).isEmpty();
+		assertThat(index.query(DEVICE, OWNER, 0.02, 0.0)).isEmpty();
+	}
+
+	@Test
+	void polygonUsesTheExactShape() {
+		// Triángulo rectángulo con la hipotenusa de (0,1) a (1,0)
+		GeofenceIndex index = GeofenceIndex.build(List.of(polygon(2L, null, "0,0;0,1;1,0")), 0.25, 64);
+
+		assertThat(index.query(DEVICE, OWNER, 0.2, 0.2)).containsExactly(2L);
+		assertThat(index.query(DEVICE, OWNER, 0.8, 0.8)).isEmpty();
+	}
+
+	@Test
+	void deviceFenceAppliesOnlyToItsDevice() {
+		GeofenceIndex index = GeofenceIndex.build(List.of(
+				circle(3L, DEVICE, 0.0, 0.0, 500.0),
+				circle(4L, null, 0.0, 0.0, 500.0)), 0.1, 64);
+
+		assertThat(index.query(DEVICE, OWNER, 0.0, 0.0)).containsExactly(3L, 4L);
+		assertThat(index.query(11L, OWNER, 0.0, 0.0)).containsExactly(4L);
+		// Otro dueño no ve ninguna de las dos
+		assertThat(index.query(12L, 2L, 0.0, 0.0)).isEmpty();
+	}
+
+	@Test
+	void largeFencesAreStillMatched() {
+		GeofenceIndex index = GeofenceIndex.build(List.of(
+				polygon(5L, null, "-10,-10;-10,10;10,10;10,-10"),
+				circle(6L, null, 5.0, 5.0, 1000.0)), 0.1, 16);
+
+		assertThat(index.query(DEVICE, OWNER, 5.0, 5.0)).containsExactly(5L, 6L);
+		assertThat(index.query(DEVICE, OWNER, -9.0, 9.0)).containsExactly(5L);
+		assertThat(index.query(DEVICE, OWNER, 20.0, 20.0)).isEmpty();
+	}
+
+	@Test
+	void resultsAreSortedById() {
+		GeofenceIndex index = GeofenceIndex.build(List.of(
+				circle(9L, null, 0.0, 0.0, 500.0),
+				circle(7L, null, 0.0, 0.0, 500.0),
+				circle(8L, null, 0.0, 0.0, 500.0),
+				circle(3L, null, 0.0, 0.0, 500.0),
+				circle(5L, null, 0.0, 0.0, 500.0)), 0.1, 64);
+
+		assertThat(index.query(DEVICE, OWNER, 0.0, 0.0)).containsExactly(3L, 5L, 7L, 8L, 9L);
+		assertThat(index.size()).isEqualTo(5);
+		assertThat(index.get(7L).id()).isEqualTo(7L);
+	}
+
+	@Test
+	void emptyIndexFindsNothing() {
+		assertThat(GeofenceIndex.EMPTY.query(DEVICE, OWNER, 0.0, 0.0)).isSameAs(GeofenceIndex.NONE);
+		assertThat(GeofenceIndex.build(List.of(), 0.1, 64).query(DEVICE, OWNER, 0.0, 0.0)).isEmpty();
+	}
+
+	private static Geofence circle(long id, Long deviceId, double lat, double lon, double radius) {
+		return base(id, deviceId)
+				.shape(Geofence.Shape.CIRCLE)
+				.centerLatitude(lat)
+				.centerLongitude(lon)
+				.radiusMeters(radius)
+				.build();
+	}
+
+	private static Geofence polygon(long id, Long deviceId, String vertices) {
+		return base(id, deviceId)
+				.shape(Geofence.Shape.POLYGON)
+				.vertices(vertices)
+				.build();
+	}
+
+	private static Geofence.GeofenceBuilder base(long id, Long deviceId) {
+		return Geofence.builder()
+				.id(id)
+				.name("zona-" + id)
+				.user(User.builder().id(OWNER).build())
+				.device(deviceId != null ? Device.builder().id(deviceId).build() : null);
+	}
+}
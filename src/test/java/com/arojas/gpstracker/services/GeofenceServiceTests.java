@@ -0,0 +1,74 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.arojas.gpstracker.entities.Geofence;
+import com.arojas.gpstracker.entities.User;
+import com.arojas.gpstracker.exception.NotFoundException;
+import com.arojas.gpstracker.mappers.GeofenceMapper;
+import com.arojas.gpstracker.repositories.DeviceRepository;
+import com.arojas.gpstracker.repositories.GeofenceRepository;
+
+class GeofenceServiceTests {
+
+	private final GeofenceRepository geofenceRepository = mock(GeofenceRepository.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private final User owner = User.builder().id(1L).build();
+	private GeofenceService service;
+	private Consumer<long[]> remoteHandler;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		service = new GeofenceService(geofenceRepository, mock(DeviceRepository.class), mock(DeviceRegistry.class),
+				mock(AlertService.class), mock(GeofenceMapper.class), invalidationBus,
+				mock(PlatformTransactionManager.class), 0.05, 1024);
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.forClass(Consumer.class);
+		verify(invalidationBus).subscribe(eq(GeofenceService.TOPIC), handler.capture());
+		remoteHandler = handler.getValue();
+	}
+
+	@Test
+	void remoteChangeRebuildsTheLocalIndex() {
+		when(geofenceRepository.findAll()).thenReturn(List.of());
+		service.load();
+		assertThatThrownBy(() -> service.deleteGeofence(7L, owner)).isInstanceOf(NotFoundException.class);
+
+		// Otro nodo creó la geocerca 7
+		Geofence created = circle(7L);
+		when(geofenceRepository.findAll()).thenReturn(List.of(created));
+		remoteHandler.accept(new long[] { 7L });
+
+		when(geofenceRepository.findAll()).thenReturn(List.of());
+		service.deleteGeofence(7L, owner);
+
+		verify(geofenceRepository).deleteById(7L);
+		verify(invalidationBus).publish(GeofenceService.TOPIC, 7L);
+	}
+
+	@Test
+	void deviceGeofencesAreAnnouncedToOtherNodes() {
+		when(geofenceRepository.deleteByDeviceId(3L)).thenReturn(0);
+
+		service.deleteDeviceGeofences(3L);
+
+		verify(invalidationBus).publish(GeofenceService.DEVICE_TOPIC, 3L);
+	}
+
+	private Geofence circle(long id) {
+		return Geofence.builder().id(id).name("zona").shape(Geofence.Shape.CIRCLE)
+				.centerLatitude(4.6).centerLongitude(-74.1).radiusMeters(500.0).user(owner).build();
+	}
+}
@@ -0,0 +1,125 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.kafka.support.Acknowledgment;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+import com.arojas.gpstracker.dto.GpsLocationMessage;
+
+class GpsLocationConsumerTests {
+
+	private final GpsLocationService gpsLocationService = mock(GpsLocationService.class);
+	private final DeviceStripedExecutor stripedExecutor = mock(DeviceStripedExecutor.class);
+	private final DeviceRegistry deviceRegistry = mock(DeviceRegistry.class);
+	private final LocationErrorRouter errorRouter = mock(LocationErrorRouter.class);
+	private final ReplayFilter replayFilter = mock(ReplayFilter.class);
+	private final GpsLocationConsumer consumer = new GpsLocationConsumer(gpsLocationService, stripedExecutor,
+			deviceRegistry, errorRouter, replayFilter);
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		when(deviceRegistry.exists(anyLong())).thenReturn(true);
+		when(replayFilter.accept(anyLong(), anyLong())).thenReturn(true);
+		when(stripedExecutor.process(any(GpsFixBatch.class), any(ToIntFunction.class)))
+				.thenAnswer(invocation -> ((ToIntFunction<GpsFixBatch>) invocation.getArgument(1))
+						.applyAsInt(invocation.getArgument(0)));
+	}
+
+	@Test
+	void nonTransientFailureDeadLettersOnlyTheOffendingLocation() {
+		when(gpsLocationService.saveLocations(any(GpsFixBatch.class))).thenAnswer(invocation -> {
+			GpsFixBatch fixes = invocation.getArgument(0);
+			for (int i = 0; i < fixes.size(); i++) {
+				if (fixes.deviceId(i) == 3L) {
+					throw new DataIntegrityViolationException("bad row");
+				}
+			}
+			return fixes.size();
+		});
+
+		consumer.processLocations(records(1L, 2L, 3L, 4L, 5L));
+
+		ArgumentCaptor<GpsFixBatch> routed = ArgumentCaptor.forClass(GpsFixBatch.class);
+		verify(errorRouter).retryOrDeadLetter(routed.capture(), eq(0), any(RuntimeException.class));
+		assertThat(routed.getValue().size()).isEqualTo(1);
+		assertThat(routed.getValue().deviceId(0)).isEqualTo(3L);
+	}
+
+	@Test
+	void transientFailureRetriesTheWholeStripe() {
+		when(gpsLocationService.saveLocations(any(GpsFixBatch.class)))
+				.thenThrow(new TransientDataAccessResourceException("db down"));
+
+		consumer.processLocations(records(1L, 2L, 3L));
+
+		ArgumentCaptor<GpsFixBatch> routed = ArgumentCaptor.forClass(GpsFixBatch.class);
+		verify(errorRouter, times(1)).retryOrDeadLetter(routed.capture(), eq(0), any(RuntimeException.class));
+		assertThat(routed.getValue().size()).isEqualTo(3);
+	}
+
+	@Test
+	void retryNotDueIsNackedWithoutSaving() {
+		ConsumerRecord<String, GpsLocationMessage> record = record(1L, 0);
+		Acknowledgment ack = mock(Acknowledgment.class);
+		when(errorRouter.remainingDelay(record)).thenReturn(Duration.ofSeconds(5));
+
+		consumer.processRetry(record, ack);
+
+		verify(ack).nack(Duration.ofSeconds(5));
+		verify(ack, never()).acknowledge();
+		verify(gpsLocationService, never()).saveLocations(any());
+	}
+
+	@Test
+	void retryDueIsSavedAndAcknowledged() {
+		ConsumerRecord<String, GpsLocationMessage> record = record(1L, 0);
+		Acknowledgment ack = mock(Acknowledgment.class);
+		when(errorRouter.remainingDelay(record)).thenReturn(Duration.ZERO);
+		when(gpsLocationService.saveLocations(any(GpsFixBatch.class))).thenReturn(1);
+
+		consumer.processRetry(record, ack);
+
+		verify(errorRouter).recovered(1);
+		verify(ack).acknowledge();
+		verify(errorRouter, never()).retryOrDeadLetter(any(), anyInt(), any());
+	}
+
+	private static List<ConsumerRecord<String, GpsLocationMessage>> records(long... deviceIds) {
+		List<ConsumerRecord<String, GpsLocationMessage>> records = new ArrayList<>();
+		for (int i = 0; i < deviceIds.length; i++) {
+			records.add(record(deviceIds[i], i));
+		}
+		return records;
+	}
+
+	private static ConsumerRecord<String, GpsLocationMessage> record(long deviceId, long offset) {
+		GpsLocationMessage message = new GpsLocationMessage();
+		message.setDeviceId(deviceId);
+		message.setLatitude(1.0);
+		message.setLongitude(1.0);
+		message.setSeq(offset + 1);
+		return new ConsumerRecord<>("gps-locations", 0, offset, String.valueOf(deviceId), message);
+	}
+}
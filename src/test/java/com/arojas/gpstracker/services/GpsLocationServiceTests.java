@@ -0,0 +1,142 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.arojas.gpstracker.dto.CursorSliceResponse;
+import com.arojas.gpstracker.dto.GpsFixBatch;
+import com.arojas.gpstracker.dto.GpsLocationDTO;
+import com.arojas.gpstracker.exception.BadRequestException;
+import com.arojas.gpstracker.repositories.GpsLocationJdbcRepository;
+import com.arojas.gpstracker.repositories.GpsLocationRepository;
+import com.arojas.gpstracker.services.LastPositionStore.LastPosition;
+
+@ExtendWith(MockitoExtension.class)
+class GpsLocationServiceTests {
+
+	@Mock
+	private GpsLocationRepository locationRepository;
+	@Mock
+	private GpsLocationJdbcRepository locationJdbcRepository;
+	@Mock
+	private DeviceRegistry deviceRegistry;
+	@Mock
+	private LastPositionStore lastPositionStore;
+	@Mock
+	private PresenceStore presenceStore;
+	@Mock
+	private LocationFanout locationFanout;
+	@Mock
+	private GeofenceService geofenceService;
+	@Mock
+	private LivenessMonitor livenessMonitor;
+	@Mock
+	private DeviceRollupService deviceRollupService;
+
+	@InjectMocks
+	private GpsLocationService service;
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(service, "maxClockSkew", Duration.ofMinutes(5));
+		when(deviceRegistry.exists(anyLong())).thenReturn(true);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void saveLocationsRunsSideEffectsOnlyForInsertedRows() {
+		GpsFixBatch fixes = new GpsFixBatch(3);
+		fixes.add(1L, 0L, 10L, 1.0, 1.0);
+		fixes.add(1L, 0L, 9L, 2.0, 2.0);
+		fixes.add(2L, 0L, 4L, 3.0, 3.0);
+		when(locationJdbcRepository.insertBatch(any(GpsFixBatch.class), any(LocalDateTime[].class)))
+				.thenReturn(new long[] { 100L, GpsLocationJdbcRepository.DUPLICATE, 101L });
+
+		int saved = service.saveLocations(fixes);
+
+		assertThat(saved).isEqualTo(2);
+		ArgumentCaptor<GpsLocationDTO> published = ArgumentCaptor.forClass(GpsLocationDTO.class);
+		verify(locationFanout, times(2)).publish(published.capture());
+		assertThat(published.getAllValues()).extracting(GpsLocationDTO::getId).containsExactly(100L, 101L);
+		verify(geofenceService, times(2)).evaluate(any(GpsLocationDTO.class));
+		verify(deviceRollupService, times(2)).record(any(GpsLocationDTO.class));
+		verify(livenessMonitor).recordFix(1L);
+		verify(livenessMonitor).recordFix(2L);
+
+		ArgumentCaptor<Collection<LastPosition>> positions = ArgumentCaptor.forClass(Collection.class);
+		verify(lastPositionStore).updateAll(positions.capture());
+		assertThat(positions.getValue()).extracting(LastPosition::latitude).containsExactly(1.0, 3.0);
+		verify(presenceStore).touch(1L, 2L);
+	}
+
+	@Test
+	void saveLocationsSkipsSideEffectsWhenEveryRowIsStored() {
+		GpsFixBatch fixes = new GpsFixBatch(1);
+		fixes.add(1L, 0L, 9L, 2.0, 2.0);
+		when(locationJdbcRepository.insertBatch(any(GpsFixBatch.class), any(LocalDateTime[].class)))
+				.thenReturn(new long[] { GpsLocationJdbcRepository.DUPLICATE });
+
+		assertThat(service.saveLocations(fixes)).isZero();
+		verify(lastPositionStore, never()).updateAll(any());
+		verify(locationFanout, never()).publish(any());
+		verify(geofenceService, never()).evaluate(any());
+		verify(deviceRollupService, never()).record(any());
+		verify(livenessMonitor, never()).recordFix(anyLong());
+		verify(presenceStore, never()).touch(any(long[].class));
+	}
+
+	@Test
+	void historyCursorResumesAfterTheLastRow() {
+		LocalDateTime lastTimestamp = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_456_000);
+		GpsLocationDTO first = GpsLocationDTO.builder().id(11L).timestamp(lastTimestamp.plusSeconds(5)).build();
+		GpsLocationDTO last = GpsLocationDTO.builder().id(10L).timestamp(lastTimestamp).build();
+		Pageable pageable = PageRequest.of(0, 2);
+		when(locationRepository.findHistorySlice(1L, pageable))
+				.thenReturn(new SliceImpl<>(List.of(first, last), pageable, true));
+		when(locationRepository.findHistorySliceBefore(1L, lastTimestamp, 10L, pageable))
+				.thenReturn(new SliceImpl<>(List.of(), pageable, false));
+
+		CursorSliceResponse<GpsLocationDTO> page = service.getLocationHistory(1L, null, 2);
+		CursorSliceResponse<GpsLocationDTO> next = service.getLocationHistory(1L, page.getNextCursor(), 2);
+
+		// El cursor es seguro en URLs y conserva la fracción de segundo
+		assertThat(page.getNextCursor()).matches("[A-Za-z0-9_-]+");
+		verify(locationRepository).findHistorySliceBefore(eq(1L), eq(lastTimestamp), eq(10L), eq(pageable));
+		assertThat(next.getNextCursor()).isNull();
+		assertThat(next.isHasNext()).isFalse();
+	}
+
+	@Test
+	void malformedHistoryCursorIsABadRequest() {
+		assertThatThrownBy(() -> service.getLocationHistory(1L, "not a cursor!", 10))
+				.isInstanceOf(BadRequestException.class);
+		// Base64 válido sin separador
+		assertThatThrownBy(() -> service.getLocationHistory(1L, "MjAyNQ", 10))
+				.isInstanceOf(BadRequestException.class);
+		verify(locationRepository, never()).findHistorySliceBefore(anyLong(), any(), anyLong(), any());
+	}
+}
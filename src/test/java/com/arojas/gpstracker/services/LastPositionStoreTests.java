@@ -0,0 +1,69 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.arojas.gpstracker.config.IngestRedis;
+import com.arojas.gpstracker.services.LastPositionStore.LastPosition;
+
+class LastPositionStoreTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+	private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private LastPositionStore store;
+
+	@BeforeEach
+	void setUp() {
+		IngestRedis ingestRedis = mock(IngestRedis.class);
+		when(ingestRedis.template()).thenReturn(redisTemplate);
+		store = new LastPositionStore(ingestRedis, invalidationBus, 1000, Duration.ofMinutes(1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void updateAllWritesNewestPerDeviceInOneCall() {
+		when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(List.of(1L, 0L));
+
+		store.updateAll(List.of(
+				new LastPosition(1L, 10L, 1.0, 1.0, T0),
+				new LastPosition(2L, 10L, 2.0, 2.0, T0.plusSeconds(1)),
+				new LastPosition(3L, 20L, 3.0, 3.0, T0)));
+
+		ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+		verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), args.capture());
+		assertThat(args.getValue()).hasSize(8);
+		assertThat(args.getValue()[0]).isEqualTo("10");
+		assertThat(args.getValue()[3]).isEqualTo("2");
+		// 20 tenía una posición más reciente en Redis: no se anuncia y se descarta la copia local
+		verify(invalidationBus).publish(LastPositionStore.TOPIC, 10L);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void updateAllKeepsLocalCopyWhenRedisFails() {
+		when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+				.thenThrow(new IllegalStateException("timeout"));
+		LastPosition position = new LastPosition(1L, 10L, 1.0, 1.0, T0);
+
+		store.update(position);
+
+		assertThat(store.get(10L)).isEqualTo(position);
+	}
+}
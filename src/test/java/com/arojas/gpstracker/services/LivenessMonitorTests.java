@@ -0,0 +1,175 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.internals.BuiltInPartitioner;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.entities.GpsEvent.EventType;
+
+class LivenessMonitorTests {
+
+	private static final String TOPIC = GpsLocationConsumer.TOPIC;
+	private static final int PARTITIONS = 6;
+
+	private final AlertService alertService = mock(AlertService.class);
+	private LivenessMonitor monitor;
+
+	@BeforeEach
+	void setUp() {
+		monitor = new LivenessMonitor(alertService, Duration.ofMillis(200), Duration.ofHours(8),
+				Duration.ofMillis(10), 64);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		monitor.destroy();
+	}
+
+	@Test
+	void partitionMatchesTheProducerPartitioner() {
+		for (long deviceId = 1; deviceId <= 1000; deviceId++) {
+			byte[] key = String.valueOf(deviceId).getBytes(StandardCharsets.UTF_8);
+			assertThat(LivenessMonitor.partitionFor(deviceId, PARTITIONS))
+					.isEqualTo(BuiltInPartitioner.partitionForKey(key, PARTITIONS));
+		}
+	}
+
+	@Test
+	void silentDeviceRaisesOffline() {
+		monitor.recordFix(1L);
+
+		verify(alertService, timeout(2000)).createAlert(eq(1L), any());
+	}
+
+	@Test
+	void devicesOfAMovedPartitionAreForgotten() {
+		long moved = 1L;
+		int partition = LivenessMonitor.partitionFor(moved, PARTITIONS);
+		Consumer<?, ?> consumer = consumer();
+		monitor.recordFix(moved);
+
+		List<TopicPartition> all = new ArrayList<>();
+		for (int p = 0; p < PARTITIONS; p++) {
+			all.add(new TopicPartition(TOPIC, p));
+		}
+		List<TopicPartition> kept = new ArrayList<>(all);
+		kept.remove(new TopicPartition(TOPIC, partition));
+		monitor.onPartitionsRevokedBeforeCommit(consumer, all);
+		monitor.onPartitionsAssigned(consumer, kept);
+
+		// Ahora reporta a otro nodo: aquí no debe quedar como desconectado
+		verify(alertService, after(600).never()).createAlert(anyLong(), any());
+	}
+
+	@Test
+	void reassignedPartitionsKeepTheirDevices() {
+		Consumer<?, ?> consumer = consumer();
+		monitor.recordFix(1L);
+
+		List<TopicPartition> all = new ArrayList<>();
+		for (int p = 0; p < PARTITIONS; p++) {
+			all.add(new TopicPartition(TOPIC, p));
+		}
+		monitor.onPartitionsRevokedBeforeCommit(consumer, all);
+		monitor.onPartitionsAssigned(consumer, all);
+
+		verify(alertService, timeout(2000)).createAlert(eq(1L), any());
+	}
+
+	@Test
+	void rebalanceOfAnotherTopicKeepsTheDevices() {
+		Consumer<?, ?> locations = consumer();
+		Consumer<?, ?> events = consumer();
+		monitor.onPartitionsAssigned(locations, partitions(TOPIC));
+		monitor.recordFix(1L);
+
+		// gps-events pasa entera a otro nodo; gps-locations no cambia
+		monitor.onPartitionsRevokedBeforeCommit(events, partitions(GpsEventService.TOPIC));
+		monitor.onPartitionsAssigned(events, List.of());
+
+		verify(alertService, timeout(2000)).createAlert(eq(1L), any());
+	}
+
+	@Test
+	void fixesOfDevicesOwnedByAnotherNodeAreIgnored() {
+		int partition = LivenessMonitor.partitionFor(1L, PARTITIONS);
+		List<TopicPartition> others = partitions(TOPIC);
+		others.remove(new TopicPartition(TOPIC, partition));
+		monitor.onPartitionsAssigned(consumer(), others);
+
+		// Llega por el tópico compacto o de reintentos, pero no es de este nodo
+		monitor.recordFix(1L);
+		monitor.recordEvent(1L, EventType.ON);
+
+		verify(alertService, after(600).never()).createAlert(anyLong(), any());
+		verify(alertService, never()).hasOpenAlert(anyLong(), any());
+	}
+
+	@Test
+	void partitionMovedBetweenConsumersOfTheSameNodeKeepsItsDevices() {
+		int partition = LivenessMonitor.partitionFor(1L, PARTITIONS);
+		TopicPartition moved = new TopicPartition(TOPIC, partition);
+		Consumer<?, ?> first = consumer();
+		Consumer<?, ?> second = consumer();
+		monitor.onPartitionsAssigned(first, List.of(moved));
+		monitor.recordFix(1L);
+
+		monitor.onPartitionsRevokedBeforeCommit(first, List.of(moved));
+		monitor.onPartitionsRevokedBeforeCommit(second, List.of());
+		monitor.onPartitionsAssigned(second, List.of(moved));
+		monitor.onPartitionsAssigned(first, List.of());
+
+		verify(alertService, timeout(2000)).createAlert(eq(1L), any());
+	}
+
+	@Test
+	void firstFixResolvesAnOfflineAlertLeftOpen() {
+		when(alertService.hasOpenAlert(7L, AlertType.DEVICE_OFFLINE)).thenReturn(true);
+
+		monitor.recordFix(7L);
+		monitor.recordFix(7L);
+
+		verify(alertService, timeout(2000)).resolveOpenAlerts(7L, AlertType.DEVICE_OFFLINE);
+		verify(alertService, after(100).times(1)).hasOpenAlert(7L, AlertType.DEVICE_OFFLINE);
+	}
+
+	private static List<TopicPartition> partitions(String topic) {
+		List<TopicPartition> all = new ArrayList<>();
+		for (int p = 0; p < PARTITIONS; p++) {
+			all.add(new TopicPartition(topic, p));
+		}
+		return all;
+	}
+
+	private static Consumer<?, ?> consumer() {
+		List<PartitionInfo> infos = new ArrayList<>();
+		for (int p = 0; p < PARTITIONS; p++) {
+			infos.add(new PartitionInfo(TOPIC, p, null, null, null));
+		}
+		Consumer<?, ?> consumer = mock(Consumer.class);
+		when(consumer.partitionsFor(TOPIC)).thenReturn(infos);
+		return consumer;
+	}
+}
@@ -0,0 +1,97 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.arojas.gpstracker.repositories.GpsLocationPartitionRepository;
+import com.arojas.gpstracker.repositories.GpsLocationPartitionRepository.Partition;
+
+class LocationPartitionServiceTests {
+
+	private final GpsLocationPartitionRepository partitionRepository = mock(GpsLocationPartitionRepository.class);
+	private LocationPartitionService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new LocationPartitionService(partitionRepository);
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "retentionDays", 30);
+		ReflectionTestUtils.setField(service, "precreateDays", 2);
+		// El lock se obtiene: la acción corre en el mismo hilo
+		when(partitionRepository.runLocked(any())).thenAnswer(invocation -> {
+			invocation.<Runnable>getArgument(0).run();
+			return true;
+		});
+	}
+
+	@Test
+	void anotherNodeHoldingTheLockSkipsMaintenance() {
+		when(partitionRepository.findPartitions())
+				.thenReturn(List.of(new Partition(GpsLocationPartitionRepository.MAX_PARTITION, null)));
+		doReturn(false).when(partitionRepository).runLocked(any());
+
+		service.maintain();
+
+		verify(partitionRepository, never()).addPartitions(anyList());
+		assertThat(service.health().getStatus()).isEqualTo(Status.UP);
+	}
+
+	@Test
+	void unpartitionedTableIsReportedDown() {
+		when(partitionRepository.findPartitions()).thenReturn(List.of());
+
+		service.maintain();
+
+		verify(partitionRepository, never()).runLocked(any());
+		verify(partitionRepository, never()).addPartitions(anyList());
+		verify(partitionRepository, never()).dropPartitions(anyList());
+		assertThat(service.health().getStatus()).isEqualTo(Status.DOWN);
+		assertThat(service.health().getDetails().get("error").toString()).contains("partition-gps-locations.sql");
+	}
+
+	@Test
+	void failedMaintenanceIsReportedDownUntilTheNextSuccess() {
+		LocalDate today = LocalDate.now();
+		when(partitionRepository.findPartitions()).thenReturn(List.of(
+				new Partition(GpsLocationPartitionRepository.partitionName(today), today.plusDays(1)),
+				new Partition(GpsLocationPartitionRepository.MAX_PARTITION, null)));
+		doThrow(new IllegalStateException("sin permisos")).when(partitionRepository).addPartitions(anyList());
+
+		service.maintain();
+		assertThat(service.health().getStatus()).isEqualTo(Status.DOWN);
+
+		doNothing().when(partitionRepository).addPartitions(anyList());
+		service.maintain();
+		assertThat(service.health().getStatus()).isEqualTo(Status.UP);
+	}
+
+	@Test
+	void createsMissingDaysAndDropsExpiredOnes() {
+		LocalDate today = LocalDate.now();
+		when(partitionRepository.findPartitions()).thenReturn(List.of(
+				new Partition("p_old", today.minusDays(40)),
+				new Partition(GpsLocationPartitionRepository.partitionName(today), today.plusDays(1)),
+				new Partition(GpsLocationPartitionRepository.MAX_PARTITION, null)));
+
+		service.maintain();
+
+		verify(partitionRepository).addPartitions(List.of(today.plusDays(1), today.plusDays(2)));
+		verify(partitionRepository).dropPartitions(List.of("p_old"));
+	}
+}
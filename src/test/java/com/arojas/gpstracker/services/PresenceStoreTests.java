@@ -0,0 +1,69 @@
+package com.arojas.gpstracker.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.arojas.gpstracker.config.IngestRedis;
+
+class PresenceStoreTests {
+
+	private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private PresenceStore store;
+
+	@BeforeEach
+	void setUp() {
+		IngestRedis ingestRedis = mock(IngestRedis.class);
+		when(ingestRedis.template()).thenReturn(redisTemplate);
+		store = new PresenceStore(ingestRedis, invalidationBus, 1000, Duration.ofMinutes(1), Duration.ofSeconds(30),
+				Duration.ofMinutes(10));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void touchWritesTheWholeBatchInOneCallAndAnnouncesDevicesThatCameOnline() {
+		long recent = System.currentTimeMillis() - 1000;
+		when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+				.thenReturn(List.of(-1L, recent, 5L));
+
+		store.touch(1L, 2L, 3L);
+
+		verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+		// 2 ya estaba en línea según otro nodo
+		verify(invalidationBus).publish(PresenceStore.TOPIC, 1L, 3L);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void touchSkipsRedisWithinTheResolution() {
+		when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(List.of(-1L));
+		store.touch(1L);
+
+		store.touch(1L);
+
+		verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void touchKeepsWorkingWhenRedisFails() {
+		when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+				.thenThrow(new IllegalStateException("timeout"));
+
+		store.touch(7L);
+
+		verify(invalidationBus).publish(PresenceStore.TOPIC, 7L);
+	}
+}
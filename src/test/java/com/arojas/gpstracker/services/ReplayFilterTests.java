@@ -0,0 +1,89 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.arojas.gpstracker.dto.GpsFixBatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReplayFilterTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private ReplayFilter filter;
+
+	@BeforeEach
+	void setUp() {
+		filter = new ReplayFilter(meterRegistry, 64);
+	}
+
+	@Test
+	void repeatedSequenceIsDropped() {
+		assertThat(filter.accept(1L, 5L)).isTrue();
+		assertThat(filter.accept(1L, 5L)).isFalse();
+		// Otro dispositivo tiene su propia ventana
+		assertThat(filter.accept(2L, 5L)).isTrue();
+		assertThat(meterRegistry.counter("gps.ingest.duplicates").count()).isEqualTo(1.0);
+	}
+
+	@Test
+	void lateSequenceInsideTheWindowIsAcceptedOnce() {
+		filter.accept(1L, 10L);
+		filter.accept(1L, 12L);
+
+		assertThat(filter.accept(1L, 11L)).isTrue();
+		assertThat(filter.accept(1L, 11L)).isFalse();
+	}
+
+	@Test
+	void advancingClearsTheSkippedSlots() {
+		for (long seq = 1; seq <= 3; seq++) {
+			filter.accept(1L, seq);
+		}
+		// 66 reutiliza los casilleros de 4..65: los que no se vieron deben quedar libres
+		assertThat(filter.accept(1L, 66L)).isTrue();
+		assertThat(filter.accept(1L, 10L)).isTrue();
+		assertThat(filter.accept(1L, 3L)).isFalse();
+	}
+
+	@Test
+	void jumpLargerThanTheWindowStartsEmpty() {
+		filter.accept(1L, 10L);
+		assertThat(filter.accept(1L, 80L)).isTrue();
+
+		assertThat(filter.accept(1L, 30L)).isTrue();
+		assertThat(filter.accept(1L, 30L)).isFalse();
+	}
+
+	@Test
+	void sequenceBeforeTheWindowIsARestart() {
+		filter.accept(1L, 500L);
+
+		// El dispositivo volvió a contar desde cero
+		assertThat(filter.accept(1L, 1L)).isTrue();
+		assertThat(filter.accept(1L, 2L)).isTrue();
+		assertThat(filter.accept(1L, 1L)).isFalse();
+	}
+
+	@Test
+	void fixesWithoutSequenceAlwaysPass() {
+		assertThat(filter.accept(1L, 0L)).isTrue();
+		assertThat(filter.accept(1L, 0L)).isTrue();
+		assertThat(filter.accept(1L, -1L)).isTrue();
+	}
+
+	@Test
+	void releasedSequencesAreAcceptedAgain() {
+		filter.accept(1L, 7L);
+		filter.accept(1L, 8L);
+		GpsFixBatch failed = new GpsFixBatch(1);
+		failed.add(1L, 0L, 7L, 0.0, 0.0);
+
+		filter.release(failed);
+
+		assertThat(filter.accept(1L, 7L)).isTrue();
+		assertThat(filter.accept(1L, 8L)).isFalse();
+	}
+}
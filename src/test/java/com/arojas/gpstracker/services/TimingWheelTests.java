@@ -0,0 +1,87 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTests {
+
+	private TimingWheel wheel;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		wheel.stop();
+	}
+
+	@Test
+	void tasksRunAfterTheirDelayInDeadlineOrder() throws InterruptedException {
+		wheel = new TimingWheel("test-wheel", 5, 64);
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(3);
+		long start = System.currentTimeMillis();
+		long[] ranAt = new long[3];
+
+		wheel.schedule(120, () -> { ranAt[2] = System.currentTimeMillis(); order.add(2); done.countDown(); });
+		wheel.schedule(20, () -> { ranAt[0] = System.currentTimeMillis(); order.add(0); done.countDown(); });
+		wheel.schedule(60, () -> { ranAt[1] = System.currentTimeMillis(); order.add(1); done.countDown(); });
+
+		assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+		assertThat(order).containsExactly(0, 1, 2);
+		// Precisión de un tick: nunca antes del plazo
+		assertThat(ranAt[0] - start).isGreaterThanOrEqualTo(20 - 5);
+		assertThat(ranAt[1] - start).isGreaterThanOrEqualTo(60 - 5);
+		assertThat(ranAt[2] - start).isGreaterThanOrEqualTo(120 - 5);
+	}
+
+	@Test
+	void delaysLongerThanOneRevolutionWaitForTheirRound() throws InterruptedException {
+		// 4 casilleros de 5 ms: 100 ms son cinco vueltas
+		wheel = new TimingWheel("test-wheel", 5, 4);
+		CountDownLatch done = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+		long[] ranAt = new long[1];
+
+		wheel.schedule(100, () -> { ranAt[0] = System.currentTimeMillis(); done.countDown(); });
+
+		assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+		assertThat(ranAt[0] - start).isGreaterThanOrEqualTo(100 - 5);
+	}
+
+	@Test
+	void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+		wheel = new TimingWheel("test-wheel", 5, 16);
+		CountDownLatch done = new CountDownLatch(1);
+
+		wheel.schedule(10, () -> { throw new IllegalStateException("boom"); });
+		wheel.schedule(30, done::countDown);
+
+		assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void taskCanRescheduleItself() throws InterruptedException {
+		wheel = new TimingWheel("test-wheel", 5, 16);
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(1);
+		Runnable[] task = new Runnable[1];
+		task[0] = () -> {
+			if (runs.incrementAndGet() < 3) {
+				wheel.schedule(10, task[0]);
+			} else {
+				done.countDown();
+			}
+		};
+
+		wheel.schedule(10, task[0]);
+
+		assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+		assertThat(runs).hasValue(3);
+	}
+}
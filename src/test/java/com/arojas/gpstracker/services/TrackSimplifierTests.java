@@ -0,0 +1,81 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.arojas.gpstracker.services.TrackSimplifier.Track;
+
+class TrackSimplifierTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+	@Test
+	void straightLineKeepsOnlyTheEnds() {
+		Track track = new Track(0);
+		for (int i = 0; i <= 10; i++) {
+			add(track, i, 0.0, 0.001 * i);
+		}
+		track.finish();
+
+		assertThat(TrackSimplifier.simplify(track, 5, 0)).containsExactly(0, 10);
+	}
+
+	@Test
+	void deviationsOverTheToleranceAreKept() {
+		// Unos 111 m hacia el norte en el punto 5
+		Track track = new Track(0);
+		for (int i = 0; i <= 10; i++) {
+			add(track, i, i == 5 ? 0.001 : 0.0, 0.001 * i);
+		}
+		track.finish();
+
+		assertThat(TrackSimplifier.simplify(track, 50, 0)).containsExactly(0, 4, 5, 6, 10);
+		assertThat(TrackSimplifier.simplify(track, 500, 0)).containsExactly(0, 10);
+	}
+
+	@Test
+	void maxPointsKeepsTheEndsAndTheLargestTurn() {
+		Track track = new Track(0);
+		double[] north = { 0, 0.0001, 0, 0.002, 0, 0.0001, 0 };
+		for (int i = 0; i < north.length; i++) {
+			add(track, i, north[i], 0.001 * i);
+		}
+		track.finish();
+
+		int[] kept = TrackSimplifier.simplify(track, 0, 3);
+
+		assertThat(kept).containsExactly(0, 3, 6);
+	}
+
+	@Test
+	void radialToleranceDropsNearbyPointsButKeepsTheLast() {
+		Track track = new Track(20);
+		add(track, 1, 0.0, 0.0);
+		add(track, 2, 0.0, 0.00005); // ~5 m
+		add(track, 3, 0.0, 0.0001); // ~11 m
+		add(track, 4, 0.0, 0.001); // ~111 m
+		add(track, 5, 0.0, 0.00105); // ~5 m del anterior
+		track.finish();
+
+		assertThat(track.read()).isEqualTo(5);
+		assertThat(track.size()).isEqualTo(3);
+		assertThat(new long[] { track.id(0), track.id(1), track.id(2) }).containsExactly(1, 4, 5);
+	}
+
+	@Test
+	void shortTracksAreReturnedWhole() {
+		Track track = new Track(0);
+		add(track, 1, 0.0, 0.0);
+		add(track, 2, 0.0, 0.001);
+		track.finish();
+
+		assertThat(TrackSimplifier.simplify(track, 1000, 0)).containsExactly(0, 1);
+	}
+
+	private static void add(Track track, long id, double latitude, double longitude) {
+		track.add(id, latitude, longitude, T0.plusSeconds(id));
+	}
+}
@@ -0,0 +1,96 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+
+import com.arojas.gpstracker.entities.Alert.AlertType;
+import com.arojas.gpstracker.repositories.AlertRepository;
+import com.arojas.gpstracker.repositories.AlertRepository.UnresolvedAlertRow;
+
+class UnresolvedAlertIndexTests {
+
+	private final AlertRepository alertRepository = mock(AlertRepository.class);
+	private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+	private UnresolvedAlertIndex index;
+	private Consumer<long[]> remoteHandler;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		index = new UnresolvedAlertIndex(alertRepository, invalidationBus);
+		ArgumentCaptor<Consumer<long[]>> handler = ArgumentCaptor.forClass(Consumer.class);
+		verify(invalidationBus).subscribe(eq(UnresolvedAlertIndex.TOPIC), handler.capture());
+		remoteHandler = handler.getValue();
+	}
+
+	@Test
+	void remoteChangesAreReadBackFromTheDatabase() {
+		UnresolvedAlertRow created = row(10L, 1L);
+		when(alertRepository.findUnresolvedByIds(anyCollection())).thenReturn(List.of(created));
+		remoteHandler.accept(new long[] { 10L });
+
+		assertThat(index.pageForOwner(1L, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+
+		// Otro nodo la resolvió: ya no aparece sin resolver
+		when(alertRepository.findUnresolvedByIds(anyCollection())).thenReturn(List.of());
+		remoteHandler.accept(new long[] { 10L });
+
+		assertThat(index.pageForOwner(1L, PageRequest.of(0, 10)).getTotalElements()).isZero();
+		assertThat(index.counts().get(AlertType.DEVICE_OFFLINE)).isZero();
+	}
+
+	@Test
+	void localRemovalIsAnnounced() {
+		UnresolvedAlertRow stored = row(10L, 1L);
+		when(alertRepository.findAllUnresolved()).thenReturn(List.of(stored));
+		index.load();
+
+		index.removeOpen(3L, 1L, AlertType.DEVICE_OFFLINE);
+
+		verify(invalidationBus).publish(UnresolvedAlertIndex.TOPIC, 10L);
+		assertThat(index.page(PageRequest.of(0, 10)).getTotalElements()).isZero();
+	}
+
+	@Test
+	void reconcileFixesLostMessages() {
+		UnresolvedAlertRow kept = row(10L, 1L);
+		UnresolvedAlertRow resolvedElsewhere = row(11L, 1L);
+		when(alertRepository.findAllUnresolved()).thenReturn(List.of(kept, resolvedElsewhere));
+		index.load();
+
+		UnresolvedAlertRow createdElsewhere = row(12L, 1L);
+		when(alertRepository.findAllUnresolved()).thenReturn(List.of(kept, createdElsewhere));
+		when(alertRepository.findUnresolvedByIds(anyCollection())).thenReturn(List.of(createdElsewhere));
+		index.reconcile();
+
+		assertThat(index.page(PageRequest.of(0, 10)).getContent())
+				.extracting(alert -> alert.getId())
+				.containsExactly(12L, 10L);
+	}
+
+	private static UnresolvedAlertRow row(long id, long ownerId) {
+		UnresolvedAlertRow row = mock(UnresolvedAlertRow.class);
+		when(row.getId()).thenReturn(id);
+		when(row.getDeviceId()).thenReturn(3L);
+		when(row.getOwnerId()).thenReturn(ownerId);
+		when(row.getType()).thenReturn(AlertType.DEVICE_OFFLINE);
+		when(row.getMessage()).thenReturn("sin señal");
+		when(row.getCreatedAt()).thenReturn(LocalDateTime.of(2025, 1, 1, 0, 0));
+		when(row.getOccurrences()).thenReturn(1);
+		when(row.getLastOccurredAt()).thenReturn(LocalDateTime.of(2025, 1, 1, 0, 0));
+		return row;
+	}
+}
@@ -0,0 +1,125 @@
+package com.arojas.gpstracker.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class WebSocketClusterRelayTests {
+
+	private static final String UPDATES = "/topic/gps-updates/*";
+
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	@SuppressWarnings("unchecked")
+	private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+	private final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+	private final WebSocketClusterRelay relay = new WebSocketClusterRelay(messagingTemplate, redisTemplate,
+			listenerContainer, new ObjectMapper(), true);
+
+	@Test
+	void localDeliveryFollowsAntRules() {
+		subscribe("s1", UPDATES);
+
+		relay.send("/topic/gps-updates/1", 1);
+		relay.send("/topic/gps-updates/1/extra", 2);
+		relay.send("/topic/alerts", 3);
+
+		verify(messagingTemplate).send(eq("/topic/gps-updates/1"), any(Message.class));
+		verify(messagingTemplate, never()).send(eq("/topic/gps-updates/1/extra"), any(Message.class));
+		verify(messagingTemplate, never()).send(eq("/topic/alerts"), any(Message.class));
+		// Los demás nodos reciben todo por Redis
+		verify(redisTemplate).convertAndSend(eq("gps:ws:/topic/alerts"), any(String.class));
+	}
+
+	@Test
+	void patternSubscriptionListensOnAGlob() {
+		subscribe("s1", UPDATES);
+
+		verify(listenerContainer).addMessageListener(eq(relay),
+				argThat((Topic topic) -> topic instanceof PatternTopic
+						&& topic.getTopic().equals("gps:ws:/topic/gps-updates/*")));
+	}
+
+	@Test
+	void globMetacharactersAreEscaped() {
+		assertThat(WebSocketClusterRelay.globFor("/topic/a[1]/**")).isEqualTo("/topic/a\\[1\\]/*");
+		assertThat(WebSocketClusterRelay.globFor("/topic/{deviceId}/?")).isEqualTo("/topic/*/?");
+	}
+
+	@Test
+	void remoteMessageRejectedByTheAntPatternIsDropped() {
+		subscribe("s1", UPDATES);
+		byte[] pattern = "gps:ws:/topic/gps-updates/*".getBytes(StandardCharsets.UTF_8);
+
+		// El glob de Redis acepta la ruta más profunda; Ant no
+		relay.onMessage(remote("/topic/gps-updates/1/secret"), pattern);
+		relay.onMessage(remote("/topic/gps-updates/1"), pattern);
+
+		verify(messagingTemplate, never()).send(eq("/topic/gps-updates/1/secret"), any(Message.class));
+		verify(messagingTemplate).send(eq("/topic/gps-updates/1"), any(Message.class));
+	}
+
+	@Test
+	void patternCopyIsSkippedWhenTheChannelIsAlsoSubscribed() {
+		subscribe("s1", UPDATES);
+		subscribe("s2", "/topic/gps-updates/1");
+
+		relay.onMessage(remote("/topic/gps-updates/1"), "gps:ws:/topic/gps-updates/*".getBytes(StandardCharsets.UTF_8));
+		relay.onMessage(remote("/topic/gps-updates/1"), null);
+
+		verify(messagingTemplate).send(eq("/topic/gps-updates/1"), any(Message.class));
+	}
+
+	@Test
+	void disconnectReleasesThePattern() {
+		subscribe("s1", UPDATES);
+
+		relay.onDisconnect(new SessionDisconnectEvent(this, stomp(StompCommand.DISCONNECT, "s1", null), "s1",
+				CloseStatus.NORMAL));
+		relay.send("/topic/gps-updates/1", 1);
+
+		verify(listenerContainer).removeMessageListener(eq(relay), any(PatternTopic.class));
+		verify(messagingTemplate, never()).send(eq("/topic/gps-updates/1"), any(Message.class));
+	}
+
+	private void subscribe(String sessionId, String destination) {
+		relay.onSubscribe(new SessionSubscribeEvent(this, stomp(StompCommand.SUBSCRIBE, sessionId, destination)));
+	}
+
+	private static Message<byte[]> stomp(StompCommand command, String sessionId, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId("sub-0");
+		if (destination != null) {
+			accessor.setDestination(destination);
+		}
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static DefaultMessage remote(String destination) {
+		return new DefaultMessage(("gps:ws:" + destination).getBytes(StandardCharsets.UTF_8),
+				"otro-nodo|{}".getBytes(StandardCharsets.UTF_8));
+	}
+}